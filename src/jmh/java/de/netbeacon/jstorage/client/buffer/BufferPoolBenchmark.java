@@ -0,0 +1,91 @@
+/*
+ *     Copyright 2020 Horstexplorer @ https://www.netbeacon.de
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package de.netbeacon.jstorage.client.buffer;
+
+import de.netbeacon.jstorage.client.codec.JacksonJsonCodec;
+import de.netbeacon.jstorage.client.codec.JsonCodec;
+import de.netbeacon.jstorage.client.result.Payloads;
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import okio.Buffer;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the allocations of encoding payloads and reading response bodies with and without a BufferPool
+ * <br>
+ * Best run with the gc profiler. The read benchmarks copy the body from an okio Buffer, like okhttp hands it out.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx512m")
+public class BufferPoolBenchmark {
+
+    @Param({"1", "100"})
+    public int datasets;
+
+    @Param({"false", "true"})
+    public boolean direct;
+
+    private final JsonCodec jsonCodec = new JacksonJsonCodec();
+    private BufferPool bufferPool;
+    private JSONObject payload;
+    private byte[] body;
+
+    @Setup
+    public void setup(){
+        bufferPool = new BufferPool(1 << 20, 64, direct);
+        payload = Payloads.datasets(datasets);
+        body = jsonCodec.encode(payload);
+    }
+
+    @Benchmark
+    public byte[] encode(){
+        return jsonCodec.encode(payload);
+    }
+
+    @Benchmark
+    public void encodePooled(Blackhole blackhole) throws IOException {
+        BufferOutputStream bufferOutputStream = new BufferOutputStream(bufferPool, BufferPool.MIN_BUFFER_SIZE);
+        jsonCodec.encode(payload, bufferOutputStream);
+        PooledBuffer pooledBuffer = bufferOutputStream.toPooledBuffer();
+        blackhole.consume(pooledBuffer.buffer());
+        pooledBuffer.release();
+    }
+
+    @Benchmark
+    public byte[] read(){
+        Buffer source = new Buffer().write(body);
+        return source.readByteArray();
+    }
+
+    @Benchmark
+    public void readPooled(Blackhole blackhole) throws IOException {
+        Buffer source = new Buffer().write(body);
+        BufferOutputStream bufferOutputStream = new BufferOutputStream(bufferPool, body.length + 1);
+        bufferOutputStream.writeFrom(source);
+        PooledBuffer pooledBuffer = bufferOutputStream.toPooledBuffer();
+        blackhole.consume(pooledBuffer.buffer());
+        pooledBuffer.release();
+    }
+}
@@ -0,0 +1,71 @@
+/*
+ *     Copyright 2020 Horstexplorer @ https://www.netbeacon.de
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package de.netbeacon.jstorage.client.codec;
+
+import de.netbeacon.jstorage.client.notification.objects.notifiation.DataNotification;
+import de.netbeacon.jstorage.client.result.Payloads;
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the JsonCodec implementations on payloads shaped like the ones of the server
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JsonCodecBenchmark {
+
+    private static final String NOTIFICATION = "{\"content\":\"updated\",\"timestamp\":1593000000000,\"database\":\"benchmarkdb\",\"table\":\"benchmarktable\",\"dataset\":\"dataset1\",\"datatype\":\"profile\"}";
+
+    @Param({"orgjson", "jackson"})
+    public String codec;
+
+    @Param({"1", "1000"})
+    public int datasets;
+
+    private JsonCodec jsonCodec;
+    private JSONObject payload;
+    private byte[] bytes;
+
+    @Setup
+    public void setup(){
+        jsonCodec = codec.equals("jackson") ? new JacksonJsonCodec() : new OrgJsonCodec();
+        payload = (datasets == 1) ? Payloads.dataset(0) : Payloads.datasets(datasets);
+        bytes = new OrgJsonCodec().encode(payload);
+    }
+
+    @Benchmark
+    public byte[] encode(){
+        return jsonCodec.encode(payload);
+    }
+
+    @Benchmark
+    public JSONObject decode(){
+        return jsonCodec.decode(bytes);
+    }
+
+    @Benchmark
+    public DataNotification decodeNotification(){
+        return jsonCodec.decodeNotification(NOTIFICATION);
+    }
+}
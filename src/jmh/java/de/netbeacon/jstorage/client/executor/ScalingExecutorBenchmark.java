@@ -0,0 +1,71 @@
+/*
+ *     Copyright 2020 Horstexplorer @ https://www.netbeacon.de
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package de.netbeacon.jstorage.client.executor;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures handing tasks to the ScalingExecutor from many threads at once
+ * <br>
+ * Compares the two pool design with the virtual thread mode, for tasks which only compute and for tasks which block
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Threads(32)
+@Fork(1)
+public class ScalingExecutorBenchmark {
+
+    @Param({"PLATFORM", "VIRTUAL"})
+    public ScalingExecutor.Mode mode;
+
+    @Param({"0", "1"})
+    public int blockMillis;
+
+    private ScalingExecutor scalingExecutor;
+
+    @Setup
+    public void setup(){
+        scalingExecutor = new ScalingExecutor(4, 8, 1024, 10, TimeUnit.SECONDS, mode);
+    }
+
+    @TearDown
+    public void tearDown(){
+        scalingExecutor.shutdown();
+    }
+
+    @Benchmark
+    public void execute(Blackhole blackhole) throws Exception {
+        CompletableFuture<Void> cf = new CompletableFuture<>();
+        scalingExecutor.execute(() -> {
+            if(blockMillis > 0){
+                try{ TimeUnit.MILLISECONDS.sleep(blockMillis); }catch (InterruptedException ignore){}
+            }else{
+                Blackhole.consumeCPU(100);
+            }
+            cf.complete(null);
+        });
+        blackhole.consume(cf.get());
+    }
+}
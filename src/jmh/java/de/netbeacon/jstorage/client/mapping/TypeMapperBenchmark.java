@@ -0,0 +1,124 @@
+/*
+ *     Copyright 2020 Horstexplorer @ https://www.netbeacon.de
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package de.netbeacon.jstorage.client.mapping;
+
+import de.netbeacon.jstorage.client.result.JStorageResult;
+import de.netbeacon.jstorage.client.result.Payloads;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares mapping a dataset to objects by hand from the JSONObject with mapping it directly from the bytes
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TypeMapperBenchmark {
+
+    private byte[] bytes;
+    private TypeMapper typeMapper;
+    private DataSet dataSet;
+
+    @Setup
+    public void setup(){
+        bytes = Payloads.dataset(1).toString().getBytes(StandardCharsets.UTF_8);
+        typeMapper = new TypeMapper();
+        dataSet = typeMapper.read(bytes, DataSet.class);
+    }
+
+    @Benchmark
+    public DataSet jsonObject(){
+        JStorageResult result = new JStorageResult();
+        result.setResult(bytes);
+        JSONObject jsonObject = result.getResult();
+        DataSet dataSet = new DataSet();
+        dataSet.database = jsonObject.getString("database");
+        dataSet.table = jsonObject.getString("table");
+        dataSet.identifier = jsonObject.getString("identifier");
+        JSONObject profile = jsonObject.getJSONObject("profile");
+        dataSet.profile = new Profile();
+        dataSet.profile.name = profile.getString("name");
+        dataSet.profile.mail = profile.getString("mail");
+        dataSet.profile.created = profile.getLong("created");
+        dataSet.profile.active = profile.getBoolean("active");
+        dataSet.profile.tags = new ArrayList<>();
+        JSONArray tags = profile.getJSONArray("tags");
+        for(int i = 0; i < tags.length(); i++){
+            dataSet.profile.tags.add(tags.getString(i));
+        }
+        JSONObject settings = jsonObject.getJSONObject("settings");
+        dataSet.settings = new Settings();
+        dataSet.settings.language = settings.getString("language");
+        dataSet.settings.timezone = settings.getString("timezone");
+        dataSet.settings.limit = settings.getInt("limit");
+        return dataSet;
+    }
+
+    @Benchmark
+    public DataSet typeMapper(){
+        return typeMapper.read(bytes, DataSet.class);
+    }
+
+    @Benchmark
+    public byte[] writeJsonObject(){
+        return new JSONObject()
+                .put("profile", new JSONObject()
+                        .put("name", dataSet.profile.name)
+                        .put("mail", dataSet.profile.mail)
+                        .put("created", dataSet.profile.created)
+                        .put("active", dataSet.profile.active)
+                        .put("tags", new JSONArray(dataSet.profile.tags)))
+                .toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public byte[] writeTypeMapper(){
+        return typeMapper.write("profile", dataSet.profile);
+    }
+
+    public static class DataSet {
+        String database;
+        String table;
+        String identifier;
+        Profile profile;
+        Settings settings;
+    }
+
+    public static class Profile {
+        String name;
+        String mail;
+        long created;
+        boolean active;
+        List<String> tags;
+    }
+
+    public static class Settings {
+        String language;
+        String timezone;
+        int limit;
+    }
+}
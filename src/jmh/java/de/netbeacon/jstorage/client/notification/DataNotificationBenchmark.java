@@ -0,0 +1,57 @@
+/*
+ *     Copyright 2020 Horstexplorer @ https://www.netbeacon.de
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package de.netbeacon.jstorage.client.notification;
+
+import de.netbeacon.jstorage.client.notification.objects.notifiation.DataNotification;
+import de.netbeacon.jstorage.client.notification.objects.notifiation.NotificationParser;
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures creating notifications from the lines received by the notification socket
+ * <br>
+ * parse builds a JSONObject first, notificationParser reads the line in a single pass
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DataNotificationBenchmark {
+
+    @Param({
+            "{\"content\":\"heartbeat\",\"timestamp\":1593000000000}",
+            "{\"content\":\"updated\",\"timestamp\":1593000000000,\"database\":\"benchmarkdb\",\"table\":\"benchmarktable\",\"dataset\":\"dataset1\",\"datatype\":\"profile\"}"
+    })
+    public String line;
+
+    private final NotificationParser parser = new NotificationParser();
+
+    @Benchmark
+    public DataNotification parse(){
+        return new DataNotification(new JSONObject(line));
+    }
+
+    @Benchmark
+    public DataNotification notificationParser(){
+        return parser.parse(line);
+    }
+}
@@ -0,0 +1,94 @@
+/*
+ *     Copyright 2020 Horstexplorer @ https://www.netbeacon.de
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.netbeacon.jstorage.client.notification;
+
+import de.netbeacon.jstorage.client.notification.objects.listener.ListenerQueue;
+import de.netbeacon.jstorage.client.notification.objects.listener.NotificationListener;
+import de.netbeacon.jstorage.client.notification.objects.notifiation.DataNotification;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the time the notification socket spends per notification while one of the listeners is slow
+ * <br>
+ * SYNC calls the listeners directly as done before listeners had their own queues
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ListenerQueueBenchmark {
+
+    private static final int DATASETS = 16;
+
+    @Param({"SYNC", "BLOCK", "DROP_OLDEST", "COALESCE"})
+    public String policy;
+
+    @Param({"4"})
+    public int listeners;
+
+    private NotificationListener[] notificationListeners;
+    private ListenerQueue[] listenerQueues;
+    private DataNotification[] notifications;
+    private int next;
+
+    @Setup
+    public void setup(){
+        notificationListeners = new NotificationListener[listeners];
+        notificationListeners[0] = dataNotification -> Blackhole.consumeCPU(5000);
+        for(int i = 1; i < listeners; i++){
+            notificationListeners[i] = dataNotification -> Blackhole.consumeCPU(10);
+        }
+        if(!policy.equals("SYNC")){
+            listenerQueues = new ListenerQueue[listeners];
+            for(int i = 0; i < listeners; i++){
+                listenerQueues[i] = new ListenerQueue(notificationListeners[i], 256, ListenerQueue.OverflowPolicy.valueOf(policy));
+            }
+        }
+        notifications = new DataNotification[DATASETS];
+        for(int i = 0; i < DATASETS; i++){
+            notifications[i] = new DataNotification(DataNotification.Content.updated, 1593000000000L, "benchmarkdb", "benchmarktable", "dataset"+i, "profile");
+        }
+    }
+
+    @TearDown
+    public void tearDown(){
+        if(listenerQueues != null){
+            for(ListenerQueue listenerQueue : listenerQueues){
+                listenerQueue.shutdown();
+            }
+        }
+    }
+
+    @Benchmark
+    public void dispatch(){
+        DataNotification dataNotification = notifications[next++ & (DATASETS - 1)];
+        if(listenerQueues == null){
+            for(NotificationListener notificationListener : notificationListeners){
+                notificationListener.onNotification(dataNotification);
+            }
+        }else{
+            for(ListenerQueue listenerQueue : listenerQueues){
+                listenerQueue.offer(dataNotification);
+            }
+        }
+    }
+}
@@ -0,0 +1,85 @@
+/*
+ *     Copyright 2020 Horstexplorer @ https://www.netbeacon.de
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.netbeacon.jstorage.client.notification;
+
+import de.netbeacon.jstorage.client.notification.objects.listener.ListenerQueue;
+import de.netbeacon.jstorage.client.notification.objects.listener.NotificationListener;
+import de.netbeacon.jstorage.client.notification.objects.notifiation.DataNotification;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures routing a notification to one listener per dataset
+ * <br>
+ * broadcast hands every notification to every listener which filters by dataset itself, routed uses the ListenerIndex
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class NotificationRoutingBenchmark {
+
+    @Param({"16", "256"})
+    public int datasets;
+
+    private ListenerIndex broadcast;
+    private ListenerIndex routed;
+    private DataNotification[] notifications;
+    private int next;
+
+    @Setup
+    public void setup(){
+        broadcast = new ListenerIndex();
+        routed = new ListenerIndex();
+        notifications = new DataNotification[datasets];
+        for(int i = 0; i < datasets; i++){
+            String dataset = "dataset"+i;
+            NotificationListener notificationListener = dataNotification -> {
+                if("benchmarkdb".equals(dataNotification.getDatabase()) && "benchmarktable".equals(dataNotification.getTable()) && dataset.equals(dataNotification.getDataset())){
+                    Blackhole.consumeCPU(10);
+                }
+            };
+            broadcast.add(new ListenerQueue(notificationListener, 1024, ListenerQueue.OverflowPolicy.DROP_OLDEST));
+            routed.add(new ListenerQueue(notificationListener, 1024, ListenerQueue.OverflowPolicy.DROP_OLDEST), "benchmarkdb", "benchmarktable", dataset);
+            notifications[i] = new DataNotification(DataNotification.Content.updated, 1593000000000L, "benchmarkdb", "benchmarktable", dataset, "profile");
+        }
+    }
+
+    @TearDown
+    public void tearDown(){
+        for(ListenerIndex listenerIndex : new ListenerIndex[]{broadcast, routed}){
+            for(ListenerQueue listenerQueue : listenerIndex.getAll()){
+                listenerIndex.remove(listenerQueue);
+                listenerQueue.shutdown();
+            }
+        }
+    }
+
+    @Benchmark
+    public void broadcast(){
+        broadcast.dispatch(notifications[next++ % datasets]);
+    }
+
+    @Benchmark
+    public void routed(){
+        routed.dispatch(notifications[next++ % datasets]);
+    }
+}
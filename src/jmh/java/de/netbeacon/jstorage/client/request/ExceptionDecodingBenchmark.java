@@ -0,0 +1,51 @@
+/*
+ *     Copyright 2020 Horstexplorer @ https://www.netbeacon.de
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package de.netbeacon.jstorage.client.request;
+
+import de.netbeacon.jstorage.client.exceptions.JStorageException;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures decoding the Internal-Status header of failed requests into exceptions
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ExceptionDecodingBenchmark {
+
+    @Param({
+            "genericobjectexception 200 Object Not Found",
+            "datastorageexception 201 DataSet Not Found",
+            "cryptexception 20 Decryption Failed",
+            ""
+    })
+    public String internalStatus;
+
+    @Param({"true", "false"})
+    public boolean writableStackTrace;
+
+    @Benchmark
+    public JStorageException decode(){
+        return ExceptionDecoder.decode(404, internalStatus, writableStackTrace);
+    }
+}
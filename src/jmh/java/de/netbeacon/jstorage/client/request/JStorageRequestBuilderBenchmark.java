@@ -0,0 +1,65 @@
+/*
+ *     Copyright 2020 Horstexplorer @ https://www.netbeacon.de
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package de.netbeacon.jstorage.client.request;
+
+import de.netbeacon.jstorage.client.JStorageClient;
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures building requests of every RequestType
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JStorageRequestBuilderBenchmark {
+
+    @Param
+    public RequestType requestType;
+
+    private JStorageClient client;
+    private JSONObject payload;
+
+    @Setup
+    public void setup(){
+        client = JStorageClient.getClient("localhost", 8888, "userid", "password", "logintoken", 1, 1, 16, 10, TimeUnit.SECONDS);
+        payload = new JSONObject().put("key", "value").put("number", 42);
+    }
+
+    @TearDown
+    public void tearDown(){
+        client.shutdown();
+    }
+
+    @Benchmark
+    public JStorageRequest build(){
+        JStorageRequestBuilder builder = client.newRequest(requestType);
+        for(String argument : requestType.getRequiredArguments()){
+            builder.setArg(argument, "identifier");
+        }
+        if(requestType.requiresBody()){
+            builder.setPayload(payload);
+        }
+        return builder.build();
+    }
+}
@@ -0,0 +1,71 @@
+/*
+ *     Copyright 2020 Horstexplorer @ https://www.netbeacon.de
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package de.netbeacon.jstorage.client.request;
+
+import de.netbeacon.jstorage.client.codec.JacksonJsonCodec;
+import de.netbeacon.jstorage.client.codec.JsonCodec;
+import de.netbeacon.jstorage.client.codec.OrgJsonCodec;
+import de.netbeacon.jstorage.client.result.Payloads;
+import org.json.JSONArray;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares reading a large MultiSelect body as a whole with handing out the datasets one at a time
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StreamingBenchmark {
+
+    @Param({"orgjson", "jackson"})
+    public String codec;
+
+    @Param({"1000", "10000"})
+    public int datasets;
+
+    private JsonCodec jsonCodec;
+    private byte[] body;
+
+    @Setup
+    public void setup(){
+        jsonCodec = codec.equals("jackson") ? new JacksonJsonCodec() : new OrgJsonCodec();
+        body = Payloads.datasets(datasets).toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public void tree(Blackhole blackhole){
+        JSONArray jsonArray = jsonCodec.decode(body).getJSONArray("datasets");
+        for(int i = 0; i < jsonArray.length(); i++){
+            blackhole.consume(jsonArray.getJSONObject(i));
+        }
+    }
+
+    @Benchmark
+    public void stream(Blackhole blackhole) throws IOException {
+        jsonCodec.decode(new ByteArrayInputStream(body), (key, value) -> blackhole.consume(value));
+    }
+}
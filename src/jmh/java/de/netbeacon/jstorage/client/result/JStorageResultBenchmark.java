@@ -0,0 +1,63 @@
+/*
+ *     Copyright 2020 Horstexplorer @ https://www.netbeacon.de
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package de.netbeacon.jstorage.client.result;
+
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures getting the JSONObject of results of different size
+ * <br>
+ * parse covers the first access to a result, getResult the following ones
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JStorageResultBenchmark {
+
+    @Param({"1", "1000"})
+    public int datasets;
+
+    private byte[] bytes;
+    private JStorageResult result;
+
+    @Setup
+    public void setup(){
+        bytes = Payloads.datasets(datasets).toString().getBytes(StandardCharsets.UTF_8);
+        result = new JStorageResult();
+        result.setResult(bytes);
+    }
+
+    @Benchmark
+    public JSONObject parse(){
+        JStorageResult jStorageResult = new JStorageResult();
+        jStorageResult.setResult(bytes);
+        return jStorageResult.getResult();
+    }
+
+    @Benchmark
+    public JSONObject getResult(){
+        return result.getResult();
+    }
+}
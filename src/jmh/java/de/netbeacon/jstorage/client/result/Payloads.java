@@ -0,0 +1,63 @@
+/*
+ *     Copyright 2020 Horstexplorer @ https://www.netbeacon.de
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package de.netbeacon.jstorage.client.result;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+/**
+ * Builds payloads shaped like the ones returned by the server to be used within benchmarks
+ */
+public class Payloads {
+
+    /**
+     * Builds a single dataset
+     * @param index of the dataset
+     * @return JSONObject
+     */
+    public static JSONObject dataset(int index){
+        JSONObject dataset = new JSONObject()
+                .put("database", "benchmarkdb")
+                .put("table", "benchmarktable")
+                .put("identifier", "dataset"+index);
+        dataset.put("profile", new JSONObject()
+                .put("name", "User "+index)
+                .put("mail", "user"+index+"@example.com")
+                .put("created", 1593000000000L+index)
+                .put("active", index % 2 == 0)
+                .put("tags", new JSONArray().put("alpha").put("beta").put("gamma")));
+        dataset.put("settings", new JSONObject()
+                .put("language", "en")
+                .put("timezone", "Europe/Berlin")
+                .put("limit", index * 10));
+        return dataset;
+    }
+
+    /**
+     * Builds a result containing multiple datasets
+     * @param count number of datasets
+     * @return JSONObject
+     */
+    public static JSONObject datasets(int count){
+        JSONArray datasets = new JSONArray();
+        for(int i = 0; i < count; i++){
+            datasets.put(dataset(i));
+        }
+        return new JSONObject().put("datasets", datasets);
+    }
+}
@@ -0,0 +1,121 @@
+/*
+ *     Copyright 2020 Horstexplorer @ https://www.netbeacon.de
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package de.netbeacon.jstorage.client.stub;
+
+import de.netbeacon.jstorage.client.JStorageClient;
+import de.netbeacon.jstorage.client.request.RequestType;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures gzip compression of large datatypes against the JStorageStubServer
+ * <br>
+ * Reports the bytes sent over the wire (wireBytes) and the number of requests per iteration next to the time spent,
+ * so the bytes saved per request can be weighed against the cpu spent compressing and decompressing.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Threads(1)
+@Fork(1)
+public class CompressionBenchmark {
+
+    private static final String TOKEN = "benchmark";
+
+    @Param({"false", "true"})
+    public boolean compression;
+
+    @Param({"10", "1000"})
+    public int items;
+
+    private JStorageStubServer stubServer;
+    private JStorageClient client;
+    private JSONObject payload;
+
+    /**
+     * Bytes of request and response bodies on the wire and the requests they belong to
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class WireBytes {
+
+        public long wireBytes;
+        public long requests;
+
+    }
+
+    @Setup
+    public void setup() throws Exception {
+        JSONArray array = new JSONArray();
+        for(int i = 0; i < items; i++){
+            array.put(new JSONObject().put("id", i).put("name", "item"+i).put("enabled", i % 2 == 0).put("tags", new JSONArray().put("common").put("tag"+(i % 10))));
+        }
+        payload = new JSONObject().put("content", new JSONObject().put("items", array));
+        stubServer = new JStorageStubServer(TOKEN);
+        stubServer.put("benchmark", "table", "dataset", "content", payload.getJSONObject("content"));
+        stubServer.start(5000);
+        client = JStorageClient.getDevClient("localhost", stubServer.getPort(), TOKEN);
+        if(compression){
+            client.enableCompression(1024);
+            stubServer.setCompression(1024);
+        }
+    }
+
+    @TearDown
+    public void tearDown(){
+        client.shutdown();
+        stubServer.stop();
+    }
+
+    @Benchmark
+    public Object updateDataType(WireBytes wireBytes) throws Exception {
+        long before = stubServer.getRequestBytes() + stubServer.getResponseBytes();
+        Object result = client.newRequest(RequestType.DataAction_UpdateDataType)
+                .setArg("database", "benchmark")
+                .setArg("table", "table")
+                .setArg("dataset", "dataset")
+                .setArg("identifier", "content")
+                .setPayload(payload)
+                .build()
+                .complete();
+        wireBytes.wireBytes += stubServer.getRequestBytes() + stubServer.getResponseBytes() - before;
+        wireBytes.requests++;
+        return result;
+    }
+
+    @Benchmark
+    public Object getDataType(WireBytes wireBytes) throws Exception {
+        long before = stubServer.getRequestBytes() + stubServer.getResponseBytes();
+        Object result = client.newRequest(RequestType.DataAction_GetDataType)
+                .setArg("database", "benchmark")
+                .setArg("table", "table")
+                .setArg("dataset", "dataset")
+                .setArg("identifier", "content")
+                .build()
+                .complete()
+                .getResult();
+        wireBytes.wireBytes += stubServer.getRequestBytes() + stubServer.getResponseBytes() - before;
+        wireBytes.requests++;
+        return result;
+    }
+}
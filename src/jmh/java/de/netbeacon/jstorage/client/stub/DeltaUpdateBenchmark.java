@@ -0,0 +1,97 @@
+/*
+ *     Copyright 2020 Horstexplorer @ https://www.netbeacon.de
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package de.netbeacon.jstorage.client.stub;
+
+import de.netbeacon.jstorage.client.JStorageClient;
+import de.netbeacon.jstorage.client.request.RequestType;
+import de.netbeacon.jstorage.client.result.JStorageResult;
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures updating a single key of a large datatype against the JStorageStubServer, as full write and as delta
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Threads(1)
+@Fork(1)
+public class DeltaUpdateBenchmark {
+
+    private static final String TOKEN = "benchmark";
+
+    @Param({"full", "delta"})
+    public String mode;
+
+    @Param({"10", "1000"})
+    public int keys;
+
+    private JStorageStubServer stubServer;
+    private JStorageClient client;
+    private JStorageResult previous;
+    private JSONObject modified;
+    private int counter;
+
+    @Setup
+    public void setup() throws Exception {
+        JSONObject content = new JSONObject();
+        for(int i = 0; i < keys; i++){
+            content.put("key"+i, new JSONObject().put("value", i).put("text", "some text which does not change"));
+        }
+        stubServer = new JStorageStubServer(TOKEN);
+        stubServer.put("benchmark", "table", "dataset", "content", content);
+        stubServer.start(5000);
+        client = JStorageClient.getDevClient("localhost", stubServer.getPort(), TOKEN);
+        // the stub server merges updates into the datatype
+        client.getDeltaUpdater().setEnabled(true);
+        previous = client.newRequest(RequestType.DataAction_GetDataType)
+                .setArg("database", "benchmark")
+                .setArg("table", "table")
+                .setArg("dataset", "dataset")
+                .setArg("identifier", "content")
+                .build()
+                .complete();
+        modified = new JSONObject(content.toString());
+    }
+
+    @TearDown
+    public void tearDown(){
+        client.shutdown();
+        stubServer.stop();
+    }
+
+    @Benchmark
+    public Object update() throws Exception {
+        modified.put("counter", counter++);
+        if(mode.equals("delta")){
+            return client.getDeltaUpdater().newUpdate(previous, "benchmark", "table", "dataset", "content", modified).orElseThrow().build().complete();
+        }
+        return client.newRequest(RequestType.DataAction_UpdateDataType)
+                .setArg("database", "benchmark")
+                .setArg("table", "table")
+                .setArg("dataset", "dataset")
+                .setArg("identifier", "content")
+                .setPayload(new JSONObject().put("content", modified))
+                .build()
+                .complete();
+    }
+}
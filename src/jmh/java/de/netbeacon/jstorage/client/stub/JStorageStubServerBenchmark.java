@@ -0,0 +1,85 @@
+/*
+ *     Copyright 2020 Horstexplorer @ https://www.netbeacon.de
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package de.netbeacon.jstorage.client.stub;
+
+import de.netbeacon.jstorage.client.JStorageClient;
+import de.netbeacon.jstorage.client.request.RequestType;
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures whole requests against the JStorageStubServer, from building the request to the parsed result
+ * <br>
+ * Compares plain requests with coalescing at different server latencies
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Threads(16)
+@Fork(1)
+public class JStorageStubServerBenchmark {
+
+    private static final String TOKEN = "benchmark";
+    private static final int DATASETS = 100;
+
+    @Param({"plain", "coalescing"})
+    public String feature;
+
+    @Param({"0", "5"})
+    public long latencyMillis;
+
+    private JStorageStubServer stubServer;
+    private JStorageClient client;
+
+    @Setup
+    public void setup() throws Exception {
+        stubServer = new JStorageStubServer(TOKEN);
+        stubServer.setLatency(latencyMillis, latencyMillis / 2);
+        for(int i = 0; i < DATASETS; i++){
+            stubServer.put("benchmark", "table", "dataset"+i, "content", new JSONObject().put("value", i).put("text", "some text to transfer"));
+        }
+        stubServer.start(5000);
+        client = JStorageClient.getDevClient("localhost", stubServer.getPort(), TOKEN);
+        if(feature.equals("coalescing")){
+            client.setRequestCoalescing(true);
+        }
+    }
+
+    @TearDown
+    public void tearDown(){
+        client.shutdown();
+        stubServer.stop();
+    }
+
+    @Benchmark
+    public void getDataSet(Blackhole blackhole) throws Exception {
+        blackhole.consume(client.newRequest(RequestType.DataAction_GetDataSet)
+                .setArg("database", "benchmark")
+                .setArg("table", "table")
+                .setArg("identifier", "dataset"+ThreadLocalRandom.current().nextInt(DATASETS))
+                .build()
+                .complete()
+                .getResult());
+    }
+}
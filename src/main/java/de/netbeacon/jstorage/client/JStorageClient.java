@@ -16,10 +16,23 @@
 
 package de.netbeacon.jstorage.client;
 
+import de.netbeacon.jstorage.client.buffer.BufferPool;
+import de.netbeacon.jstorage.client.cache.DataCache;
+import de.netbeacon.jstorage.client.codec.JacksonJsonCodec;
+import de.netbeacon.jstorage.client.codec.JsonCodec;
 import de.netbeacon.jstorage.client.executor.ScalingExecutor;
+import de.netbeacon.jstorage.client.interceptor.ConcurrencyLimitInterceptor;
+import de.netbeacon.jstorage.client.interceptor.MetricsInterceptor;
 import de.netbeacon.jstorage.client.interceptor.RateLimitInterceptor;
+import de.netbeacon.jstorage.client.mapping.TypeMapper;
+import de.netbeacon.jstorage.client.metrics.DefaultMetricsCollector;
+import de.netbeacon.jstorage.client.metrics.MetricsCollector;
+import de.netbeacon.jstorage.client.request.DeltaUpdater;
 import de.netbeacon.jstorage.client.request.JStorageRequest;
 import de.netbeacon.jstorage.client.request.JStorageRequestBuilder;
+import de.netbeacon.jstorage.client.request.RequestCoalescer;
+import de.netbeacon.jstorage.client.request.RequestCompression;
+import de.netbeacon.jstorage.client.request.RequestTemplates;
 import de.netbeacon.jstorage.client.request.RequestType;
 import de.netbeacon.jstorage.client.result.JStorageResult;
 import okhttp3.Dispatcher;
@@ -33,6 +46,10 @@ import java.security.KeyManagementException;
 import java.security.NoSuchAlgorithmException;
 import java.security.SecureRandom;
 import java.security.cert.CertificateException;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 
 /**
@@ -40,8 +57,25 @@ import java.util.concurrent.TimeUnit;
  */
 public class JStorageClient {
 
+    private static final int MIN_CONCURRENT_REQUESTS = 2;
+    private static final int MAX_CONCURRENT_REQUESTS = 512;
+    private static final int BUFFERS_PER_SIZE_CLASS = 64;
+
     private final OkHttpClient okHttpClient;
     private final ScalingExecutor scalingExecutor;
+    private final ScheduledExecutorService scheduler;
+    private final RateLimitInterceptor rateLimitInterceptor = new RateLimitInterceptor();
+    private final ConcurrencyLimitInterceptor concurrencyLimitInterceptor;
+    private volatile MetricsCollector metricsCollector = new DefaultMetricsCollector();
+    private volatile JsonCodec jsonCodec = new JacksonJsonCodec();
+    private volatile boolean captureStackTraces = true;
+    private final TypeMapper typeMapper = new TypeMapper();
+    private final RequestTemplates requestTemplates = new RequestTemplates(this);
+    private final DeltaUpdater deltaUpdater = new DeltaUpdater(this);
+    private volatile RequestCoalescer requestCoalescer;
+    private volatile DataCache dataCache;
+    private volatile RequestCompression requestCompression;
+    private volatile BufferPool bufferPool;
 
     private final String host;
     private final int port;
@@ -62,19 +96,30 @@ public class JStorageClient {
      * @param maxWaitingTasks size of the queue on how many tasks can wait for execution
      * @param keepAliveTime unit of time after which the additional threads shut down after being idle
      * @param timeUnit timeunit of keepalive time
+     * @param executorMode mode of the executor running the callbacks
      * @param ignoreSSL ignores bad ssl certs (should only be used for dev operations during local tests)
      * @throws KeyManagementException on exception
      * @throws NoSuchAlgorithmException on exception
      */
-    private JStorageClient(String host, int port, String userId, String password, String loginToken, int baseThreads, int additionalThreads, int maxWaitingTasks, int keepAliveTime, TimeUnit timeUnit, boolean ignoreSSL) throws KeyManagementException, NoSuchAlgorithmException {
+    private JStorageClient(String host, int port, String userId, String password, String loginToken, int baseThreads, int additionalThreads, int maxWaitingTasks, int keepAliveTime, TimeUnit timeUnit, ScalingExecutor.Mode executorMode, boolean ignoreSSL) throws KeyManagementException, NoSuchAlgorithmException {
         this.host = host;
         this.port = port;
         this.userId = userId;
         this.password = password;
         this.loginToken = loginToken;
 
-        this.scalingExecutor = new ScalingExecutor(baseThreads, additionalThreads, maxWaitingTasks, keepAliveTime, timeUnit);
-        this.okHttpClient = getOKHTTPClient((additionalThreads+baseThreads)*2, (additionalThreads+baseThreads)*2, ignoreSSL);
+        this.scalingExecutor = new ScalingExecutor(baseThreads, additionalThreads, maxWaitingTasks, keepAliveTime, timeUnit, executorMode);
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "JStorageClient-Scheduler");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.scalingExecutor.setMetricsCollector(metricsCollector);
+        this.rateLimitInterceptor.setMetricsCollector(metricsCollector);
+        Dispatcher dispatcher = new Dispatcher();
+        this.concurrencyLimitInterceptor = new ConcurrencyLimitInterceptor(dispatcher, (additionalThreads+baseThreads)*2, MIN_CONCURRENT_REQUESTS, MAX_CONCURRENT_REQUESTS);
+        this.concurrencyLimitInterceptor.setMetricsCollector(metricsCollector);
+        this.okHttpClient = getOKHTTPClient(dispatcher, ignoreSSL);
     }
 
     /**
@@ -154,7 +199,7 @@ public class JStorageClient {
      */
     public static JStorageClient getDevClient(String host, int port, String userId, String password){
         try{
-            return new JStorageClient(host, port, userId, password, null, 2, 4, 128, 10, TimeUnit.SECONDS, true);
+            return new JStorageClient(host, port, userId, password, null, 2, 4, 128, 10, TimeUnit.SECONDS, ScalingExecutor.Mode.PLATFORM, true);
         }catch (Exception e){
             return null;
         }
@@ -172,7 +217,7 @@ public class JStorageClient {
      */
     public static JStorageClient getDevClient(String host, int port, String loginToken){
         try{
-            return new JStorageClient(host, port, null, null, loginToken, 2, 4, 128, 10, TimeUnit.SECONDS, true);
+            return new JStorageClient(host, port, null, null, loginToken, 2, 4, 128, 10, TimeUnit.SECONDS, ScalingExecutor.Mode.PLATFORM, true);
         }catch (Exception e){
             return null;
         }
@@ -196,8 +241,30 @@ public class JStorageClient {
      * @return JStorageClient
      */
     public static JStorageClient getClient(String host, int port, String userId, String password, String loginToken, int baseThreads, int additionalThreads, int maxWaitingTasks, int keepAliveTime, TimeUnit timeUnit){
+        return getClient(host, port, userId, password, loginToken, baseThreads, additionalThreads, maxWaitingTasks, keepAliveTime, timeUnit, ScalingExecutor.Mode.PLATFORM);
+    }
+
+    /**
+     * Can be used to get a new client with a variety of setting available
+     * <br>
+     * returns null on exception
+     *
+     * @param host hostname of the jstorage server
+     * @param port port of the jstorage server
+     * @param userId of the user
+     * @param password of the user
+     * @param loginToken of the user
+     * @param baseThreads number of threads always available
+     * @param additionalThreads number of threads additionally available
+     * @param maxWaitingTasks size of the queue on how many tasks can wait for execution
+     * @param keepAliveTime unit of time after which the additional threads shut down after being idle
+     * @param timeUnit timeunit of keepalive time
+     * @param executorMode mode of the executor running the callbacks. VIRTUAL runs each callback on its own virtual thread, allowing baseThreads+additionalThreads+maxWaitingTasks callbacks at once
+     * @return JStorageClient
+     */
+    public static JStorageClient getClient(String host, int port, String userId, String password, String loginToken, int baseThreads, int additionalThreads, int maxWaitingTasks, int keepAliveTime, TimeUnit timeUnit, ScalingExecutor.Mode executorMode){
         try{
-            return new JStorageClient(host, port, userId, password, loginToken, baseThreads, additionalThreads, maxWaitingTasks, keepAliveTime, timeUnit, false);
+            return new JStorageClient(host, port, userId, password, loginToken, baseThreads, additionalThreads, maxWaitingTasks, keepAliveTime, timeUnit, executorMode, false);
         }catch (Exception e){
             return null;
         }
@@ -209,18 +276,126 @@ public class JStorageClient {
     public void shutdown(){
         try {
             this.scalingExecutor.shutdown();
+            this.scheduler.shutdown();
             this.okHttpClient.dispatcher().executorService().shutdown();
             this.okHttpClient.connectionPool().evictAll();
             this.okHttpClient.cache().close();
         }catch (Exception ignore){}
     }
 
+    /**
+     * Can be used to let identical GET requests which are running at the same time share a single call
+     * @param enabled whether requests should be coalesced
+     */
+    public void setRequestCoalescing(boolean enabled){
+        if(enabled && this.requestCoalescer == null){
+            this.requestCoalescer = new RequestCoalescer();
+        }else if(!enabled){
+            this.requestCoalescer = null;
+        }
+    }
+
+    /**
+     * Can be used to enable caching of DataAction_GetDataSet and DataAction_GetDataType results
+     * <br>
+     * Cached results are invalidated by a NotificationManager of this client while it is connected,
+     * otherwise they expire after the fallback ttl
+     *
+     * @param maxWeight max number of bytes the cached results may take up
+     * @param maxEntries max number of cached results
+     * @param fallbackTtl time in ms after which a result expires if it is not covered by notifications
+     */
+    public void enableCache(long maxWeight, int maxEntries, long fallbackTtl){
+        this.dataCache = new DataCache(maxWeight, maxEntries, fallbackTtl);
+    }
+
+    /**
+     * Can be used to disable caching of results
+     */
+    public void disableCache(){
+        this.dataCache = null;
+    }
+
+    /**
+     * Can be used to compress request bodies with gzip
+     * <br>
+     * Only worth it for large, repetitive payloads, the server has to accept gzip encoded bodies for the given RequestTypes
+     *
+     * @param minSize number of bytes from which on bodies should be compressed
+     * @param requestTypes of which the bodies should be compressed, DataAction_UpdateDataType and CacheAction_CreateCachedData if none are given
+     */
+    public void enableCompression(long minSize, RequestType... requestTypes){
+        if(requestTypes.length == 0){
+            this.requestCompression = new RequestCompression(minSize);
+        }else{
+            this.requestCompression = new RequestCompression(minSize, EnumSet.copyOf(Arrays.asList(requestTypes)));
+        }
+    }
+
+    /**
+     * Can be used to disable compression of request bodies
+     */
+    public void disableCompression(){
+        this.requestCompression = null;
+    }
+
+    /**
+     * Can be used to borrow the buffers of request payloads and results from a pool instead of allocating them
+     * <br>
+     * Results of requests which are not cached or coalesced will then be held in pooled buffers and should be
+     * released with JStorageResult#release() once they are no longer needed. Results which are not released are
+     * garbage collected as usual, the pool only misses their buffers.
+     *
+     * @param maxBufferSize size of the largest pooled buffer, larger bodies are not pooled
+     * @param direct whether buffers should be allocated off heap
+     */
+    public void enableBufferPool(int maxBufferSize, boolean direct){
+        this.bufferPool = new BufferPool(maxBufferSize, BUFFERS_PER_SIZE_CLASS, direct);
+    }
+
+    /**
+     * Can be used to disable pooling of buffers
+     */
+    public void disableBufferPool(){
+        this.bufferPool = null;
+    }
+
+    /**
+     * Can be used to replace the MetricsCollector receiving the measurements of this client
+     * @param metricsCollector MetricsCollector
+     */
+    public void setMetricsCollector(MetricsCollector metricsCollector){
+        this.metricsCollector = metricsCollector;
+        this.scalingExecutor.setMetricsCollector(metricsCollector);
+        this.rateLimitInterceptor.setMetricsCollector(metricsCollector);
+        this.concurrencyLimitInterceptor.setMetricsCollector(metricsCollector);
+    }
+
+    /**
+     * Can be used to replace the JsonCodec used for payloads, results and notifications. Changes will only be applied to new Requests
+     * @param jsonCodec JsonCodec
+     */
+    public void setJsonCodec(JsonCodec jsonCodec){
+        this.jsonCodec = jsonCodec;
+    }
+
+    /**
+     * Can be used to disable capturing stack traces for errors reported by the server
+     * <br>
+     * Such errors (e.g. a DataSet not being found) are expected and cheap to create without stack trace
+     * @param captureStackTraces false to create them without stack trace
+     */
+    public void setCaptureStackTraces(boolean captureStackTraces){
+        this.captureStackTraces = captureStackTraces;
+    }
+
     /**
      * Used to change the lohin token of the current JStorageClient. Changes will only be applied to new Requests
      * @param loginToken logintoken
      */
     public void setLoginToken(String loginToken){
         this.loginToken = loginToken;
+        this.requestTemplates.invalidate();
     }
 
     /**
@@ -231,6 +406,7 @@ public class JStorageClient {
     public void setLogin(String userId, String password){
         this.userId = userId;
         this.password = password;
+        this.requestTemplates.invalidate();
     }
 
     /**
@@ -245,7 +421,9 @@ public class JStorageClient {
         JStorageRequest request = requestBuilder.build();
         try{
             JStorageResult result = request.complete();
-            return result.getResultRaw().length > 0;
+            boolean success = result.getResultSize() > 0;
+            result.release();
+            return success;
         }catch (Exception e){
             return false;
         }
@@ -276,6 +454,118 @@ public class JStorageClient {
         return scalingExecutor;
     }
 
+    /**
+     * Used to get the interceptor keeping track of the rate limit
+     * @return RateLimitInterceptor
+     */
+    public RateLimitInterceptor getRateLimitInterceptor() {
+        return rateLimitInterceptor;
+    }
+
+    /**
+     * Used to get the interceptor adapting the number of concurrent requests
+     * <br>
+     * Provides the current limit, the number of requests in flight and the number of requests waiting
+     * @return ConcurrencyLimitInterceptor
+     */
+    public ConcurrencyLimitInterceptor getConcurrencyLimitInterceptor() {
+        return concurrencyLimitInterceptor;
+    }
+
+    /**
+     * Used to get the MetricsCollector receiving the measurements of this client
+     * <br>
+     * This is a DefaultMetricsCollector unless replaced
+     * @return MetricsCollector
+     */
+    public MetricsCollector getMetricsCollector() {
+        return metricsCollector;
+    }
+
+    /**
+     * Used to get the JsonCodec used for payloads, results and notifications
+     * <br>
+     * This is a JacksonJsonCodec unless replaced
+     * @return JsonCodec
+     */
+    public JsonCodec getJsonCodec() {
+        return jsonCodec;
+    }
+
+    /**
+     * Used to check whether stack traces are captured for errors reported by the server
+     * @return boolean
+     */
+    public boolean isCaptureStackTraces() {
+        return captureStackTraces;
+    }
+
+    /**
+     * Used to get the TypeMapper used to map results and payloads to and from objects
+     * <br>
+     * Custom TypeCodecs can be registered here
+     * @return TypeMapper
+     */
+    public TypeMapper getTypeMapper() {
+        return typeMapper;
+    }
+
+    /**
+     * Used to get the prebuilt parts of the requests of this client
+     * @return RequestTemplates
+     */
+    public RequestTemplates getRequestTemplates() {
+        return requestTemplates;
+    }
+
+    /**
+     * Used to get the DeltaUpdater building DataAction_UpdateDataType requests which only contain changed keys
+     * @return DeltaUpdater
+     */
+    public DeltaUpdater getDeltaUpdater() {
+        return deltaUpdater;
+    }
+
+    /**
+     * Used to get the scheduler used for delayed tasks
+     * @return ScheduledExecutorService
+     */
+    public ScheduledExecutorService getScheduler() {
+        return scheduler;
+    }
+
+    /**
+     * Used to get the coalescer for GET requests
+     * @return RequestCoalescer or null if coalescing is disabled
+     */
+    public RequestCoalescer getRequestCoalescer() {
+        return requestCoalescer;
+    }
+
+    /**
+     * Used to get the cache for DataAction_GetDataSet and DataAction_GetDataType results
+     * @return DataCache or null if caching is disabled
+     */
+    public DataCache getDataCache() {
+        return dataCache;
+    }
+
+    /**
+     * Used to get the BufferPool providing the buffers of payloads and results
+     * @return BufferPool or null if disabled
+     */
+    public BufferPool getBufferPool() {
+        return bufferPool;
+    }
+
+    /**
+     * Used to get the RequestCompression compressing request bodies
+     * @return RequestCompression or null if disabled
+     */
+    public RequestCompression getRequestCompression() {
+        return requestCompression;
+    }
+
     /**
      * Used to get the user id
      * @return userid
@@ -318,20 +608,15 @@ public class JStorageClient {
 
     /**
      * Used to get an okhttp client
-     * @param maxRequests number of reqzests which could be sent concurrently
-     * @param maxRequestsPerHost number of requests which could be send to the same host concurrently
+     * @param dispatcher of which the number of concurrent requests will be adjusted by the ConcurrencyLimitInterceptor
      * @param sslDontCare ignores bad ssl certs (should only be used for dev operations during local tests)
      * @return OKHTTPClient
      * @throws NoSuchAlgorithmException on exception
      * @throws KeyManagementException on exception
      */
-    private OkHttpClient getOKHTTPClient(int maxRequests, int maxRequestsPerHost, boolean sslDontCare) throws NoSuchAlgorithmException, KeyManagementException {
-
-        Dispatcher dispatcher = new Dispatcher();
-        dispatcher.setMaxRequests(maxRequests);
-        dispatcher.setMaxRequestsPerHost(maxRequestsPerHost);
+    private OkHttpClient getOKHTTPClient(Dispatcher dispatcher, boolean sslDontCare) throws NoSuchAlgorithmException, KeyManagementException {
 
-        OkHttpClient.Builder builder = new OkHttpClient.Builder().addInterceptor(new RateLimitInterceptor()).dispatcher(dispatcher);
+        OkHttpClient.Builder builder = new OkHttpClient.Builder().addInterceptor(rateLimitInterceptor).addInterceptor(concurrencyLimitInterceptor).addInterceptor(new MetricsInterceptor(this)).dispatcher(dispatcher);
 
         if(sslDontCare){
             final TrustManager[] trustAllCerts = new TrustManager[]{
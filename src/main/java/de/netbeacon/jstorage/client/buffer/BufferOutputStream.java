@@ -0,0 +1,122 @@
+/*
+ *     Copyright 2020 Horstexplorer @ https://www.netbeacon.de
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package de.netbeacon.jstorage.client.buffer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+
+/**
+ * OutputStream writing into buffers borrowed from a BufferPool
+ * <br>
+ * Once the current buffer is full a buffer of twice the size is borrowed and the old one released.
+ */
+public class BufferOutputStream extends OutputStream {
+
+    private final BufferPool bufferPool;
+    private PooledBuffer pooledBuffer;
+
+    /**
+     * Creates a new instance of this class
+     * @param bufferPool to borrow the buffers from
+     * @param initialCapacity of the first buffer
+     */
+    public BufferOutputStream(BufferPool bufferPool, int initialCapacity){
+        this.bufferPool = bufferPool;
+        this.pooledBuffer = bufferPool.borrow(initialCapacity);
+    }
+
+    @Override
+    public void write(int b){
+        ensureRemaining(1).put((byte) b);
+    }
+
+    @Override
+    public void write(byte[] bytes, int offset, int length){
+        ensureRemaining(length).put(bytes, offset, length);
+    }
+
+    /**
+     * Reads the channel to its end into the buffer
+     * @param channel to read from
+     * @throws IOException on exception
+     */
+    public void writeFrom(ReadableByteChannel channel) throws IOException {
+        while(true){
+            ByteBuffer byteBuffer = ensureRemaining(1);
+            if(channel.read(byteBuffer) < 0){
+                return;
+            }
+        }
+    }
+
+    /**
+     * Used to get the number of bytes written
+     * @return int
+     */
+    public int size(){
+        return pooledBuffer.buffer().position();
+    }
+
+    /**
+     * Used to get the written bytes, the stream must not be used afterwards
+     * <br>
+     * The buffer is flipped to contain the written bytes and has to be released by the caller
+     * @return PooledBuffer
+     */
+    public PooledBuffer toPooledBuffer(){
+        PooledBuffer pooledBuffer = this.pooledBuffer;
+        this.pooledBuffer = null;
+        pooledBuffer.buffer().flip();
+        return pooledBuffer;
+    }
+
+    /**
+     * Releases the buffer if it has not been taken by toPooledBuffer()
+     */
+    @Override
+    public void close(){
+        if(pooledBuffer != null){
+            pooledBuffer.release();
+            pooledBuffer = null;
+        }
+    }
+
+    /**
+     * Internal helper to make sure the buffer can take the given number of bytes
+     * @param length number of bytes which will be written
+     * @return ByteBuffer
+     */
+    private ByteBuffer ensureRemaining(int length){
+        ByteBuffer byteBuffer = pooledBuffer.buffer();
+        if(byteBuffer.remaining() >= length){
+            return byteBuffer;
+        }
+        int required = byteBuffer.position() + length;
+        if(required < 0){
+            throw new OutOfMemoryError("Required Buffer Size Exceeds Integer.MAX_VALUE");
+        }
+        PooledBuffer larger = bufferPool.borrow((int) Math.min(Integer.MAX_VALUE - 8, Math.max(required, byteBuffer.capacity() * 2L)));
+        byteBuffer.flip();
+        larger.buffer().put(byteBuffer);
+        pooledBuffer.release();
+        pooledBuffer = larger;
+        return larger.buffer();
+    }
+}
@@ -0,0 +1,293 @@
+/*
+ *     Copyright 2020 Horstexplorer @ https://www.netbeacon.de
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package de.netbeacon.jstorage.client.buffer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.ref.PhantomReference;
+import java.lang.ref.ReferenceQueue;
+import java.nio.ByteBuffer;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Pool of ByteBuffers for request and response bodies
+ * <br>
+ * Buffers are grouped in size classes of powers of two, from MIN_BUFFER_SIZE up to the max buffer size. Each class
+ * keeps a fixed number of free buffers in an array of slots, borrowing and releasing do not allocate or lock.
+ * Larger requests are served with unpooled buffers.
+ * <br>
+ * With leak detection enabled (default if debug logging is enabled for this class) buffers which are garbage collected
+ * without being released are logged with the stack trace of the borrow.
+ */
+public class BufferPool {
+
+    public static final int MIN_BUFFER_SIZE = 512;
+    private static final int MIN_SHIFT = Integer.numberOfTrailingZeros(MIN_BUFFER_SIZE);
+
+    private final int maxBufferSize;
+    private final boolean direct;
+    private final AtomicReferenceArray<ByteBuffer>[] classes;
+    private volatile boolean leakDetection;
+
+    private final Set<LeakTracker> trackers = ConcurrentHashMap.newKeySet();
+    private final ReferenceQueue<PooledBuffer> referenceQueue = new ReferenceQueue<>();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder leaks = new LongAdder();
+
+    private final Logger logger = LoggerFactory.getLogger(BufferPool.class);
+
+    /**
+     * Creates a new instance of this class
+     * @param maxBufferSize size of the largest pooled buffer, rounded up to a power of two
+     * @param buffersPerClass max number of free buffers kept per size class
+     * @param direct whether buffers should be allocated off heap
+     */
+    @SuppressWarnings("unchecked")
+    public BufferPool(int maxBufferSize, int buffersPerClass, boolean direct){
+        this.maxBufferSize = sizeOf(index(Math.max(MIN_BUFFER_SIZE, Math.min(maxBufferSize, 1 << 30))));
+        this.direct = direct;
+        this.classes = (AtomicReferenceArray<ByteBuffer>[]) new AtomicReferenceArray<?>[index(this.maxBufferSize) + 1];
+        for(int i = 0; i < classes.length; i++){
+            classes[i] = new AtomicReferenceArray<>(Math.max(1, buffersPerClass));
+        }
+        this.leakDetection = logger.isDebugEnabled();
+    }
+
+    /**
+     * Can be used to enable or disable leak detection
+     * <br>
+     * Tracking captures a stack trace for every borrowed buffer and should only be used for debugging
+     * @param leakDetection whether buffers which are not released should be logged
+     */
+    public void setLeakDetection(boolean leakDetection){
+        this.leakDetection = leakDetection;
+    }
+
+    /**
+     * Used to borrow a buffer
+     * <br>
+     * The buffer is cleared, its capacity is at least the requested one. It has to be released when no longer needed.
+     * @param minCapacity number of bytes needed
+     * @return PooledBuffer
+     */
+    public PooledBuffer borrow(int minCapacity){
+        PooledBuffer pooledBuffer;
+        if(minCapacity > maxBufferSize){
+            misses.increment();
+            pooledBuffer = new PooledBuffer(this, allocate(minCapacity));
+        }else{
+            int index = index(minCapacity);
+            ByteBuffer byteBuffer = take(classes[index]);
+            if(byteBuffer != null){
+                hits.increment();
+                byteBuffer.clear();
+            }else{
+                misses.increment();
+                byteBuffer = allocate(sizeOf(index));
+            }
+            pooledBuffer = new PooledBuffer(this, byteBuffer);
+        }
+        if(leakDetection){
+            reportLeaks();
+            LeakTracker leakTracker = new LeakTracker(pooledBuffer, referenceQueue);
+            trackers.add(leakTracker);
+            pooledBuffer.leakTracker = leakTracker;
+        }
+        return pooledBuffer;
+    }
+
+    /**
+     * Used to get the size of the largest pooled buffer
+     * @return bytes
+     */
+    public int getMaxBufferSize(){
+        return maxBufferSize;
+    }
+
+    /**
+     * Used to check whether the buffers are allocated off heap
+     * @return boolean
+     */
+    public boolean isDirect(){
+        return direct;
+    }
+
+    /**
+     * Used to get the number of borrows served from the pool
+     * @return long
+     */
+    public long getHits(){
+        return hits.sum();
+    }
+
+    /**
+     * Used to get the number of borrows which needed a new buffer
+     * @return long
+     */
+    public long getMisses(){
+        return misses.sum();
+    }
+
+    /**
+     * Used to get the number of buffers detected as not released
+     * @return long
+     */
+    public long getLeaks(){
+        reportLeaks();
+        return leaks.sum();
+    }
+
+    /**
+     * Used to get the number of tracked buffers which are currently borrowed
+     * @return int, 0 if leak detection is disabled
+     */
+    public int getBorrowed(){
+        return trackers.size();
+    }
+
+    /**
+     * Returns a buffer to the pool, called by PooledBuffer
+     * @param pooledBuffer to return
+     */
+    void release(PooledBuffer pooledBuffer){
+        LeakTracker leakTracker = pooledBuffer.leakTracker;
+        if(leakTracker != null){
+            trackers.remove(leakTracker);
+            leakTracker.clear();
+        }
+        ByteBuffer byteBuffer = pooledBuffer.byteBuffer;
+        int index = index(byteBuffer.capacity());
+        // pooled buffers have the exact size of their class, larger ones are left to the gc
+        if(index < classes.length && byteBuffer.capacity() == sizeOf(index)){
+            put(classes[index], byteBuffer);
+        }
+    }
+
+    /**
+     * Stops tracking a buffer which will not be returned, called by PooledBuffer
+     * @param pooledBuffer to discard
+     */
+    void discard(PooledBuffer pooledBuffer){
+        LeakTracker leakTracker = pooledBuffer.leakTracker;
+        if(leakTracker != null){
+            trackers.remove(leakTracker);
+            leakTracker.clear();
+        }
+    }
+
+    /**
+     * Internal helper to log buffers which have been garbage collected without being released
+     */
+    private void reportLeaks(){
+        LeakTracker leakTracker;
+        while((leakTracker = (LeakTracker) referenceQueue.poll()) != null){
+            if(trackers.remove(leakTracker)){
+                leaks.increment();
+                logger.warn("Buffer Has Not Been Released Before Being Garbage Collected", leakTracker.borrowedAt);
+            }
+        }
+    }
+
+    /**
+     * Internal helper to allocate a new buffer
+     * @param capacity of the buffer
+     * @return ByteBuffer
+     */
+    private ByteBuffer allocate(int capacity){
+        return direct ? ByteBuffer.allocateDirect(capacity) : ByteBuffer.allocate(capacity);
+    }
+
+    /**
+     * Internal helper to take a free buffer from a size class
+     * @param slots of the class
+     * @return ByteBuffer or null if none is free
+     */
+    private static ByteBuffer take(AtomicReferenceArray<ByteBuffer> slots){
+        int length = slots.length();
+        int start = (int) (Thread.currentThread().getId() % length);
+        for(int i = 0; i < length; i++){
+            int slot = (start + i) % length;
+            ByteBuffer byteBuffer = slots.get(slot);
+            if(byteBuffer != null && slots.compareAndSet(slot, byteBuffer, null)){
+                return byteBuffer;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Internal helper to put a free buffer into a size class, dropping it if the class is full
+     * @param slots of the class
+     * @param byteBuffer to add
+     */
+    private static void put(AtomicReferenceArray<ByteBuffer> slots, ByteBuffer byteBuffer){
+        int length = slots.length();
+        int start = (int) (Thread.currentThread().getId() % length);
+        for(int i = 0; i < length; i++){
+            int slot = (start + i) % length;
+            if(slots.get(slot) == null && slots.compareAndSet(slot, null, byteBuffer)){
+                return;
+            }
+        }
+    }
+
+    /**
+     * Internal helper to get the size class of a capacity
+     * @param capacity in bytes
+     * @return index
+     */
+    private static int index(int capacity){
+        if(capacity <= MIN_BUFFER_SIZE){
+            return 0;
+        }
+        return 32 - Integer.numberOfLeadingZeros(capacity - 1) - MIN_SHIFT;
+    }
+
+    /**
+     * Internal helper to get the size of the buffers of a size class
+     * @param index of the class
+     * @return bytes
+     */
+    private static int sizeOf(int index){
+        return MIN_BUFFER_SIZE << index;
+    }
+
+    /**
+     * Remembers where a buffer has been borrowed
+     */
+    static class LeakTracker extends PhantomReference<PooledBuffer> {
+
+        private final Throwable borrowedAt;
+
+        /**
+         * Creates a new instance of this class
+         * @param pooledBuffer to track
+         * @param referenceQueue notified once the buffer has been garbage collected
+         */
+        private LeakTracker(PooledBuffer pooledBuffer, ReferenceQueue<PooledBuffer> referenceQueue){
+            super(pooledBuffer, referenceQueue);
+            this.borrowedAt = new Throwable("Buffer Borrowed Here");
+        }
+    }
+}
@@ -0,0 +1,67 @@
+/*
+ *     Copyright 2020 Horstexplorer @ https://www.netbeacon.de
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package de.netbeacon.jstorage.client.buffer;
+
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * InputStream reading the remaining bytes of a ByteBuffer, used for direct buffers which have no backing array
+ */
+public class ByteBufferInputStream extends InputStream {
+
+    private final ByteBuffer byteBuffer;
+
+    /**
+     * Creates a new instance of this class
+     * @param byteBuffer to read, its position will not be changed
+     */
+    public ByteBufferInputStream(ByteBuffer byteBuffer){
+        this.byteBuffer = byteBuffer.duplicate();
+    }
+
+    @Override
+    public int read(){
+        return byteBuffer.hasRemaining() ? byteBuffer.get() & 0xff : -1;
+    }
+
+    @Override
+    public int read(byte[] bytes, int offset, int length){
+        if(length == 0){
+            return 0;
+        }
+        if(!byteBuffer.hasRemaining()){
+            return -1;
+        }
+        int read = Math.min(length, byteBuffer.remaining());
+        byteBuffer.get(bytes, offset, read);
+        return read;
+    }
+
+    @Override
+    public long skip(long n){
+        int skipped = (int) Math.max(0, Math.min(n, byteBuffer.remaining()));
+        byteBuffer.position(byteBuffer.position() + skipped);
+        return skipped;
+    }
+
+    @Override
+    public int available(){
+        return byteBuffer.remaining();
+    }
+}
@@ -0,0 +1,82 @@
+/*
+ *     Copyright 2020 Horstexplorer @ https://www.netbeacon.de
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package de.netbeacon.jstorage.client.buffer;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+
+/**
+ * A ByteBuffer borrowed from a BufferPool
+ * <br>
+ * The buffer must not be used after it has been released, releasing it more than once has no effect.
+ */
+public class PooledBuffer {
+
+    private static final AtomicIntegerFieldUpdater<PooledBuffer> RELEASED = AtomicIntegerFieldUpdater.newUpdater(PooledBuffer.class, "released");
+
+    private final BufferPool bufferPool;
+    final ByteBuffer byteBuffer;
+    BufferPool.LeakTracker leakTracker;
+    private volatile int released;
+
+    /**
+     * Creates a new instance of this class
+     * @param bufferPool the buffer belongs to
+     * @param byteBuffer the actual buffer
+     */
+    PooledBuffer(BufferPool bufferPool, ByteBuffer byteBuffer){
+        this.bufferPool = bufferPool;
+        this.byteBuffer = byteBuffer;
+    }
+
+    /**
+     * Used to get the buffer
+     * @return ByteBuffer
+     */
+    public ByteBuffer buffer(){
+        return byteBuffer;
+    }
+
+    /**
+     * Returns the buffer to its pool
+     */
+    public void release(){
+        if(RELEASED.compareAndSet(this, 0, 1)){
+            bufferPool.release(this);
+        }
+    }
+
+    /**
+     * Gives up the buffer without returning it to its pool
+     * <br>
+     * Can be used if the buffer might still be in use by another thread, it will be garbage collected instead
+     */
+    public void discard(){
+        if(RELEASED.compareAndSet(this, 0, 1)){
+            bufferPool.discard(this);
+        }
+    }
+
+    /**
+     * Used to check whether the buffer has been released or discarded
+     * @return boolean
+     */
+    public boolean isReleased(){
+        return released != 0;
+    }
+}
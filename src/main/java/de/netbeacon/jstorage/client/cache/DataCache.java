@@ -0,0 +1,417 @@
+/*
+ *     Copyright 2020 Horstexplorer @ https://www.netbeacon.de
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.netbeacon.jstorage.client.cache;
+
+import de.netbeacon.jstorage.client.notification.objects.listener.NotificationListener;
+import de.netbeacon.jstorage.client.notification.objects.notifiation.DataNotification;
+import de.netbeacon.jstorage.client.notification.objects.notifiation.NotificationGap;
+import de.netbeacon.jstorage.client.request.JStorageRequest;
+import de.netbeacon.jstorage.client.request.RequestType;
+import de.netbeacon.jstorage.client.result.JStorageResult;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounded read-through cache for DataAction_GetDataSet and DataAction_GetDataType results
+ * <br>
+ * Entries are invalidated by notifications while the notification socket is connected and covers them,
+ * otherwise they expire after the fallback ttl. The least recently used entries are evicted once the
+ * size or weight limit is reached.
+ * <br>
+ * Results of requests which were running while an overlapping scope got invalidated are not cached. Invalidations
+ * of other scopes do not affect them.
+ */
+public class DataCache implements NotificationListener {
+
+    private static final int INVALIDATION_LOG_SIZE = 1024;
+
+    private final long maxWeight;
+    private final int maxEntries;
+    private final long fallbackTtl;
+
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final TreeMap<String, Entry> index = new TreeMap<>();
+    private long weight;
+
+    private final AtomicLong epoch = new AtomicLong();
+    private final ArrayDeque<Invalidation> invalidationLog = new ArrayDeque<>();
+    private volatile boolean invalidationActive;
+    private volatile long invalidationActiveSince;
+    private volatile HashMap<String, ArrayList<String>> invalidationScope = new HashMap<>();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder invalidations = new LongAdder();
+
+    /**
+     * Creates a new instance of this class
+     * @param maxWeight max number of bytes the cached results may take up
+     * @param maxEntries max number of cached results
+     * @param fallbackTtl time in ms after which an entry expires if it is not covered by notifications
+     */
+    public DataCache(long maxWeight, int maxEntries, long fallbackTtl){
+        this.maxWeight = maxWeight;
+        this.maxEntries = maxEntries;
+        this.fallbackTtl = fallbackTtl;
+    }
+
+    /**
+     * Checks whether results of the given request can be cached
+     * @param request to check
+     * @return boolean
+     */
+    public static boolean isCacheable(JStorageRequest request){
+        return request.getRequestType() == RequestType.DataAction_GetDataSet || request.getRequestType() == RequestType.DataAction_GetDataType;
+    }
+
+    /**
+     * Used to get the current invalidation epoch which needs to be passed to {@link #put(JStorageRequest, JStorageResult, long)}
+     * <br>
+     * This should be retrieved before the request is sent, to not cache results which might have been outdated during the request.
+     * The epoch increases with every invalidation
+     * @return epoch
+     */
+    public long getEpoch(){
+        return epoch.get();
+    }
+
+    /**
+     * Used to get a cached result
+     * @param request to get the result for
+     * @return JStorageResult or null if not cached
+     */
+    public JStorageResult get(JStorageRequest request){
+        String key = key(request);
+        synchronized (this){
+            Entry entry = entries.get(key);
+            if(entry != null && isValid(entry)){
+                hits.increment();
+                return entry.result;
+            }
+            if(entry != null){
+                remove(key);
+            }
+        }
+        misses.increment();
+        return null;
+    }
+
+    /**
+     * Used to add a result to the cache
+     * @param request which returned the result
+     * @param result of the request
+     * @param epoch as returned by {@link #getEpoch()} before the request has been sent, the result is dropped if an
+     *              overlapping scope got invalidated since
+     */
+    public void put(JStorageRequest request, JStorageResult result, long epoch){
+        String key = key(request);
+        Entry entry = new Entry(request.getArgs().get("database"), request.getArgs().get("table"), result, key.length()*2L+result.getResultSize());
+        if(entry.weight > maxWeight){
+            return;
+        }
+        synchronized (this){
+            if(isInvalidatedSince(key, epoch)){
+                return;
+            }
+            remove(key);
+            entries.put(key, entry);
+            index.put(key, entry);
+            weight += entry.weight;
+            Iterator<Map.Entry<String, Entry>> iterator = entries.entrySet().iterator();
+            while((weight > maxWeight || entries.size() > maxEntries) && iterator.hasNext()){
+                Map.Entry<String, Entry> eldest = iterator.next();
+                iterator.remove();
+                index.remove(eldest.getKey());
+                weight -= eldest.getValue().weight;
+                evictions.increment();
+            }
+        }
+    }
+
+    @Override
+    public void onNotification(DataNotification dataNotification){
+        if(dataNotification.getContent() == DataNotification.Content.heartbeat){
+            return;
+        }
+        if(dataNotification.getDatabase() == null){
+            invalidateAll();
+        }else if(dataNotification.getTable() == null){
+            invalidate(dataNotification.getDatabase());
+        }else if(dataNotification.getDataset() == null){
+            invalidate(dataNotification.getDatabase(), dataNotification.getTable());
+        }else{
+            // updates to a datatype change the dataset as well
+            invalidate(dataNotification.getDatabase(), dataNotification.getTable(), dataNotification.getDataset());
+        }
+    }
+
+    /**
+     * Removes the entries of the databases and tables covered by the gap
+     * <br>
+     * Entries outside of the scope only rely on the fallback ttl and are kept
+     * @param notificationGap gap
+     */
+    @Override
+    public void onGap(NotificationGap notificationGap){
+        for(Map.Entry<String, List<String>> entry : notificationGap.getScope().entrySet()){
+            if(entry.getValue().isEmpty()){
+                invalidate(entry.getKey());
+            }else{
+                for(String table : entry.getValue()){
+                    invalidate(entry.getKey(), table);
+                }
+            }
+        }
+    }
+
+    /**
+     * Removes all entries matching the given scope
+     * @param scope database, table, dataset, datatype
+     */
+    public void invalidate(String... scope){
+        String key = String.join("/", scope).toLowerCase();
+        synchronized (this){
+            logInvalidation(key);
+            if(remove(key)){
+                invalidations.increment();
+            }
+            for(String subKey : new ArrayList<>(index.subMap(key+"/", key+"/\uffff").keySet())){
+                if(remove(subKey)){
+                    invalidations.increment();
+                }
+            }
+        }
+    }
+
+    /**
+     * Removes all entries
+     */
+    public void invalidateAll(){
+        synchronized (this){
+            logInvalidation("");
+            invalidations.add(entries.size());
+            entries.clear();
+            index.clear();
+            weight = 0;
+        }
+    }
+
+    /**
+     * Used to tell the cache whether notifications are currently received
+     * <br>
+     * Entries are only kept longer than the fallback ttl while this is active
+     * @param active whether the notification socket is connected
+     * @param scope databases and tables which notifications are received for. An empty list means all tables of a database
+     */
+    public void setInvalidationActive(boolean active, HashMap<String, ArrayList<String>> scope){
+        if(active && !invalidationActive){
+            invalidationActiveSince = System.currentTimeMillis();
+        }
+        HashMap<String, ArrayList<String>> normalized = new HashMap<>();
+        if(scope != null){
+            for(Map.Entry<String, ArrayList<String>> entry : scope.entrySet()){
+                ArrayList<String> tables = new ArrayList<>();
+                entry.getValue().forEach(table -> tables.add(table.toLowerCase()));
+                normalized.put(entry.getKey().toLowerCase(), tables);
+            }
+        }
+        invalidationScope = normalized;
+        invalidationActive = active;
+    }
+
+    /**
+     * Used to get the number of cache hits
+     * @return long
+     */
+    public long getHits(){
+        return hits.sum();
+    }
+
+    /**
+     * Used to get the number of cache misses
+     * @return long
+     */
+    public long getMisses(){
+        return misses.sum();
+    }
+
+    /**
+     * Used to get the number of entries which got evicted due to size limits
+     * @return long
+     */
+    public long getEvictions(){
+        return evictions.sum();
+    }
+
+    /**
+     * Used to get the number of entries which got removed by notifications
+     * @return long
+     */
+    public long getInvalidations(){
+        return invalidations.sum();
+    }
+
+    /**
+     * Used to get the number of cached entries
+     * @return int
+     */
+    public synchronized int getSize(){
+        return entries.size();
+    }
+
+    /**
+     * Used to get the number of bytes the cached entries take up
+     * @return long
+     */
+    public synchronized long getWeight(){
+        return weight;
+    }
+
+    /**
+     * Internal helper to check if an entry is still valid
+     * @param entry to check
+     * @return boolean
+     */
+    private boolean isValid(Entry entry){
+        if(invalidationActive && entry.created >= invalidationActiveSince){
+            ArrayList<String> tables = invalidationScope.get(entry.database);
+            if(tables != null && (tables.isEmpty() || tables.contains(entry.table))){
+                return true;
+            }
+        }
+        return System.currentTimeMillis() - entry.created < fallbackTtl;
+    }
+
+    /**
+     * Internal helper to advance the epoch and record the invalidated scope, needs to be called while holding the lock
+     * @param key of the scope, empty for all entries
+     */
+    private void logInvalidation(String key){
+        invalidationLog.addLast(new Invalidation(epoch.incrementAndGet(), key));
+        if(invalidationLog.size() > INVALIDATION_LOG_SIZE){
+            invalidationLog.removeFirst();
+        }
+    }
+
+    /**
+     * Internal helper to check if a scope overlapping the key got invalidated after the given epoch, needs to be called while holding the lock
+     * <br>
+     * Returns true if the invalidations since the epoch are no longer logged
+     * @param key of the entry
+     * @param epoch at which the request has been sent
+     * @return boolean
+     */
+    private boolean isInvalidatedSince(String key, long epoch){
+        if(this.epoch.get() == epoch){
+            return false;
+        }
+        Invalidation oldest = invalidationLog.peekFirst();
+        if(oldest == null || oldest.epoch > epoch + 1){
+            return true;
+        }
+        Iterator<Invalidation> iterator = invalidationLog.descendingIterator();
+        while(iterator.hasNext()){
+            Invalidation invalidation = iterator.next();
+            if(invalidation.epoch <= epoch){
+                return false;
+            }
+            if(overlaps(invalidation.key, key)){
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Internal helper to check if one of the keys covers the other
+     * @param a key, empty for all entries
+     * @param b key, empty for all entries
+     * @return boolean
+     */
+    private static boolean overlaps(String a, String b){
+        if(a.length() > b.length()){
+            String c = a;
+            a = b;
+            b = c;
+        }
+        return a.isEmpty() || b.equals(a) || (b.startsWith(a) && b.charAt(a.length()) == '/');
+    }
+
+    /**
+     * Internal helper to remove an entry, needs to be called while holding the lock
+     * @param key of the entry
+     * @return true if an entry has been removed
+     */
+    private boolean remove(String key){
+        Entry entry = entries.remove(key);
+        if(entry == null){
+            return false;
+        }
+        index.remove(key);
+        weight -= entry.weight;
+        return true;
+    }
+
+    /**
+     * Internal helper to build the key of a request
+     * @param request to build the key for
+     * @return database/table/dataset or database/table/dataset/datatype
+     */
+    private static String key(JStorageRequest request){
+        Map<String, String> args = request.getArgs();
+        if(request.getRequestType() == RequestType.DataAction_GetDataType){
+            return (args.get("database")+"/"+args.get("table")+"/"+args.get("dataset")+"/"+args.get("identifier")).toLowerCase();
+        }
+        return (args.get("database")+"/"+args.get("table")+"/"+args.get("identifier")).toLowerCase();
+    }
+
+    /**
+     * Represents an invalidated scope
+     */
+    private static class Invalidation {
+
+        private final long epoch;
+        private final String key;
+
+        private Invalidation(long epoch, String key){
+            this.epoch = epoch;
+            this.key = key;
+        }
+    }
+
+    /**
+     * Represents a cached result
+     */
+    private static class Entry {
+
+        private final String database;
+        private final String table;
+        private final JStorageResult result;
+        private final long weight;
+        private final long created = System.currentTimeMillis();
+
+        private Entry(String database, String table, JStorageResult result, long weight){
+            this.database = (database != null) ? database.toLowerCase() : null;
+            this.table = (table != null) ? table.toLowerCase() : null;
+            this.result = result;
+            this.weight = weight;
+        }
+    }
+}
@@ -0,0 +1,308 @@
+/*
+ *     Copyright 2020 Horstexplorer @ https://www.netbeacon.de
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package de.netbeacon.jstorage.client.codec;
+
+import com.fasterxml.jackson.core.*;
+import de.netbeacon.jstorage.client.buffer.ByteBufferInputStream;
+import de.netbeacon.jstorage.client.notification.objects.notifiation.DataNotification;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.json.JSONString;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.util.Collection;
+import java.util.Map;
+import java.util.function.BiConsumer;
+
+/**
+ * JsonCodec based on the streaming api of jackson-core
+ * <br>
+ * Builds and reads the org.json objects directly from the jackson tokens, numbers are converted the same way
+ * org.json does. Like org.json an object containing the same key twice is rejected.
+ * Notifications are read without building a JSONObject at all.
+ */
+public class JacksonJsonCodec implements JsonCodec {
+
+    private final JsonFactory jsonFactory = JsonFactory.builder().enable(StreamReadFeature.STRICT_DUPLICATE_DETECTION).build();
+
+    @Override
+    public byte[] encode(JSONObject jsonObject){
+        ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream(256);
+        try(JsonGenerator jsonGenerator = jsonFactory.createGenerator(byteArrayOutputStream, JsonEncoding.UTF8)){
+            write(jsonGenerator, jsonObject);
+        }catch (IOException e){
+            throw new JSONException(e.getMessage());
+        }
+        return byteArrayOutputStream.toByteArray();
+    }
+
+    @Override
+    public void encode(JSONObject jsonObject, OutputStream outputStream) throws IOException {
+        try(JsonGenerator jsonGenerator = jsonFactory.createGenerator(outputStream, JsonEncoding.UTF8)){
+            jsonGenerator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            write(jsonGenerator, jsonObject);
+        }
+    }
+
+    @Override
+    public JSONObject decode(byte[] bytes){
+        try{
+            return decode(jsonFactory.createParser(bytes));
+        }catch (IOException e){
+            throw new JSONException(e.getMessage());
+        }
+    }
+
+    @Override
+    public JSONObject decode(ByteBuffer byteBuffer){
+        try{
+            if(byteBuffer.hasArray()){
+                return decode(jsonFactory.createParser(byteBuffer.array(), byteBuffer.arrayOffset() + byteBuffer.position(), byteBuffer.remaining()));
+            }
+            return decode(jsonFactory.createParser(new ByteBufferInputStream(byteBuffer)));
+        }catch (IOException e){
+            throw new JSONException(e.getMessage());
+        }
+    }
+
+    /**
+     * Internal helper to read an object from a new parser
+     * @param jsonParser to read from, will be closed
+     * @return JSONObject
+     * @throws IOException on exception
+     */
+    private static JSONObject decode(JsonParser jsonParser) throws IOException {
+        try(jsonParser){
+            if(jsonParser.nextToken() != JsonToken.START_OBJECT){
+                throw new JSONException("A JSONObject text must begin with '{'");
+            }
+            return readObject(jsonParser);
+        }
+    }
+
+    @Override
+    public void decode(InputStream inputStream, BiConsumer<String, Object> handler) throws IOException {
+        try(JsonParser jsonParser = jsonFactory.createParser(inputStream)){
+            if(jsonParser.nextToken() != JsonToken.START_OBJECT){
+                throw new JSONException("A JSONObject text must begin with '{'");
+            }
+            while(jsonParser.nextToken() == JsonToken.FIELD_NAME){
+                String key = jsonParser.getCurrentName();
+                JsonToken jsonToken = jsonParser.nextToken();
+                if(jsonToken == JsonToken.START_ARRAY){
+                    // hand out the elements one by one
+                    while((jsonToken = jsonParser.nextToken()) != JsonToken.END_ARRAY){
+                        handler.accept(key, readValue(jsonParser, jsonToken));
+                    }
+                }else{
+                    handler.accept(key, readValue(jsonParser, jsonToken));
+                }
+            }
+        }catch (JsonProcessingException e){
+            throw new JSONException(e.getMessage());
+        }
+    }
+
+    @Override
+    public DataNotification decodeNotification(String line){
+        try(JsonParser jsonParser = jsonFactory.createParser(line)){
+            if(jsonParser.nextToken() != JsonToken.START_OBJECT){
+                throw new JSONException("A JSONObject text must begin with '{'");
+            }
+            String content = null;
+            long timestamp = 0;
+            boolean hasTimestamp = false;
+            String database = null;
+            String table = null;
+            String dataset = null;
+            String datatype = null;
+            while(jsonParser.nextToken() == JsonToken.FIELD_NAME){
+                String key = jsonParser.getCurrentName();
+                JsonToken jsonToken = jsonParser.nextToken();
+                switch (key){
+                    case "content":
+                        content = jsonParser.getValueAsString();
+                        break;
+                    case "timestamp":
+                        timestamp = jsonParser.getValueAsLong();
+                        hasTimestamp = jsonToken == JsonToken.VALUE_NUMBER_INT || jsonToken == JsonToken.VALUE_STRING;
+                        break;
+                    case "database":
+                        database = jsonParser.getValueAsString();
+                        break;
+                    case "table":
+                        table = jsonParser.getValueAsString();
+                        break;
+                    case "dataset":
+                        dataset = jsonParser.getValueAsString();
+                        break;
+                    case "datatype":
+                        datatype = jsonParser.getValueAsString();
+                        break;
+                    default:
+                        jsonParser.skipChildren();
+                }
+            }
+            if(content == null || !hasTimestamp){
+                throw new JSONException("Missing Content Or Timestamp");
+            }
+            return new DataNotification(DataNotification.Content.valueOf(content), timestamp, database, table, dataset, datatype);
+        }catch (IOException | IllegalArgumentException e){
+            throw new JSONException(e.getMessage());
+        }
+    }
+
+    /**
+     * Internal helper to read an object, the parser has to be positioned on its start
+     * @param jsonParser to read from
+     * @return JSONObject
+     * @throws IOException on exception
+     */
+    private static JSONObject readObject(JsonParser jsonParser) throws IOException {
+        JSONObject jsonObject = new JSONObject();
+        while(jsonParser.nextToken() == JsonToken.FIELD_NAME){
+            String key = jsonParser.getCurrentName();
+            jsonObject.put(key, readValue(jsonParser, jsonParser.nextToken()));
+        }
+        return jsonObject;
+    }
+
+    /**
+     * Internal helper to read an array, the parser has to be positioned on its start
+     * @param jsonParser to read from
+     * @return JSONArray
+     * @throws IOException on exception
+     */
+    private static JSONArray readArray(JsonParser jsonParser) throws IOException {
+        JSONArray jsonArray = new JSONArray();
+        JsonToken jsonToken;
+        while((jsonToken = jsonParser.nextToken()) != JsonToken.END_ARRAY){
+            jsonArray.put(readValue(jsonParser, jsonToken));
+        }
+        return jsonArray;
+    }
+
+    /**
+     * Can be used to read a value the way org.json would return it
+     * @param jsonParser to read from
+     * @param jsonToken the parser is positioned on
+     * @return JSONObject, JSONArray, String, Number, Boolean or JSONObject.NULL
+     * @throws IOException on exception
+     */
+    public static Object readValue(JsonParser jsonParser, JsonToken jsonToken) throws IOException {
+        if(jsonToken == null){
+            throw new JSONException("Unexpected End Of Input");
+        }
+        switch (jsonToken){
+            case START_OBJECT:
+                return readObject(jsonParser);
+            case START_ARRAY:
+                return readArray(jsonParser);
+            case VALUE_STRING:
+                return jsonParser.getText();
+            case VALUE_NUMBER_INT:
+                // same rules as org.json: -0 is a double, numbers exceeding long are kept as string
+                switch (jsonParser.getNumberType()){
+                    case INT: {
+                        int i = jsonParser.getIntValue();
+                        if(i == 0 && jsonParser.getTextCharacters()[jsonParser.getTextOffset()] == '-'){
+                            return -0.0d;
+                        }
+                        return i;
+                    }
+                    case LONG:
+                        return jsonParser.getLongValue();
+                    default:
+                        return jsonParser.getText();
+                }
+            case VALUE_NUMBER_FLOAT: {
+                double d = jsonParser.getDoubleValue();
+                if(Double.isInfinite(d) || Double.isNaN(d)){
+                    return jsonParser.getText();
+                }
+                return d;
+            }
+            case VALUE_TRUE:
+                return Boolean.TRUE;
+            case VALUE_FALSE:
+                return Boolean.FALSE;
+            case VALUE_NULL:
+                return JSONObject.NULL;
+            default:
+                throw new JSONException("Unexpected Token "+jsonToken);
+        }
+    }
+
+    /**
+     * Can be used to write an org.json value
+     * @param jsonGenerator to write to
+     * @param value to write
+     * @throws IOException on exception
+     */
+    public static void write(JsonGenerator jsonGenerator, Object value) throws IOException {
+        if(value == null || JSONObject.NULL.equals(value)){
+            jsonGenerator.writeNull();
+        }else if(value instanceof JSONObject){
+            JSONObject jsonObject = (JSONObject) value;
+            jsonGenerator.writeStartObject();
+            for(String key : jsonObject.keySet()){
+                jsonGenerator.writeFieldName(key);
+                write(jsonGenerator, jsonObject.opt(key));
+            }
+            jsonGenerator.writeEndObject();
+        }else if(value instanceof JSONArray){
+            jsonGenerator.writeStartArray();
+            for(Object o : (JSONArray) value){
+                write(jsonGenerator, o);
+            }
+            jsonGenerator.writeEndArray();
+        }else if(value instanceof String){
+            jsonGenerator.writeString((String) value);
+        }else if(value instanceof Integer || value instanceof Long || value instanceof Short || value instanceof Byte){
+            jsonGenerator.writeNumber(((Number) value).longValue());
+        }else if(value instanceof Double){
+            jsonGenerator.writeNumber((Double) value);
+        }else if(value instanceof Float){
+            // widening to double would write 0.1f as 0.10000000149011612
+            jsonGenerator.writeNumber((Float) value);
+        }else if(value instanceof BigDecimal){
+            jsonGenerator.writeNumber((BigDecimal) value);
+        }else if(value instanceof BigInteger){
+            jsonGenerator.writeNumber((BigInteger) value);
+        }else if(value instanceof Boolean){
+            jsonGenerator.writeBoolean((Boolean) value);
+        }else if(value instanceof JSONString){
+            jsonGenerator.writeRawValue(((JSONString) value).toJSONString());
+        }else if(value instanceof Enum){
+            jsonGenerator.writeString(((Enum<?>) value).name());
+        }else if(value instanceof Map){
+            write(jsonGenerator, new JSONObject((Map<?, ?>) value));
+        }else if(value instanceof Collection){
+            write(jsonGenerator, new JSONArray((Collection<?>) value));
+        }else{
+            jsonGenerator.writeString(value.toString());
+        }
+    }
+}
@@ -0,0 +1,90 @@
+/*
+ *     Copyright 2020 Horstexplorer @ https://www.netbeacon.de
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package de.netbeacon.jstorage.client.codec;
+
+import de.netbeacon.jstorage.client.notification.objects.notifiation.DataNotification;
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.function.BiConsumer;
+
+/**
+ * Converts between the JSON sent over the wire and the objects used by the client
+ * <br>
+ * Covers request payloads, results and notifications. Implementations are shared by all requests of a client and
+ * need to be thread safe. Invalid input is reported with a JSONException.
+ */
+public interface JsonCodec {
+
+    /**
+     * Used to serialize a request payload
+     * @param jsonObject payload
+     * @return utf-8 bytes
+     */
+    byte[] encode(JSONObject jsonObject);
+
+    /**
+     * Used to serialize a request payload into a stream, e.g. a BufferOutputStream
+     * @param jsonObject payload
+     * @param outputStream receiving the utf-8 bytes, will not be closed
+     * @throws IOException on exception writing the stream
+     */
+    default void encode(JSONObject jsonObject, OutputStream outputStream) throws IOException {
+        outputStream.write(encode(jsonObject));
+    }
+
+    /**
+     * Used to parse a result
+     * @param bytes utf-8 bytes
+     * @return JSONObject
+     */
+    JSONObject decode(byte[] bytes);
+
+    /**
+     * Used to parse a result from a buffer, e.g. a pooled one
+     * @param byteBuffer containing the utf-8 bytes between position and limit, its position will not be changed
+     * @return JSONObject
+     */
+    default JSONObject decode(ByteBuffer byteBuffer){
+        byte[] bytes = new byte[byteBuffer.remaining()];
+        byteBuffer.duplicate().get(bytes);
+        return decode(bytes);
+    }
+
+    /**
+     * Used to parse a result incrementally
+     * <br>
+     * For every field of the top level object the handler receives the name of the field and its value;
+     * arrays are handed out element by element
+     * @param inputStream utf-8 body
+     * @param handler receiving field name and value
+     * @throws IOException on exception reading the stream
+     */
+    void decode(InputStream inputStream, BiConsumer<String, Object> handler) throws IOException;
+
+    /**
+     * Used to parse a line received by the notification socket
+     * @param line json
+     * @return DataNotification
+     */
+    DataNotification decodeNotification(String line);
+
+}
@@ -0,0 +1,109 @@
+/*
+ *     Copyright 2020 Horstexplorer @ https://www.netbeacon.de
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package de.netbeacon.jstorage.client.codec;
+
+import de.netbeacon.jstorage.client.notification.objects.notifiation.DataNotification;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.json.JSONTokener;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.function.BiConsumer;
+
+/**
+ * JsonCodec based on org.json
+ */
+public class OrgJsonCodec implements JsonCodec {
+
+    @Override
+    public byte[] encode(JSONObject jsonObject){
+        return jsonObject.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public void encode(JSONObject jsonObject, OutputStream outputStream) throws IOException {
+        Writer writer = new OutputStreamWriter(outputStream, StandardCharsets.UTF_8);
+        jsonObject.write(writer);
+        writer.flush();
+    }
+
+    @Override
+    public JSONObject decode(byte[] bytes){
+        return new JSONObject(new String(bytes, StandardCharsets.UTF_8));
+    }
+
+    @Override
+    public JSONObject decode(ByteBuffer byteBuffer){
+        return new JSONObject(StandardCharsets.UTF_8.decode(byteBuffer.duplicate()).toString());
+    }
+
+    @Override
+    public void decode(InputStream inputStream, BiConsumer<String, Object> handler){
+        JSONTokener jsonTokener = new JSONTokener(new InputStreamReader(inputStream, StandardCharsets.UTF_8));
+        if(jsonTokener.nextClean() != '{'){
+            throw jsonTokener.syntaxError("A JSONObject text must begin with '{'");
+        }
+        if(jsonTokener.nextClean() == '}'){
+            return;
+        }
+        jsonTokener.back();
+        while(true){
+            String key = jsonTokener.nextValue().toString();
+            if(jsonTokener.nextClean() != ':'){
+                throw jsonTokener.syntaxError("Expected a ':' after a key");
+            }
+            if(jsonTokener.nextClean() == '['){
+                // hand out the elements one by one
+                if(jsonTokener.nextClean() != ']'){
+                    jsonTokener.back();
+                    while(true){
+                        handler.accept(key, jsonTokener.nextValue());
+                        char c = jsonTokener.nextClean();
+                        if(c == ']'){
+                            break;
+                        }
+                        if(c != ','){
+                            throw jsonTokener.syntaxError("Expected a ',' or ']'");
+                        }
+                    }
+                }
+            }else{
+                jsonTokener.back();
+                handler.accept(key, jsonTokener.nextValue());
+            }
+            char c = jsonTokener.nextClean();
+            if(c == '}'){
+                return;
+            }
+            if(c != ','){
+                throw jsonTokener.syntaxError("Expected a ',' or '}'");
+            }
+        }
+    }
+
+    @Override
+    public DataNotification decodeNotification(String line){
+        try{
+            return new DataNotification(new JSONObject(line));
+        }catch (IllegalArgumentException e){
+            throw new JSONException(e.getMessage());
+        }
+    }
+}
@@ -33,6 +33,17 @@ public abstract class JStorageException extends RuntimeException{
         this.errorCode = errorCode;
     }
 
+    /**
+     * Creates a new instance of this class
+     * @param errorCode contains the error code
+     * @param message contains the error message
+     * @param writableStackTrace false to skip capturing the stack trace, for expected errors on hot paths
+     */
+    public JStorageException(int errorCode, String message, boolean writableStackTrace){
+        super(message, null, true, writableStackTrace);
+        this.errorCode = errorCode;
+    }
+
     /**
      * Used to get the error code
      * @return error code
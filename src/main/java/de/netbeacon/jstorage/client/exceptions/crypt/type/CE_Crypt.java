@@ -41,6 +41,18 @@ public class CE_Crypt extends CryptException {
         this.type = type;
     }
 
+    /**
+     * Creates a new instance of this class
+     * @param errorCode error code matching super
+     * @param message error message matching super
+     * @param type of the exception
+     * @param writableStackTrace writable stack trace matching super
+     */
+    public CE_Crypt(int errorCode, String message, Type type, boolean writableStackTrace) {
+        super(errorCode, message, writableStackTrace);
+        this.type = type;
+    }
+
     /**
      * Used to get the specialized exception type
      * @return type
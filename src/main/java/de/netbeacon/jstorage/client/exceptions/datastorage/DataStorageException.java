@@ -32,4 +32,14 @@ public abstract class DataStorageException extends JStorageException {
         super(errorCode, message);
     }
 
+    /**
+     * Constructor matching super
+     * @param errorCode contains the error code
+     * @param message  contains the error message
+     * @param writableStackTrace contains whether the stack trace should be captured
+     */
+    public DataStorageException(int errorCode, String message, boolean writableStackTrace) {
+        super(errorCode, message, writableStackTrace);
+    }
+
 }
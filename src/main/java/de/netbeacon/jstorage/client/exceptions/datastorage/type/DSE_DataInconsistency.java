@@ -32,4 +32,14 @@ public class DSE_DataInconsistency extends DataStorageException {
         super(errorCode, message);
     }
 
+    /**
+     * Creates a new instance of this class
+     * @param errorCode error code matching super
+     * @param message error message matching super
+     * @param writableStackTrace writable stack trace matching super
+     */
+    public DSE_DataInconsistency(int errorCode, String message, boolean writableStackTrace) {
+        super(errorCode, message, writableStackTrace);
+    }
+
 }
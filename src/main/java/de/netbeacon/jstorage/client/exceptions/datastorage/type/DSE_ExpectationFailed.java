@@ -44,6 +44,18 @@ public class DSE_ExpectationFailed extends DataStorageException {
         this.type = type;
     }
 
+    /**
+     * Creates a new instance of this class
+     * @param errorCode error code matching super
+     * @param message error message matching super
+     * @param type of the exception
+     * @param writableStackTrace writable stack trace matching super
+     */
+    public DSE_ExpectationFailed(int errorCode, String message, Type type, boolean writableStackTrace) {
+        super(errorCode, message, writableStackTrace);
+        this.type = type;
+    }
+
     /**
      * Used to get the specialized exception type
      * @return type
@@ -32,4 +32,14 @@ public class GOE_Format extends GenericObjectException {
         super(errorCode, message);
     }
 
+    /**
+     * Creates a new instance of this class
+     * @param errorCode error code matching super
+     * @param message error message matching super
+     * @param writableStackTrace writable stack trace matching super
+     */
+    public GOE_Format(int errorCode, String message, boolean writableStackTrace) {
+        super(errorCode, message, writableStackTrace);
+    }
+
 }
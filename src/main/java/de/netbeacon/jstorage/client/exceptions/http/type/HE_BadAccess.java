@@ -31,5 +31,15 @@ public class HE_BadAccess extends HTTPException {
     public HE_BadAccess(int errorCode, String message) {
         super(errorCode, message);
     }
+
+    /**
+     * Creates a new instance of this class
+     * @param errorCode error code matching super
+     * @param message error message matching super
+     * @param writableStackTrace writable stack trace matching super
+     */
+    public HE_BadAccess(int errorCode, String message, boolean writableStackTrace) {
+        super(errorCode, message, writableStackTrace);
+    }
     
 }
@@ -16,21 +16,42 @@
 
 package de.netbeacon.jstorage.client.executor;
 
+import de.netbeacon.jstorage.client.metrics.MetricsCollector;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
 import java.util.ArrayList;
 import java.util.List;
-import java.util.concurrent.ArrayBlockingQueue;
-import java.util.concurrent.RejectedExecutionException;
-import java.util.concurrent.ThreadPoolExecutor;
-import java.util.concurrent.TimeUnit;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Used to handle executions in a fast scaling way
+ * <br>
+ * In {@link Mode#PLATFORM} tasks run on a fixed number of base threads, overflowing into additional threads and a queue.
+ * In {@link Mode#VIRTUAL} every task runs on its own virtual thread, the number of tasks is bound by a semaphore
+ * instead of a pool. Falls back to plain threads if virtual threads are not available on the running jvm.
  */
 public class ScalingExecutor {
 
+    public enum Mode{
+        PLATFORM,
+        VIRTUAL
+    }
+
+    private final Mode mode;
+    // platform
     private final ThreadPoolExecutor baseExecutor;
     private final ThreadPoolExecutor scalingExecutor;
     private final ArrayBlockingQueue<Runnable> taskQueue;
+    // virtual
+    private final ExecutorService virtualExecutor;
+    private final Semaphore permits;
+    private final int maxTasks;
+    private final AtomicInteger activeTasks = new AtomicInteger();
+    private volatile MetricsCollector metricsCollector;
+
+    private static final Logger logger = LoggerFactory.getLogger(ScalingExecutor.class);
 
     /**
      * Creates a new instance of this class
@@ -42,11 +63,38 @@ public class ScalingExecutor {
      * @param timeUnit unit of keepAliveTime
      */
     public ScalingExecutor(int baseThreads, int additionalThreads, int maxWaitingTasks, int keepAliveTime, TimeUnit timeUnit){
-        taskQueue = new ArrayBlockingQueue<Runnable>(maxWaitingTasks);
-        this.baseExecutor = new ThreadPoolExecutor(baseThreads,baseThreads, keepAliveTime, timeUnit, new ArrayBlockingQueue<>(1));
-        this.baseExecutor.prestartAllCoreThreads();
-        this.scalingExecutor = new ThreadPoolExecutor(additionalThreads, additionalThreads, keepAliveTime, timeUnit, taskQueue);
-        this.scalingExecutor.allowCoreThreadTimeOut(true);
+        this(baseThreads, additionalThreads, maxWaitingTasks, keepAliveTime, timeUnit, Mode.PLATFORM);
+    }
+
+    /**
+     * Creates a new instance of this class
+     *
+     * @param baseThreads number of threads which should be always available
+     * @param additionalThreads number of threads which might be additional available
+     * @param maxWaitingTasks number of tasks that can wait if there is no free thread available
+     * @param keepAliveTime time in timeUnit until an additional thread is stopped after being idle for this long
+     * @param timeUnit unit of keepAliveTime
+     * @param mode of the executor. In VIRTUAL mode baseThreads+additionalThreads+maxWaitingTasks tasks may run at the same time
+     */
+    public ScalingExecutor(int baseThreads, int additionalThreads, int maxWaitingTasks, int keepAliveTime, TimeUnit timeUnit, Mode mode){
+        this.mode = mode;
+        if(mode == Mode.VIRTUAL){
+            this.maxTasks = baseThreads+additionalThreads+maxWaitingTasks;
+            this.permits = new Semaphore(maxTasks);
+            this.virtualExecutor = newVirtualThreadExecutor();
+            this.taskQueue = null;
+            this.baseExecutor = null;
+            this.scalingExecutor = null;
+        }else{
+            this.maxTasks = 0;
+            this.permits = null;
+            this.virtualExecutor = null;
+            taskQueue = new ArrayBlockingQueue<Runnable>(maxWaitingTasks);
+            this.baseExecutor = new ThreadPoolExecutor(baseThreads,baseThreads, keepAliveTime, timeUnit, new ArrayBlockingQueue<>(1));
+            this.baseExecutor.prestartAllCoreThreads();
+            this.scalingExecutor = new ThreadPoolExecutor(additionalThreads, additionalThreads, keepAliveTime, timeUnit, taskQueue);
+            this.scalingExecutor.allowCoreThreadTimeOut(true);
+        }
     }
 
 
@@ -56,6 +104,46 @@ public class ScalingExecutor {
      * @throws RejectedExecutionException if the queue is full
      */
     public void execute(Runnable runnable) throws RejectedExecutionException{
+        MetricsCollector metricsCollector = this.metricsCollector;
+        try{
+            executeInternal(runnable);
+        }catch (RejectedExecutionException e){
+            if(metricsCollector != null){
+                metricsCollector.onExecutorRejection();
+            }
+            throw e;
+        }
+        if(metricsCollector != null){
+            metricsCollector.onExecutorTask((mode == Mode.VIRTUAL) ? activeTasks.get() : taskQueue.size());
+        }
+    }
+
+    /**
+     * Internal helper to execute a new runnable
+     * @param runnable Runnable
+     * @throws RejectedExecutionException if the queue is full
+     */
+    private void executeInternal(Runnable runnable) throws RejectedExecutionException{
+        if(mode == Mode.VIRTUAL){
+            if(!permits.tryAcquire()){
+                throw new RejectedExecutionException("Max Number Of Tasks Reached");
+            }
+            try{
+                virtualExecutor.execute(() -> {
+                    activeTasks.incrementAndGet();
+                    try{
+                        runnable.run();
+                    }finally {
+                        activeTasks.decrementAndGet();
+                        permits.release();
+                    }
+                });
+            }catch (RejectedExecutionException e){
+                permits.release();
+                throw e;
+            }
+            return;
+        }
         try{
             baseExecutor.execute(runnable);
         }catch (RejectedExecutionException e){
@@ -63,11 +151,30 @@ public class ScalingExecutor {
         }
     }
 
+    /**
+     * Can be used to set the MetricsCollector which receives the queue depth and rejections
+     * @param metricsCollector MetricsCollector or null
+     */
+    public void setMetricsCollector(MetricsCollector metricsCollector){
+        this.metricsCollector = metricsCollector;
+    }
+
+    /**
+     * Returns the mode of this executor
+     * @return Mode
+     */
+    public Mode getMode(){
+        return mode;
+    }
+
     /**
      * Returns the number of threads always available
      * @return int
      */
     public int getCorePoolSize(){
+        if(mode == Mode.VIRTUAL){
+            return 0;
+        }
         return baseExecutor.getCorePoolSize();
     }
 
@@ -76,6 +183,9 @@ public class ScalingExecutor {
      * @return int
      */
     public int getMaxPoolSize(){
+        if(mode == Mode.VIRTUAL){
+            return maxTasks;
+        }
         return baseExecutor.getCorePoolSize()+scalingExecutor.getCorePoolSize();
     }
 
@@ -84,22 +194,35 @@ public class ScalingExecutor {
      * @return int
      */
     public int getCurrentPoolSize(){
+        if(mode == Mode.VIRTUAL){
+            return maxTasks-permits.availablePermits();
+        }
         return baseExecutor.getPoolSize()+scalingExecutor.getPoolSize();
     }
 
     /**
      * Used to get the remaining capacity of the queue
+     * <br>
+     * In VIRTUAL mode this is the number of tasks which could still be started
      * @return int
      */
     public int getRemainingQueueCapacity(){
+        if(mode == Mode.VIRTUAL){
+            return permits.availablePermits();
+        }
         return taskQueue.remainingCapacity();
     }
 
     /**
      * Used to get the maximum capacity of the queue
+     * <br>
+     * In VIRTUAL mode this is the max number of tasks
      * @return int
      */
     public int getMaxQueueCapacity(){
+        if(mode == Mode.VIRTUAL){
+            return maxTasks;
+        }
         return taskQueue.remainingCapacity()+taskQueue.size();
     }
 
@@ -108,6 +231,9 @@ public class ScalingExecutor {
      * @return int
      */
     public int getActiveThreads(){
+        if(mode == Mode.VIRTUAL){
+            return activeTasks.get();
+        }
         return baseExecutor.getActiveCount()+scalingExecutor.getActiveCount();
     }
 
@@ -115,6 +241,10 @@ public class ScalingExecutor {
      * Used to shutdown
      */
     public void shutdown(){
+        if(mode == Mode.VIRTUAL){
+            virtualExecutor.shutdown();
+            return;
+        }
         scalingExecutor.shutdown();
         baseExecutor.shutdown();
     }
@@ -126,9 +256,32 @@ public class ScalingExecutor {
      */
     public List<Runnable> shutdownNow() throws SecurityException{
         List<Runnable> list = new ArrayList<>();
+        if(mode == Mode.VIRTUAL){
+            list.addAll(virtualExecutor.shutdownNow());
+            return list;
+        }
         list.addAll(scalingExecutor.shutdownNow());
         list.addAll(baseExecutor.shutdownNow());
         return list;
     }
 
+    /**
+     * Internal helper to get an executor starting a new virtual thread per task
+     * <br>
+     * Looked up at runtime to stay compatible with older jvms, which get a thread per task executor using platform threads instead
+     * @return ExecutorService
+     */
+    private static ExecutorService newVirtualThreadExecutor(){
+        try{
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        }catch (Exception e){
+            logger.warn("Virtual Threads Are Not Available. Using Platform Threads Instead.");
+            return Executors.newCachedThreadPool(runnable -> {
+                Thread thread = new Thread(runnable);
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+
 }
@@ -0,0 +1,239 @@
+/*
+ *     Copyright 2020 Horstexplorer @ https://www.netbeacon.de
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.netbeacon.jstorage.client.interceptor;
+
+import de.netbeacon.jstorage.client.metrics.MetricsCollector;
+import okhttp3.Dispatcher;
+import okhttp3.Interceptor;
+import okhttp3.Response;
+import org.jetbrains.annotations.NotNull;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+
+/**
+ * This class adapts the number of concurrent requests of the dispatcher to the capacity of the server as okhttp interceptor
+ * <br>
+ * Works AIMD style: the limit grows by one per limit of successful requests and is reduced by a factor as soon as
+ * the server answers with 503, requests time out or the latency rises clearly above the lowest latency seen.
+ * 429 and other failures say nothing about the capacity of the server and do not change the limit. While the rate
+ * limit runs low the limit does not grow, as more concurrent requests would only run into it.
+ */
+public class ConcurrencyLimitInterceptor implements Interceptor {
+
+    private static final double BACKOFF_RATIO = 0.9;
+    private static final double LATENCY_TOLERANCE = 2.0;
+    private static final double RATE_LIMIT_THRESHOLD = 0.05;
+    private static final long MIN_LATENCY_WINDOW = 30000;
+
+    private final Dispatcher dispatcher;
+    private final int minLimit;
+    private final int maxLimit;
+
+    private double limit;
+    private int successes;
+    private long minLatency = Long.MAX_VALUE;
+    private long minLatencyUpdated;
+    private long lastDecrease;
+    private volatile MetricsCollector metricsCollector;
+
+    private final Logger logger = LoggerFactory.getLogger(ConcurrencyLimitInterceptor.class);
+
+    /**
+     * Creates a new instance of this class
+     * @param dispatcher of which the limits should be adjusted
+     * @param initialLimit number of concurrent requests to start with
+     * @param minLimit min number of concurrent requests
+     * @param maxLimit max number of concurrent requests
+     */
+    public ConcurrencyLimitInterceptor(Dispatcher dispatcher, int initialLimit, int minLimit, int maxLimit){
+        this.dispatcher = dispatcher;
+        this.minLimit = Math.max(1, minLimit);
+        this.maxLimit = Math.max(this.minLimit, maxLimit);
+        this.limit = Math.min(Math.max(initialLimit, this.minLimit), this.maxLimit);
+        apply((int) limit);
+    }
+
+    @NotNull
+    @Override
+    public Response intercept(@NotNull Chain chain) throws IOException {
+        long start = System.nanoTime();
+        Response response;
+        try{
+            response = chain.proceed(chain.request());
+        }catch (InterruptedIOException e){
+            // timeouts, unless the call got canceled which says nothing about the capacity of the server
+            if(!chain.call().isCanceled()){
+                onDrop();
+            }
+            report();
+            throw e;
+        }catch (IOException e){
+            report();
+            throw e;
+        }
+        long latency = System.nanoTime() - start;
+        if(response.code() == 503){
+            onDrop();
+        }else if(response.code() != 429 && !isRateLimitLow(response)){
+            onSample(latency);
+        }
+        report();
+        return response;
+    }
+
+    /**
+     * Can be used to set the MetricsCollector which receives the limit and queue depth
+     * @param metricsCollector MetricsCollector or null
+     */
+    public void setMetricsCollector(MetricsCollector metricsCollector){
+        this.metricsCollector = metricsCollector;
+    }
+
+    /**
+     * Used to get the current number of requests which may run concurrently
+     * @return int
+     */
+    public synchronized int getLimit(){
+        return (int) limit;
+    }
+
+    /**
+     * Used to get the number of requests currently running
+     * @return int
+     */
+    public int getInFlight(){
+        return dispatcher.runningCallsCount();
+    }
+
+    /**
+     * Used to get the number of requests waiting for execution
+     * @return int
+     */
+    public int getQueueDepth(){
+        return dispatcher.queuedCallsCount();
+    }
+
+    /**
+     * Used to get the lowest latency seen recently
+     * @return latency in ns or -1 if none has been seen
+     */
+    public synchronized long getMinLatency(){
+        return (minLatency == Long.MAX_VALUE) ? -1 : minLatency;
+    }
+
+    /**
+     * Internal helper to handle a successful request
+     * @param latency of the request in ns
+     */
+    private void onSample(long latency){
+        synchronized (this){
+            long now = System.currentTimeMillis();
+            if(latency < minLatency || now - minLatencyUpdated > MIN_LATENCY_WINDOW){
+                // let the baseline follow the server if it got slower for good
+                minLatency = (minLatency == Long.MAX_VALUE || latency < minLatency) ? latency : (minLatency + latency) / 2;
+                minLatencyUpdated = now;
+            }
+            if(latency > minLatency * LATENCY_TOLERANCE && dispatcher.runningCallsCount() >= limit / 2){
+                if(!decrease()){
+                    return;
+                }
+            }else{
+                // only grow if the limit is actually used
+                if(dispatcher.runningCallsCount() + dispatcher.queuedCallsCount() < limit / 2 || ++successes < limit){
+                    return;
+                }
+                successes = 0;
+                limit = Math.min(maxLimit, limit + 1);
+            }
+            apply((int) limit);
+        }
+    }
+
+    /**
+     * Internal helper to pass the current limit and queue depth to the MetricsCollector
+     */
+    private void report(){
+        MetricsCollector metricsCollector = this.metricsCollector;
+        if(metricsCollector != null){
+            metricsCollector.onConcurrencyLimit(getLimit(), dispatcher.queuedCallsCount());
+        }
+    }
+
+    /**
+     * Internal helper to handle a request the server could not handle in time
+     */
+    private void onDrop(){
+        int newLimit;
+        synchronized (this){
+            if(!decrease()){
+                return;
+            }
+            newLimit = (int) limit;
+            apply(newLimit);
+        }
+        logger.debug("Reduced Concurrency Limit To "+newLimit);
+    }
+
+    /**
+     * Internal helper to decrease the limit at most once per latency window, needs to be called while holding the lock
+     * @return true if the limit has been changed
+     */
+    private boolean decrease(){
+        long now = System.nanoTime();
+        if(minLatency != Long.MAX_VALUE && now - lastDecrease < minLatency){
+            return false;
+        }
+        lastDecrease = now;
+        successes = 0;
+        limit = Math.max(minLimit, limit * BACKOFF_RATIO);
+        return true;
+    }
+
+    /**
+     * Internal helper to check if the rate limit is about to be reached
+     * @param response containing the rate limit headers
+     * @return boolean
+     */
+    private boolean isRateLimitLow(Response response){
+        String max = response.header("Ratelimit-Limit");
+        String remaining = response.header("Ratelimit-Remaining");
+        if(max == null || remaining == null){
+            return false;
+        }
+        try{
+            return Double.parseDouble(remaining) / Double.parseDouble(max) < RATE_LIMIT_THRESHOLD;
+        }catch (NumberFormatException e){
+            return false;
+        }
+    }
+
+    /**
+     * Internal helper to apply the limit to the dispatcher, needs to be called while holding the lock
+     * <br>
+     * Otherwise a thread which computed an older limit could apply it after a newer one
+     * @param newLimit to apply
+     */
+    private void apply(int newLimit){
+        if(dispatcher.getMaxRequests() != newLimit){
+            dispatcher.setMaxRequests(newLimit);
+            dispatcher.setMaxRequestsPerHost(newLimit);
+        }
+    }
+}
@@ -0,0 +1,66 @@
+/*
+ *     Copyright 2020 Horstexplorer @ https://www.netbeacon.de
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.netbeacon.jstorage.client.interceptor;
+
+import de.netbeacon.jstorage.client.JStorageClient;
+import de.netbeacon.jstorage.client.metrics.MetricsCollector;
+import de.netbeacon.jstorage.client.request.RequestType;
+import okhttp3.Interceptor;
+import okhttp3.Request;
+import okhttp3.Response;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+
+/**
+ * This class reports latency, size and number of running requests to the MetricsCollector of the client as okhttp interceptor
+ */
+public class MetricsInterceptor implements Interceptor {
+
+    private final JStorageClient client;
+
+    /**
+     * Creates a new instance of this class
+     * @param client providing the MetricsCollector
+     */
+    public MetricsInterceptor(JStorageClient client){
+        this.client = client;
+    }
+
+    @NotNull
+    @Override
+    public Response intercept(@NotNull Chain chain) throws IOException {
+        Request request = chain.request();
+        RequestType requestType = request.tag(RequestType.class);
+        if(requestType == null){
+            return chain.proceed(request);
+        }
+        MetricsCollector metricsCollector = client.getMetricsCollector();
+        long requestBytes = (request.body() != null) ? Math.max(0, request.body().contentLength()) : 0;
+        metricsCollector.onRequestStart(requestType);
+        long start = System.nanoTime();
+        long responseBytes = 0;
+        try{
+            Response response = chain.proceed(request);
+            responseBytes = (response.body() != null) ? Math.max(0, response.body().contentLength()) : 0;
+            return response;
+        }finally {
+            // also on runtime exceptions, the request would be counted as running forever otherwise
+            metricsCollector.onRequestEnd(requestType, System.nanoTime() - start, requestBytes, responseBytes);
+        }
+    }
+}
@@ -0,0 +1,129 @@
+/*
+ *     Copyright 2020 Horstexplorer @ https://www.netbeacon.de
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.netbeacon.jstorage.client.interceptor;
+
+/**
+ * Client side token bucket mirroring the rate limit of the server
+ * <br>
+ * Requests reserve a token before they are sent and get told how long to wait for it. While plenty of
+ * tokens are left requests pass without delay, once few are left the remaining ones are spread evenly
+ * until the rate limit resets.
+ */
+public class RateLimitBucket {
+
+    private static final double PACING_THRESHOLD = 0.2;
+    private static final long MAX_WAIT = 60000;
+
+    private long limit = -1;
+    private long tokens;
+    private long resetAt;
+    private long window;
+    private long nextSlot;
+    private long blockedUntil;
+
+    /**
+     * Reserves a token
+     * @return time in ms the request has to wait before it may be sent
+     */
+    public synchronized long reserve(){
+        long now = System.currentTimeMillis();
+        long start = Math.max(now, blockedUntil);
+        if(limit <= 0){
+            return start - now;
+        }
+        if(start >= resetAt && window > 0){
+            // a new window started since the last update
+            tokens = limit;
+            resetAt = start + window;
+        }
+        if(tokens > 0){
+            tokens--;
+            if(tokens >= limit * PACING_THRESHOLD || resetAt <= start){
+                return start - now;
+            }
+            long slot = Math.max(start, nextSlot);
+            nextSlot = slot + (resetAt - start) / (tokens + 1);
+            return Math.min(slot - now, MAX_WAIT);
+        }
+        // nothing left, spread the requests over the next window
+        long slot = Math.max(Math.max(start, resetAt), nextSlot);
+        nextSlot = slot + ((window > 0) ? window / limit : 0);
+        return Math.min(slot - now, MAX_WAIT);
+    }
+
+    /**
+     * Updates the bucket with the values reported by the server
+     * @param limit max number of requests per window, or -1 if unknown
+     * @param remaining number of requests left in this window, or -1 if unknown
+     * @param reset timestamp in ms at which the window resets, or -1 if unknown
+     */
+    public synchronized void update(long limit, long remaining, long reset){
+        long now = System.currentTimeMillis();
+        if(limit > 0){
+            this.limit = limit;
+        }
+        if(remaining >= 0){
+            this.tokens = remaining;
+        }
+        if(reset > 0){
+            reset = Math.min(reset, now + MAX_WAIT);
+            // the longest time until a reset seen so far is the best guess for the length of a window
+            window = Math.max(window, reset - now);
+            this.resetAt = reset;
+        }
+    }
+
+    /**
+     * Stops all requests from being sent until the given time
+     * @param until timestamp in ms
+     */
+    public synchronized void block(long until){
+        blockedUntil = Math.max(blockedUntil, Math.min(until, System.currentTimeMillis() + MAX_WAIT));
+    }
+
+    /**
+     * Used to get the max number of requests per window
+     * @return long or -1 if unknown
+     */
+    public synchronized long getLimit(){
+        return limit;
+    }
+
+    /**
+     * Used to get the number of tokens left in this window
+     * @return long
+     */
+    public synchronized long getTokens(){
+        return tokens;
+    }
+
+    /**
+     * Used to get the timestamp at which the window resets
+     * @return timestamp in ms
+     */
+    public synchronized long getResetAt(){
+        return resetAt;
+    }
+
+    /**
+     * Used to get the timestamp until which no requests should be sent
+     * @return timestamp in ms
+     */
+    public synchronized long getBlockedUntil(){
+        return blockedUntil;
+    }
+}
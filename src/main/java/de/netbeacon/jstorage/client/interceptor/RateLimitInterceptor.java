@@ -16,102 +16,146 @@
 
 package de.netbeacon.jstorage.client.interceptor;
 
+import de.netbeacon.jstorage.client.metrics.MetricsCollector;
 import okhttp3.Interceptor;
-import okhttp3.Request;
 import okhttp3.Response;
 import org.jetbrains.annotations.NotNull;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
-import java.util.Random;
-import java.util.concurrent.TimeUnit;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.atomic.AtomicInteger;
-import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * This class ensures the handling of requests following the rate limits as okhttp interceptor
+ * <br>
+ * The interceptor never blocks, it only keeps the RateLimitBucket up to date. Requests reserve a token from the bucket
+ * before they are handed to the dispatcher and schedule retries on 429/503 using {@link #getRetryDelay(int, int)}.
  */
 public class RateLimitInterceptor implements Interceptor {
 
-    private final AtomicLong maxRateLimit = new AtomicLong(Long.MAX_VALUE);
-    private final AtomicLong remainingRateLimit = new AtomicLong(Long.MAX_VALUE);
-    private final AtomicLong rateLimitReset = new AtomicLong(System.currentTimeMillis());
+    private static final long RETRY_BASE_DELAY = 500;
+    private static final long RETRY_MAX_DELAY = 30000;
+
+    private final RateLimitBucket rateLimitBucket = new RateLimitBucket();
     private final AtomicInteger slowdown = new AtomicInteger(0);
-    private final Random random = new Random();
+    private volatile MetricsCollector metricsCollector;
 
     private final Logger logger = LoggerFactory.getLogger(RateLimitInterceptor.class);
 
     @NotNull
     @Override
     public Response intercept(@NotNull Chain chain) throws IOException {
-        // get the request
-        Request request = chain.request();
-        switch (slowdown.get()){
-            case 1:
-                try { TimeUnit.MILLISECONDS.sleep(random.nextInt(100)+100); } catch (InterruptedException ignore) {}
-                break;
-            case 2:
-                try { TimeUnit.MILLISECONDS.sleep(random.nextInt(250)+900); } catch (InterruptedException ignore) {}
-                break;
-            case 3:
-                try { TimeUnit.MILLISECONDS.sleep(random.nextInt(500)+2900); } catch (InterruptedException ignore) {}
-                break;
-            default:
-                break;
-        }
         // proceed and get the response
-        Response response = chain.proceed(request);
-        String maxRateLimitHeader = response.header("Ratelimit-Limit");
-        if(maxRateLimitHeader != null){
-            try{
-                maxRateLimit.set(Long.parseLong(maxRateLimitHeader));
-            }catch (Exception e){
-                logger.warn("Invalid Max-Ratelimit Header Recieved");
-            }
-        }else{
-            logger.warn("No Max-Ratelimit Header Recieved");
-        }
-        String remainingRateLimitHeader = response.header("Ratelimit-Remaining");
-        if(remainingRateLimitHeader != null){
-            try{
-                remainingRateLimit.set(Long.parseLong(remainingRateLimitHeader));
-            }catch (Exception e){
-                logger.warn("Invalid Remaining-Ratelimit Header Recieved");
-            }
-        }else{
-            logger.warn("No Remaining-Ratelimit Header Recieved");
-        }
-        String rateLimitResetHeader = response.header("Ratelimit-Reset");
-        if(rateLimitResetHeader != null){
-            try{
-                rateLimitReset.set(Long.parseLong(rateLimitResetHeader));
-            }catch (Exception e){
-                logger.warn("Invalid Remaining-Ratelimit Header Recieved");
-            }
-        }else{
-            logger.warn("No Remaining-Ratelimit Header Recieved");
-        }
+        Response response = chain.proceed(chain.request());
+        long maxRateLimit = parseHeader(response, "Ratelimit-Limit");
+        long remainingRateLimit = parseHeader(response, "Ratelimit-Remaining");
+        long rateLimitReset = parseHeader(response, "Ratelimit-Reset");
+        rateLimitBucket.update(maxRateLimit, remainingRateLimit, rateLimitReset);
         int responseCode = response.code();
         if(responseCode == 429){
             logger.warn("Hit Rate Limit. Server Returned 429");
-            slowdown.set(2);
-            // retry after some time
-            response = chain.proceed(response.request());
+            setSlowdown(2);
+            rateLimitBucket.update(-1, 0, -1);
+            rateLimitBucket.block(Math.max(rateLimitBucket.getResetAt(), System.currentTimeMillis()+RETRY_BASE_DELAY));
         }else if(responseCode == 503){
             logger.warn("Service Overloaded. Server Returned 503");
-            slowdown.set(3);
-            // retry after more time
-            response = chain.proceed(response.request());
-        }else if((((double)remainingRateLimit.get()/(double)maxRateLimit.get()) < 0.05) && slowdown.get() == 0){
+            setSlowdown(3);
+            rateLimitBucket.block(System.currentTimeMillis()+RETRY_BASE_DELAY+ThreadLocalRandom.current().nextLong(RETRY_BASE_DELAY));
+        }else if(maxRateLimit > 0 && remainingRateLimit >= 0 && (((double)remainingRateLimit/(double)maxRateLimit) < 0.05) && slowdown.get() != 1){
             logger.warn("Slowing Down To Not Hit A Rate Limit (<5% left)");
-            slowdown.set(1);
-        }else if((((double)remainingRateLimit.get()/(double)maxRateLimit.get()) > 0.2) && slowdown.get() != 0){
+            setSlowdown(1);
+        }else if(maxRateLimit > 0 && remainingRateLimit >= 0 && (((double)remainingRateLimit/(double)maxRateLimit) > 0.2) && slowdown.get() != 0){
             logger.warn("Rate Limit Restored (>20% left)");
-            slowdown.set(0);
+            setSlowdown(0);
         }else{
             // do nothing
         }
         return response;
     }
+
+    /**
+     * Reserves a token from the rate limit bucket
+     * @return time in ms the request has to wait before it may be sent
+     */
+    public long reserve(){
+        return rateLimitBucket.reserve();
+    }
+
+    /**
+     * Used to get the time to wait before retrying a request which failed with 429 or 503
+     * <br>
+     * Honours the reset of the rate limit and adds exponential backoff with jitter
+     * @param attempt number of retries already done
+     * @param statusCode of the failed response
+     * @return time in ms
+     */
+    public long getRetryDelay(int attempt, int statusCode){
+        long now = System.currentTimeMillis();
+        long backoff = Math.min(RETRY_MAX_DELAY, RETRY_BASE_DELAY << Math.min(attempt, 16));
+        long delay = backoff + ThreadLocalRandom.current().nextLong(backoff / 2 + 1);
+        if(statusCode == 429){
+            delay = Math.max(delay, rateLimitBucket.getResetAt() - now + ThreadLocalRandom.current().nextLong(RETRY_BASE_DELAY));
+        }
+        return Math.min(Math.max(delay, rateLimitBucket.getBlockedUntil() - now), RETRY_MAX_DELAY);
+    }
+
+    /**
+     * Used to get the bucket tracking the rate limit
+     * @return RateLimitBucket
+     */
+    public RateLimitBucket getRateLimitBucket() {
+        return rateLimitBucket;
+    }
+
+    /**
+     * Used to get the current slowdown level
+     * <br>
+     * 0 - normal, 1 - less than 5% of the rate limit left, 2 - rate limit hit, 3 - service overloaded
+     * @return int
+     */
+    public int getSlowdown(){
+        return slowdown.get();
+    }
+
+    /**
+     * Can be used to set the MetricsCollector which receives slowdown transitions
+     * @param metricsCollector MetricsCollector or null
+     */
+    public void setMetricsCollector(MetricsCollector metricsCollector){
+        this.metricsCollector = metricsCollector;
+    }
+
+    /**
+     * Internal helper to change the slowdown level
+     * @param level new level
+     */
+    private void setSlowdown(int level){
+        int previous = slowdown.getAndSet(level);
+        MetricsCollector metricsCollector = this.metricsCollector;
+        if(previous != level && metricsCollector != null){
+            metricsCollector.onSlowdownTransition(previous, level);
+        }
+    }
+
+    /**
+     * Internal helper to parse a numeric header
+     * @param response containing the header
+     * @param name of the header
+     * @return value or -1 if missing or invalid
+     */
+    private long parseHeader(Response response, String name){
+        String header = response.header(name);
+        if(header == null){
+            logger.debug("No "+name+" Header Recieved");
+            return -1;
+        }
+        try{
+            return Long.parseLong(header.trim());
+        }catch (NumberFormatException e){
+            logger.warn("Invalid "+name+" Header Recieved");
+            return -1;
+        }
+    }
 }
@@ -0,0 +1,212 @@
+/*
+ *     Copyright 2020 Horstexplorer @ https://www.netbeacon.de
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package de.netbeacon.jstorage.client.mapping;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import org.json.JSONException;
+
+import java.io.IOException;
+import java.lang.reflect.*;
+import java.util.ArrayList;
+import java.util.HashMap;
+
+/**
+ * Maps a class by its fields, or a record by its components
+ * <br>
+ * Fields are matched by name, unknown fields are skipped and missing ones keep their default value.
+ * Static and transient fields are ignored, null values are not written.
+ * Classes need a constructor without arguments, records are created through their canonical constructor.
+ * @param <T> type
+ */
+public class ReflectiveTypeCodec<T> implements TypeCodec<T> {
+
+    private static final Method IS_RECORD;
+    private static final Method GET_RECORD_COMPONENTS;
+    private static final Method GET_NAME;
+    private static final Method GET_GENERIC_TYPE;
+    private static final Method GET_ACCESSOR;
+
+    static {
+        // records are only available on newer runtimes
+        Method isRecord = null, getRecordComponents = null, getName = null, getGenericType = null, getAccessor = null;
+        try{
+            isRecord = Class.class.getMethod("isRecord");
+            getRecordComponents = Class.class.getMethod("getRecordComponents");
+            Class<?> recordComponent = Class.forName("java.lang.reflect.RecordComponent");
+            getName = recordComponent.getMethod("getName");
+            getGenericType = recordComponent.getMethod("getGenericType");
+            getAccessor = recordComponent.getMethod("getAccessor");
+        }catch (ReflectiveOperationException ignore){}
+        IS_RECORD = isRecord;
+        GET_RECORD_COMPONENTS = getRecordComponents;
+        GET_NAME = getName;
+        GET_GENERIC_TYPE = getGenericType;
+        GET_ACCESSOR = getAccessor;
+    }
+
+    private final TypeMapper typeMapper;
+    private final Class<T> type;
+    private final Constructor<T> constructor;
+    private final boolean record;
+    private final Property[] properties;
+    private final HashMap<String, Property> propertiesByName = new HashMap<>();
+
+    /**
+     * Creates a new instance of this class
+     * @param typeMapper used to map the values of the fields
+     * @param type class to map
+     */
+    public ReflectiveTypeCodec(TypeMapper typeMapper, Class<T> type){
+        this.typeMapper = typeMapper;
+        this.type = type;
+        try{
+            this.record = IS_RECORD != null && (Boolean) IS_RECORD.invoke(type);
+            ArrayList<Property> properties = new ArrayList<>();
+            if(record){
+                Object[] components = (Object[]) GET_RECORD_COMPONENTS.invoke(type);
+                Class<?>[] parameterTypes = new Class<?>[components.length];
+                for(int i = 0; i < components.length; i++){
+                    Method accessor = (Method) GET_ACCESSOR.invoke(components[i]);
+                    accessor.setAccessible(true);
+                    Type genericType = (Type) GET_GENERIC_TYPE.invoke(components[i]);
+                    parameterTypes[i] = accessor.getReturnType();
+                    properties.add(new Property(i, (String) GET_NAME.invoke(components[i]), genericType, parameterTypes[i], null, accessor));
+                }
+                this.constructor = type.getDeclaredConstructor(parameterTypes);
+            }else{
+                for(Class<?> c = type; c != null && c != Object.class; c = c.getSuperclass()){
+                    for(Field field : c.getDeclaredFields()){
+                        if(Modifier.isStatic(field.getModifiers()) || Modifier.isTransient(field.getModifiers()) || field.isSynthetic()){
+                            continue;
+                        }
+                        field.setAccessible(true);
+                        properties.add(new Property(properties.size(), field.getName(), field.getGenericType(), field.getType(), field, null));
+                    }
+                }
+                this.constructor = type.getDeclaredConstructor();
+            }
+            this.constructor.setAccessible(true);
+            this.properties = properties.toArray(new Property[0]);
+            for(Property property : this.properties){
+                propertiesByName.putIfAbsent(property.name, property);
+            }
+        }catch (ReflectiveOperationException | RuntimeException e){
+            throw new JSONException("Cannot Map "+type.getName()+": "+e.getMessage());
+        }
+    }
+
+    @Override
+    public T read(JsonParser jsonParser) throws IOException {
+        if(jsonParser.currentToken() != JsonToken.START_OBJECT){
+            throw new JsonParseException(jsonParser, "Expected An Object For "+type.getSimpleName());
+        }
+        try{
+            if(record){
+                Object[] values = new Object[properties.length];
+                while(jsonParser.nextToken() == JsonToken.FIELD_NAME){
+                    Property property = propertiesByName.get(jsonParser.getCurrentName());
+                    jsonParser.nextToken();
+                    if(property == null){
+                        jsonParser.skipChildren();
+                        continue;
+                    }
+                    values[property.index] = property.read(typeMapper, jsonParser);
+                }
+                for(Property property : properties){
+                    if(values[property.index] == null && property.type.isPrimitive()){
+                        values[property.index] = Array.get(Array.newInstance(property.type, 1), 0);
+                    }
+                }
+                return constructor.newInstance(values);
+            }
+            T instance = constructor.newInstance();
+            while(jsonParser.nextToken() == JsonToken.FIELD_NAME){
+                Property property = propertiesByName.get(jsonParser.getCurrentName());
+                jsonParser.nextToken();
+                if(property == null){
+                    jsonParser.skipChildren();
+                    continue;
+                }
+                Object value = property.read(typeMapper, jsonParser);
+                if(value != null || !property.type.isPrimitive()){
+                    property.field.set(instance, value);
+                }
+            }
+            return instance;
+        }catch (InstantiationException | IllegalAccessException | InvocationTargetException | IllegalArgumentException e){
+            throw new JsonParseException(jsonParser, "Cannot Create "+type.getSimpleName()+": "+e.getMessage());
+        }
+    }
+
+    @Override
+    public void write(JsonGenerator jsonGenerator, T value) throws IOException {
+        jsonGenerator.writeStartObject();
+        try{
+            for(Property property : properties){
+                Object o = record ? property.accessor.invoke(value) : property.field.get(value);
+                if(o == null){
+                    continue;
+                }
+                jsonGenerator.writeFieldName(property.name);
+                typeMapper.writeValue(jsonGenerator, o);
+            }
+        }catch (IllegalAccessException | InvocationTargetException e){
+            throw new JSONException("Cannot Write "+type.getSimpleName()+": "+e.getMessage());
+        }
+        jsonGenerator.writeEndObject();
+    }
+
+    /**
+     * Represents a field or record component
+     */
+    private static class Property {
+
+        private final int index;
+        private final String name;
+        private final Type genericType;
+        private final Class<?> type;
+        private final Field field;
+        private final Method accessor;
+        private volatile TypeCodec<?> typeCodec;
+
+        private Property(int index, String name, Type genericType, Class<?> type, Field field, Method accessor){
+            this.index = index;
+            this.name = name;
+            this.genericType = genericType;
+            this.type = type;
+            this.field = field;
+            this.accessor = accessor;
+        }
+
+        private Object read(TypeMapper typeMapper, JsonParser jsonParser) throws IOException {
+            if(jsonParser.currentToken() == JsonToken.VALUE_NULL){
+                return null;
+            }
+            TypeCodec<?> typeCodec = this.typeCodec;
+            if(typeCodec == null){
+                // resolved on first use, allows classes referencing themselves
+                typeCodec = typeMapper.getCodec(genericType);
+                this.typeCodec = typeCodec;
+            }
+            return typeCodec.read(jsonParser);
+        }
+    }
+}
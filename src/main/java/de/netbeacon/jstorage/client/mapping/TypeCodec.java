@@ -0,0 +1,49 @@
+/*
+ *     Copyright 2020 Horstexplorer @ https://www.netbeacon.de
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package de.netbeacon.jstorage.client.mapping;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+
+import java.io.IOException;
+
+/**
+ * Reads and writes objects of one type directly from and to the json stream
+ * <br>
+ * Can be registered at the TypeMapper to replace the reflective mapping of a class
+ * @param <T> type handled by this codec
+ */
+public interface TypeCodec<T> {
+
+    /**
+     * Used to read a value
+     * @param jsonParser positioned on the first token of the value, should be left on its last token
+     * @return value or null
+     * @throws IOException on exception
+     */
+    T read(JsonParser jsonParser) throws IOException;
+
+    /**
+     * Used to write a value
+     * @param jsonGenerator to write to
+     * @param value not null
+     * @throws IOException on exception
+     */
+    void write(JsonGenerator jsonGenerator, T value) throws IOException;
+
+}
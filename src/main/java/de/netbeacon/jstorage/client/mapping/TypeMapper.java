@@ -0,0 +1,604 @@
+/*
+ *     Copyright 2020 Horstexplorer @ https://www.netbeacon.de
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package de.netbeacon.jstorage.client.mapping;
+
+import com.fasterxml.jackson.core.*;
+import de.netbeacon.jstorage.client.buffer.ByteBufferInputStream;
+import de.netbeacon.jstorage.client.codec.JacksonJsonCodec;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.lang.reflect.*;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * This class maps results and payloads directly to and from user classes without building a JSONObject
+ * <br>
+ * Classes without a registered TypeCodec are mapped by their fields (or components for records) using a
+ * ReflectiveTypeCodec which is created once per class. Collections, maps with string keys, arrays and enums are
+ * supported as well. Values are only read from matching tokens, e.g. an object or a string is not read into an int
+ * field. Invalid input is reported with a JSONException.
+ */
+public class TypeMapper {
+
+    private final JsonFactory jsonFactory = new JsonFactory();
+    private final ConcurrentHashMap<Type, TypeCodec<?>> codecs = new ConcurrentHashMap<>();
+
+    /**
+     * Creates a new instance of this class
+     */
+    public TypeMapper(){
+        TypeCodec<String> stringCodec = new SimpleCodec<>(JsonToken.VALUE_STRING, null, JsonParser::getText, JsonGenerator::writeString);
+        TypeCodec<Integer> intCodec = new SimpleCodec<>(JsonToken.VALUE_NUMBER_INT, null, JsonParser::getIntValue, JsonGenerator::writeNumber);
+        TypeCodec<Long> longCodec = new SimpleCodec<>(JsonToken.VALUE_NUMBER_INT, null, JsonParser::getLongValue, JsonGenerator::writeNumber);
+        TypeCodec<Double> doubleCodec = new SimpleCodec<>(JsonToken.VALUE_NUMBER_FLOAT, JsonToken.VALUE_NUMBER_INT, JsonParser::getDoubleValue, JsonGenerator::writeNumber);
+        TypeCodec<Float> floatCodec = new SimpleCodec<>(JsonToken.VALUE_NUMBER_FLOAT, JsonToken.VALUE_NUMBER_INT, JsonParser::getFloatValue, JsonGenerator::writeNumber);
+        TypeCodec<Short> shortCodec = new SimpleCodec<>(JsonToken.VALUE_NUMBER_INT, null, JsonParser::getShortValue, JsonGenerator::writeNumber);
+        TypeCodec<Byte> byteCodec = new SimpleCodec<>(JsonToken.VALUE_NUMBER_INT, null, p -> {
+            int i = p.getIntValue();
+            if(i < Byte.MIN_VALUE || i > Byte.MAX_VALUE){
+                throw new JsonParseException(p, "Value Out Of Range Of Byte");
+            }
+            return (byte) i;
+        }, (g, v) -> g.writeNumber(v));
+        TypeCodec<Boolean> booleanCodec = new SimpleCodec<>(JsonToken.VALUE_TRUE, JsonToken.VALUE_FALSE, JsonParser::getBooleanValue, JsonGenerator::writeBoolean);
+        TypeCodec<Character> charCodec = new SimpleCodec<>(JsonToken.VALUE_STRING, null, p -> {
+            String s = p.getText();
+            return s.isEmpty() ? null : s.charAt(0);
+        }, (g, v) -> g.writeString(String.valueOf(v)));
+        register(String.class, stringCodec);
+        register(Integer.class, intCodec);
+        codecs.put(int.class, intCodec);
+        register(Long.class, longCodec);
+        codecs.put(long.class, longCodec);
+        register(Double.class, doubleCodec);
+        codecs.put(double.class, doubleCodec);
+        register(Float.class, floatCodec);
+        codecs.put(float.class, floatCodec);
+        register(Short.class, shortCodec);
+        codecs.put(short.class, shortCodec);
+        register(Byte.class, byteCodec);
+        codecs.put(byte.class, byteCodec);
+        register(Boolean.class, booleanCodec);
+        codecs.put(boolean.class, booleanCodec);
+        register(Character.class, charCodec);
+        codecs.put(char.class, charCodec);
+        register(BigDecimal.class, new SimpleCodec<>(JsonToken.VALUE_NUMBER_FLOAT, JsonToken.VALUE_NUMBER_INT, JsonParser::getDecimalValue, JsonGenerator::writeNumber));
+        register(BigInteger.class, new SimpleCodec<>(JsonToken.VALUE_NUMBER_INT, null, JsonParser::getBigIntegerValue, JsonGenerator::writeNumber));
+        TypeCodec<Object> jsonCodec = new SimpleCodec<>(null, null, p -> JacksonJsonCodec.readValue(p, p.currentToken()), JacksonJsonCodec::write);
+        register(Object.class, jsonCodec);
+        register(JSONObject.class, new SimpleCodec<>(JsonToken.START_OBJECT, null, p -> (JSONObject) JacksonJsonCodec.readValue(p, JsonToken.START_OBJECT), JacksonJsonCodec::write));
+        register(JSONArray.class, new SimpleCodec<>(JsonToken.START_ARRAY, null, p -> (JSONArray) JacksonJsonCodec.readValue(p, JsonToken.START_ARRAY), JacksonJsonCodec::write));
+    }
+
+    /**
+     * Can be used to register a codec for a class, replacing the reflective mapping
+     * @param type class
+     * @param typeCodec codec
+     * @param <T> type
+     */
+    public <T> void register(Class<T> type, TypeCodec<T> typeCodec){
+        codecs.put(type, typeCodec);
+    }
+
+    /**
+     * Used to get the codec of a type
+     * <br>
+     * Creates and caches a codec if none has been registered
+     * @param type class or parameterized type
+     * @return TypeCodec
+     */
+    public TypeCodec<?> getCodec(Type type){
+        TypeCodec<?> typeCodec = codecs.get(type);
+        if(typeCodec != null){
+            return typeCodec;
+        }
+        // not computeIfAbsent, creating a codec may look up other codecs
+        typeCodec = createCodec(type);
+        TypeCodec<?> existing = codecs.putIfAbsent(type, typeCodec);
+        return (existing != null) ? existing : typeCodec;
+    }
+
+    /**
+     * Can be used to read an object
+     * @param bytes utf-8 json
+     * @param type of the object
+     * @param <T> type
+     * @return object or null
+     */
+    public <T> T read(byte[] bytes, Class<T> type){
+        try{
+            return read(jsonFactory.createParser(bytes), type);
+        }catch (IOException e){
+            throw new JSONException(e.getMessage());
+        }
+    }
+
+    /**
+     * Can be used to read an object from a buffer, e.g. a pooled one
+     * @param byteBuffer containing the utf-8 json between position and limit, its position will not be changed
+     * @param type of the object
+     * @param <T> type
+     * @return object or null
+     */
+    public <T> T read(ByteBuffer byteBuffer, Class<T> type){
+        try{
+            return read(createParser(byteBuffer), type);
+        }catch (IOException e){
+            throw new JSONException(e.getMessage());
+        }
+    }
+
+    /**
+     * Can be used to read a single field of the top level object, e.g. one datatype of a dataset
+     * @param bytes utf-8 json
+     * @param key name of the field
+     * @param type of the object
+     * @param <T> type
+     * @return object or null if the field does not exist
+     */
+    public <T> T read(byte[] bytes, String key, Class<T> type){
+        try{
+            return read(jsonFactory.createParser(bytes), key, type);
+        }catch (IOException e){
+            throw new JSONException(e.getMessage());
+        }
+    }
+
+    /**
+     * Can be used to read a single field of the top level object from a buffer, e.g. a pooled one
+     * @param byteBuffer containing the utf-8 json between position and limit, its position will not be changed
+     * @param key name of the field
+     * @param type of the object
+     * @param <T> type
+     * @return object or null if the field does not exist
+     */
+    public <T> T read(ByteBuffer byteBuffer, String key, Class<T> type){
+        try{
+            return read(createParser(byteBuffer), key, type);
+        }catch (IOException e){
+            throw new JSONException(e.getMessage());
+        }
+    }
+
+    /**
+     * Internal helper to read an object
+     * @param jsonParser to read from, will be closed
+     * @param type of the object
+     * @param <T> type
+     * @return object or null
+     * @throws IOException on exception
+     */
+    private <T> T read(JsonParser jsonParser, Class<T> type) throws IOException {
+        try(jsonParser){
+            if(jsonParser.nextToken() == null){
+                return null;
+            }
+            return readValue(jsonParser, type);
+        }
+    }
+
+    /**
+     * Internal helper to read a single field of the top level object
+     * @param jsonParser to read from, will be closed
+     * @param key name of the field
+     * @param type of the object
+     * @param <T> type
+     * @return object or null if the field does not exist
+     * @throws IOException on exception
+     */
+    private <T> T read(JsonParser jsonParser, String key, Class<T> type) throws IOException {
+        try(jsonParser){
+            if(jsonParser.nextToken() != JsonToken.START_OBJECT){
+                throw new JSONException("A JSONObject text must begin with '{'");
+            }
+            while(jsonParser.nextToken() == JsonToken.FIELD_NAME){
+                String name = jsonParser.getCurrentName();
+                jsonParser.nextToken();
+                if(name.equals(key)){
+                    return readValue(jsonParser, type);
+                }
+                jsonParser.skipChildren();
+            }
+            return null;
+        }
+    }
+
+    /**
+     * Internal helper to create a parser reading a buffer without copying it
+     * @param byteBuffer to read
+     * @return JsonParser
+     * @throws IOException on exception
+     */
+    private JsonParser createParser(ByteBuffer byteBuffer) throws IOException {
+        if(byteBuffer.hasArray()){
+            return jsonFactory.createParser(byteBuffer.array(), byteBuffer.arrayOffset() + byteBuffer.position(), byteBuffer.remaining());
+        }
+        return jsonFactory.createParser(new ByteBufferInputStream(byteBuffer));
+    }
+
+    /**
+     * Can be used to write an object
+     * @param value to write
+     * @return utf-8 json
+     */
+    public byte[] write(Object value){
+        ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream(256);
+        try(JsonGenerator jsonGenerator = jsonFactory.createGenerator(byteArrayOutputStream, JsonEncoding.UTF8)){
+            writeValue(jsonGenerator, value);
+        }catch (IOException e){
+            throw new JSONException(e.getMessage());
+        }
+        return byteArrayOutputStream.toByteArray();
+    }
+
+    /**
+     * Can be used to write an object wrapped into an object with a single field, e.g. {"datatype": value}
+     * @param key name of the field
+     * @param value to write
+     * @return utf-8 json
+     */
+    public byte[] write(String key, Object value){
+        ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream(256);
+        try(JsonGenerator jsonGenerator = jsonFactory.createGenerator(byteArrayOutputStream, JsonEncoding.UTF8)){
+            jsonGenerator.writeStartObject();
+            jsonGenerator.writeFieldName(key);
+            writeValue(jsonGenerator, value);
+            jsonGenerator.writeEndObject();
+        }catch (IOException e){
+            throw new JSONException(e.getMessage());
+        }
+        return byteArrayOutputStream.toByteArray();
+    }
+
+    /**
+     * Used to read a value of the given type
+     * @param jsonParser positioned on the first token of the value
+     * @param type class or parameterized type
+     * @param <T> type
+     * @return value or null
+     * @throws IOException on exception
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T readValue(JsonParser jsonParser, Type type) throws IOException {
+        if(jsonParser.currentToken() == JsonToken.VALUE_NULL){
+            return null;
+        }
+        return (T) getCodec(type).read(jsonParser);
+    }
+
+    /**
+     * Used to write a value by its runtime type
+     * @param jsonGenerator to write to
+     * @param value to write or null
+     * @throws IOException on exception
+     */
+    @SuppressWarnings("unchecked")
+    public void writeValue(JsonGenerator jsonGenerator, Object value) throws IOException {
+        if(value == null){
+            jsonGenerator.writeNull();
+        }else if(value instanceof Collection){
+            jsonGenerator.writeStartArray();
+            for(Object o : (Collection<?>) value){
+                writeValue(jsonGenerator, o);
+            }
+            jsonGenerator.writeEndArray();
+        }else if(value instanceof Map){
+            jsonGenerator.writeStartObject();
+            for(Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()){
+                jsonGenerator.writeFieldName(String.valueOf(entry.getKey()));
+                writeValue(jsonGenerator, entry.getValue());
+            }
+            jsonGenerator.writeEndObject();
+        }else if(value.getClass().isArray()){
+            jsonGenerator.writeStartArray();
+            for(int i = 0; i < Array.getLength(value); i++){
+                writeValue(jsonGenerator, Array.get(value, i));
+            }
+            jsonGenerator.writeEndArray();
+        }else{
+            ((TypeCodec<Object>) getCodec(value.getClass())).write(jsonGenerator, value);
+        }
+    }
+
+    /**
+     * Internal helper to create the codec of a type
+     * @param type class or parameterized type
+     * @return TypeCodec
+     */
+    private TypeCodec<?> createCodec(Type type){
+        Class<?> rawType = rawType(type);
+        if(rawType.isEnum()){
+            return new EnumCodec(rawType);
+        }
+        if(rawType.isArray()){
+            return new ArrayCodec(this, rawType.getComponentType());
+        }
+        if(Collection.class.isAssignableFrom(rawType)){
+            return new CollectionCodec(this, rawType, typeArgument(type, 0));
+        }
+        if(Map.class.isAssignableFrom(rawType)){
+            return new MapCodec(this, rawType, typeArgument(type, 1));
+        }
+        if(JSONObject.class.isAssignableFrom(rawType) || JSONArray.class.isAssignableFrom(rawType)){
+            return codecs.get(JSONObject.class.isAssignableFrom(rawType) ? JSONObject.class : JSONArray.class);
+        }
+        if(rawType.isInterface() || Modifier.isAbstract(rawType.getModifiers())){
+            throw new JSONException("Cannot Map Abstract Type "+type.getTypeName());
+        }
+        return new ReflectiveTypeCodec<>(this, rawType);
+    }
+
+    /**
+     * Internal helper to get the class of a type
+     * @param type class or parameterized type
+     * @return class
+     */
+    static Class<?> rawType(Type type){
+        if(type instanceof Class){
+            return (Class<?>) type;
+        }
+        if(type instanceof ParameterizedType){
+            return (Class<?>) ((ParameterizedType) type).getRawType();
+        }
+        if(type instanceof GenericArrayType){
+            return Array.newInstance(rawType(((GenericArrayType) type).getGenericComponentType()), 0).getClass();
+        }
+        if(type instanceof WildcardType){
+            return rawType(((WildcardType) type).getUpperBounds()[0]);
+        }
+        return Object.class;
+    }
+
+    /**
+     * Internal helper to get a type argument
+     * @param type parameterized type
+     * @param index of the argument
+     * @return type or Object.class if unknown
+     */
+    private static Type typeArgument(Type type, int index){
+        if(type instanceof ParameterizedType){
+            Type[] arguments = ((ParameterizedType) type).getActualTypeArguments();
+            if(index < arguments.length){
+                Type argument = arguments[index];
+                return (argument instanceof WildcardType) ? ((WildcardType) argument).getUpperBounds()[0] : argument;
+            }
+        }
+        return Object.class;
+    }
+
+    /**
+     * Internal helper to check the current token
+     * @param jsonParser to check
+     * @param jsonToken expected
+     * @throws JsonParseException if the token does not match
+     */
+    private static void expect(JsonParser jsonParser, JsonToken jsonToken) throws JsonParseException {
+        if(jsonParser.currentToken() != jsonToken){
+            throw new JsonParseException(jsonParser, "Expected "+jsonToken+" Found "+jsonParser.currentToken());
+        }
+    }
+
+    /**
+     * Reads a value of the current token
+     * @param <T> type
+     */
+    private interface Reader<T> {
+        T read(JsonParser jsonParser) throws IOException;
+    }
+
+    /**
+     * Writes a value
+     * @param <T> type
+     */
+    private interface Writer<T> {
+        void write(JsonGenerator jsonGenerator, T value) throws IOException;
+    }
+
+    /**
+     * Codec for scalar values
+     * <br>
+     * Reads only if the current token is one of the accepted tokens, null accepts any
+     * @param <T> type
+     */
+    private static class SimpleCodec<T> implements TypeCodec<T> {
+
+        private final JsonToken token;
+        private final JsonToken alternativeToken;
+        private final Reader<T> reader;
+        private final Writer<T> writer;
+
+        private SimpleCodec(JsonToken token, JsonToken alternativeToken, Reader<T> reader, Writer<T> writer){
+            this.token = token;
+            this.alternativeToken = alternativeToken;
+            this.reader = reader;
+            this.writer = writer;
+        }
+
+        @Override
+        public T read(JsonParser jsonParser) throws IOException {
+            JsonToken currentToken = jsonParser.currentToken();
+            if(token != null && currentToken != token && (alternativeToken == null || currentToken != alternativeToken)){
+                throw new JsonParseException(jsonParser, "Expected "+token+((alternativeToken != null) ? " Or "+alternativeToken : "")+" Found "+currentToken);
+            }
+            return reader.read(jsonParser);
+        }
+
+        @Override
+        public void write(JsonGenerator jsonGenerator, T value) throws IOException {
+            writer.write(jsonGenerator, value);
+        }
+    }
+
+    /**
+     * Codec for enums, mapped by their name
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static class EnumCodec implements TypeCodec<Enum<?>> {
+
+        private final Class<? extends Enum> type;
+
+        private EnumCodec(Class<?> type){
+            this.type = (Class<? extends Enum>) type;
+        }
+
+        @Override
+        public Enum<?> read(JsonParser jsonParser) throws IOException {
+            expect(jsonParser, JsonToken.VALUE_STRING);
+            try{
+                return Enum.valueOf(type, jsonParser.getText());
+            }catch (IllegalArgumentException e){
+                throw new JsonParseException(jsonParser, "Invalid Value For "+type.getSimpleName());
+            }
+        }
+
+        @Override
+        public void write(JsonGenerator jsonGenerator, Enum<?> value) throws IOException {
+            jsonGenerator.writeString(value.name());
+        }
+    }
+
+    /**
+     * Codec for arrays
+     */
+    private static class ArrayCodec implements TypeCodec<Object> {
+
+        private final TypeMapper typeMapper;
+        private final Class<?> componentType;
+
+        private ArrayCodec(TypeMapper typeMapper, Class<?> componentType){
+            this.typeMapper = typeMapper;
+            this.componentType = componentType;
+        }
+
+        @Override
+        public Object read(JsonParser jsonParser) throws IOException {
+            expect(jsonParser, JsonToken.START_ARRAY);
+            ArrayList<Object> values = new ArrayList<>();
+            while(jsonParser.nextToken() != JsonToken.END_ARRAY){
+                values.add(typeMapper.readValue(jsonParser, componentType));
+            }
+            Object array = Array.newInstance(componentType, values.size());
+            for(int i = 0; i < values.size(); i++){
+                Object value = values.get(i);
+                if(value != null || !componentType.isPrimitive()){
+                    Array.set(array, i, value);
+                }
+            }
+            return array;
+        }
+
+        @Override
+        public void write(JsonGenerator jsonGenerator, Object value) throws IOException {
+            typeMapper.writeValue(jsonGenerator, value);
+        }
+    }
+
+    /**
+     * Codec for lists, sets and other collections
+     */
+    private static class CollectionCodec implements TypeCodec<Collection<Object>> {
+
+        private final TypeMapper typeMapper;
+        private final Class<?> type;
+        private final Type elementType;
+
+        private CollectionCodec(TypeMapper typeMapper, Class<?> type, Type elementType){
+            this.typeMapper = typeMapper;
+            this.type = type;
+            this.elementType = elementType;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public Collection<Object> read(JsonParser jsonParser) throws IOException {
+            expect(jsonParser, JsonToken.START_ARRAY);
+            Collection<Object> collection;
+            if(type.isAssignableFrom(ArrayList.class)){
+                collection = new ArrayList<>();
+            }else if(type.isAssignableFrom(LinkedHashSet.class)){
+                collection = new LinkedHashSet<>();
+            }else{
+                try{
+                    collection = (Collection<Object>) type.getDeclaredConstructor().newInstance();
+                }catch (ReflectiveOperationException e){
+                    throw new JsonParseException(jsonParser, "Cannot Create "+type.getSimpleName());
+                }
+            }
+            while(jsonParser.nextToken() != JsonToken.END_ARRAY){
+                collection.add(typeMapper.readValue(jsonParser, elementType));
+            }
+            return collection;
+        }
+
+        @Override
+        public void write(JsonGenerator jsonGenerator, Collection<Object> value) throws IOException {
+            typeMapper.writeValue(jsonGenerator, value);
+        }
+    }
+
+    /**
+     * Codec for maps with string keys
+     */
+    private static class MapCodec implements TypeCodec<Map<String, Object>> {
+
+        private final TypeMapper typeMapper;
+        private final Class<?> type;
+        private final Type valueType;
+
+        private MapCodec(TypeMapper typeMapper, Class<?> type, Type valueType){
+            this.typeMapper = typeMapper;
+            this.type = type;
+            this.valueType = valueType;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public Map<String, Object> read(JsonParser jsonParser) throws IOException {
+            expect(jsonParser, JsonToken.START_OBJECT);
+            Map<String, Object> map;
+            if(type.isAssignableFrom(LinkedHashMap.class)){
+                map = new LinkedHashMap<>();
+            }else{
+                try{
+                    map = (Map<String, Object>) type.getDeclaredConstructor().newInstance();
+                }catch (ReflectiveOperationException e){
+                    throw new JsonParseException(jsonParser, "Cannot Create "+type.getSimpleName());
+                }
+            }
+            while(jsonParser.nextToken() == JsonToken.FIELD_NAME){
+                String key = jsonParser.getCurrentName();
+                jsonParser.nextToken();
+                map.put(key, typeMapper.readValue(jsonParser, valueType));
+            }
+            return map;
+        }
+
+        @Override
+        public void write(JsonGenerator jsonGenerator, Map<String, Object> value) throws IOException {
+            typeMapper.writeValue(jsonGenerator, value);
+        }
+    }
+}
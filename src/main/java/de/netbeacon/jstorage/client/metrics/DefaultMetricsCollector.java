@@ -0,0 +1,259 @@
+/*
+ *     Copyright 2020 Horstexplorer @ https://www.netbeacon.de
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.netbeacon.jstorage.client.metrics;
+
+import de.netbeacon.jstorage.client.exceptions.JStorageException;
+import de.netbeacon.jstorage.client.request.RequestType;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Default in memory implementation of the MetricsCollector
+ * <br>
+ * All counters are preallocated per RequestType, recording does not allocate
+ */
+public class DefaultMetricsCollector implements MetricsCollector {
+
+    private static final int SLOWDOWN_LEVELS = 4;
+
+    private final TypeMetrics[] typeMetrics = new TypeMetrics[RequestType.values().length];
+    private final ConcurrentHashMap<Class<? extends JStorageException>, LongAdder> errors = new ConcurrentHashMap<>();
+    private final LongAdder executorTasks = new LongAdder();
+    private final LongAdder executorRejections = new LongAdder();
+    private final AtomicInteger executorQueueDepth = new AtomicInteger();
+    private final LongAccumulator executorMaxQueueDepth = new LongAccumulator(Math::max, 0);
+    private final AtomicLongArray slowdownTransitions = new AtomicLongArray(SLOWDOWN_LEVELS * SLOWDOWN_LEVELS);
+    private final AtomicInteger concurrencyLimit = new AtomicInteger();
+    private final AtomicInteger requestQueueDepth = new AtomicInteger();
+    private final LongAccumulator requestMaxQueueDepth = new LongAccumulator(Math::max, 0);
+
+    /**
+     * Creates a new instance of this class
+     */
+    public DefaultMetricsCollector(){
+        for(int i = 0; i < typeMetrics.length; i++){
+            typeMetrics[i] = new TypeMetrics();
+        }
+    }
+
+    @Override
+    public void onRequestStart(RequestType requestType){
+        typeMetrics[requestType.ordinal()].inFlight.incrementAndGet();
+    }
+
+    @Override
+    public void onRequestEnd(RequestType requestType, long latency, long requestBytes, long responseBytes){
+        TypeMetrics metrics = typeMetrics[requestType.ordinal()];
+        metrics.inFlight.decrementAndGet();
+        metrics.requests.increment();
+        metrics.latency.record(latency);
+        metrics.requestBytes.add(requestBytes);
+        metrics.responseBytes.add(responseBytes);
+    }
+
+    @Override
+    public void onError(RequestType requestType, Class<? extends JStorageException> exceptionClass){
+        typeMetrics[requestType.ordinal()].errors.increment();
+        errors.computeIfAbsent(exceptionClass, c -> new LongAdder()).increment();
+    }
+
+    @Override
+    public void onExecutorTask(int queueDepth){
+        executorTasks.increment();
+        executorQueueDepth.lazySet(queueDepth);
+        executorMaxQueueDepth.accumulate(queueDepth);
+    }
+
+    @Override
+    public void onExecutorRejection(){
+        executorRejections.increment();
+    }
+
+    @Override
+    public void onSlowdownTransition(int from, int to){
+        if(from >= 0 && from < SLOWDOWN_LEVELS && to >= 0 && to < SLOWDOWN_LEVELS){
+            slowdownTransitions.incrementAndGet(from * SLOWDOWN_LEVELS + to);
+        }
+    }
+
+    @Override
+    public void onConcurrencyLimit(int limit, int queueDepth){
+        concurrencyLimit.lazySet(limit);
+        requestQueueDepth.lazySet(queueDepth);
+        requestMaxQueueDepth.accumulate(queueDepth);
+    }
+
+    /**
+     * Used to get the number of completed requests
+     * @param requestType of the requests
+     * @return long
+     */
+    public long getRequests(RequestType requestType){
+        return typeMetrics[requestType.ordinal()].requests.sum();
+    }
+
+    /**
+     * Used to get the number of requests currently running
+     * @param requestType of the requests
+     * @return int
+     */
+    public int getInFlight(RequestType requestType){
+        return typeMetrics[requestType.ordinal()].inFlight.get();
+    }
+
+    /**
+     * Used to get the latency histogram
+     * @param requestType of the requests
+     * @return LatencyHistogram containing values in ns
+     */
+    public LatencyHistogram getLatency(RequestType requestType){
+        return typeMetrics[requestType.ordinal()].latency;
+    }
+
+    /**
+     * Used to get a latency percentile
+     * @param requestType of the requests
+     * @param percentile between 0 and 100, e.g. 50, 99, 99.9
+     * @return latency in ns
+     */
+    public long getLatencyPercentile(RequestType requestType, double percentile){
+        return typeMetrics[requestType.ordinal()].latency.getPercentile(percentile);
+    }
+
+    /**
+     * Used to get the number of bytes sent
+     * @param requestType of the requests
+     * @return long
+     */
+    public long getRequestBytes(RequestType requestType){
+        return typeMetrics[requestType.ordinal()].requestBytes.sum();
+    }
+
+    /**
+     * Used to get the number of bytes received
+     * @param requestType of the requests
+     * @return long
+     */
+    public long getResponseBytes(RequestType requestType){
+        return typeMetrics[requestType.ordinal()].responseBytes.sum();
+    }
+
+    /**
+     * Used to get the number of failed requests
+     * @param requestType of the requests
+     * @return long
+     */
+    public long getErrors(RequestType requestType){
+        return typeMetrics[requestType.ordinal()].errors.sum();
+    }
+
+    /**
+     * Used to get the number of errors by their exception class
+     * @return Map<Class, Long>
+     */
+    public Map<Class<? extends JStorageException>, Long> getErrorsByClass(){
+        HashMap<Class<? extends JStorageException>, Long> map = new HashMap<>();
+        errors.forEach((c, counter) -> map.put(c, counter.sum()));
+        return map;
+    }
+
+    /**
+     * Used to get the number of tasks handed to the ScalingExecutor
+     * @return long
+     */
+    public long getExecutorTasks(){
+        return executorTasks.sum();
+    }
+
+    /**
+     * Used to get the number of tasks rejected by the ScalingExecutor
+     * @return long
+     */
+    public long getExecutorRejections(){
+        return executorRejections.sum();
+    }
+
+    /**
+     * Used to get the queue depth of the ScalingExecutor seen last
+     * @return int
+     */
+    public int getExecutorQueueDepth(){
+        return executorQueueDepth.get();
+    }
+
+    /**
+     * Used to get the highest queue depth of the ScalingExecutor seen
+     * @return long
+     */
+    public long getExecutorMaxQueueDepth(){
+        return executorMaxQueueDepth.get();
+    }
+
+    /**
+     * Used to get the number of times the RateLimitInterceptor changed between the given slowdown levels
+     * @param from previous level
+     * @param to new level
+     * @return long
+     */
+    public long getSlowdownTransitions(int from, int to){
+        return slowdownTransitions.get(from * SLOWDOWN_LEVELS + to);
+    }
+
+    /**
+     * Used to get the concurrency limit of the ConcurrencyLimitInterceptor seen last
+     * @return int
+     */
+    public int getConcurrencyLimit(){
+        return concurrencyLimit.get();
+    }
+
+    /**
+     * Used to get the number of requests waiting for execution seen last
+     * @return int
+     */
+    public int getRequestQueueDepth(){
+        return requestQueueDepth.get();
+    }
+
+    /**
+     * Used to get the highest number of requests waiting for execution seen
+     * @return long
+     */
+    public long getRequestMaxQueueDepth(){
+        return requestMaxQueueDepth.get();
+    }
+
+    /**
+     * Holds the metrics of a single RequestType
+     */
+    private static class TypeMetrics {
+
+        private final LatencyHistogram latency = new LatencyHistogram();
+        private final LongAdder requests = new LongAdder();
+        private final LongAdder errors = new LongAdder();
+        private final LongAdder requestBytes = new LongAdder();
+        private final LongAdder responseBytes = new LongAdder();
+        private final AtomicInteger inFlight = new AtomicInteger();
+
+    }
+}
@@ -0,0 +1,117 @@
+/*
+ *     Copyright 2020 Horstexplorer @ https://www.netbeacon.de
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.netbeacon.jstorage.client.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock free histogram with log-linear buckets
+ * <br>
+ * Each power of two is split into 8 buckets, so reported values are at most 12.5% above the recorded ones.
+ * Recording does not allocate.
+ */
+public class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+    private final AtomicLongArray buckets = new AtomicLongArray(64 * SUB_BUCKETS);
+
+    /**
+     * Records a value
+     * @param value to record, negative values are recorded as 0
+     */
+    public void record(long value){
+        buckets.incrementAndGet(index(Math.max(0, value)));
+    }
+
+    /**
+     * Used to get the number of recorded values
+     * @return long
+     */
+    public long getCount(){
+        long count = 0;
+        for(int i = 0; i < buckets.length(); i++){
+            count += buckets.get(i);
+        }
+        return count;
+    }
+
+    /**
+     * Used to get the value below which the given percentage of values fall
+     * @param percentile between 0 and 100, e.g. 99.9
+     * @return value or 0 if nothing has been recorded
+     */
+    public long getPercentile(double percentile){
+        long[] counts = new long[buckets.length()];
+        long total = 0;
+        for(int i = 0; i < counts.length; i++){
+            counts[i] = buckets.get(i);
+            total += counts[i];
+        }
+        if(total == 0){
+            return 0;
+        }
+        long target = Math.max(1, (long) Math.ceil(total * Math.min(100, Math.max(0, percentile)) / 100));
+        long seen = 0;
+        for(int i = 0; i < counts.length; i++){
+            seen += counts[i];
+            if(seen >= target){
+                return upperBound(i);
+            }
+        }
+        return upperBound(counts.length - 1);
+    }
+
+    /**
+     * Removes all recorded values
+     */
+    public void reset(){
+        for(int i = 0; i < buckets.length(); i++){
+            buckets.set(i, 0);
+        }
+    }
+
+    /**
+     * Internal helper to get the bucket of a value
+     * @param value to get the bucket for
+     * @return index
+     */
+    private static int index(long value){
+        if(value < SUB_BUCKETS){
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+    }
+
+    /**
+     * Internal helper to get the highest value of a bucket
+     * @param index of the bucket
+     * @return value
+     */
+    private static long upperBound(int index){
+        if(index < SUB_BUCKETS){
+            return index;
+        }
+        int exponent = index / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+        long subBucket = index % SUB_BUCKETS;
+        long lower = (1L << exponent) + (subBucket << (exponent - SUB_BUCKET_BITS));
+        return lower + (1L << (exponent - SUB_BUCKET_BITS)) - 1;
+    }
+}
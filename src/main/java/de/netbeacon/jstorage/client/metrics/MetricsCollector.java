@@ -0,0 +1,76 @@
+/*
+ *     Copyright 2020 Horstexplorer @ https://www.netbeacon.de
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.netbeacon.jstorage.client.metrics;
+
+import de.netbeacon.jstorage.client.exceptions.JStorageException;
+import de.netbeacon.jstorage.client.request.RequestType;
+
+/**
+ * Receives measurements of the client
+ * <br>
+ * Methods are called on the hot path of every request and should neither block nor allocate
+ */
+public interface MetricsCollector {
+
+    /**
+     * Will be called before a request is sent
+     * @param requestType of the request
+     */
+    void onRequestStart(RequestType requestType);
+
+    /**
+     * Will be called after a response has been received or the request failed
+     * @param requestType of the request
+     * @param latency time in ns between sending the request and receiving the response headers
+     * @param requestBytes size of the request body or 0 if unknown
+     * @param responseBytes size of the response body or 0 if unknown
+     */
+    void onRequestEnd(RequestType requestType, long latency, long requestBytes, long responseBytes);
+
+    /**
+     * Will be called for each exception returned to the user
+     * @param requestType of the request
+     * @param exceptionClass type of the exception
+     */
+    void onError(RequestType requestType, Class<? extends JStorageException> exceptionClass);
+
+    /**
+     * Will be called for each task handed to the ScalingExecutor
+     * @param queueDepth number of tasks waiting for execution
+     */
+    void onExecutorTask(int queueDepth);
+
+    /**
+     * Will be called for each task rejected by the ScalingExecutor
+     */
+    void onExecutorRejection();
+
+    /**
+     * Will be called if the RateLimitInterceptor changes its slowdown level
+     * @param from previous level
+     * @param to new level
+     */
+    void onSlowdownTransition(int from, int to);
+
+    /**
+     * Will be called by the ConcurrencyLimitInterceptor after each request
+     * @param limit number of requests which may run concurrently
+     * @param queueDepth number of requests waiting for execution
+     */
+    void onConcurrencyLimit(int limit, int queueDepth);
+
+}
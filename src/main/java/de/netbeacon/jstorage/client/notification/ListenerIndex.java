@@ -0,0 +1,396 @@
+/*
+ *     Copyright 2020 Horstexplorer @ https://www.netbeacon.de
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.netbeacon.jstorage.client.notification;
+
+import de.netbeacon.jstorage.client.notification.objects.listener.ListenerQueue;
+import de.netbeacon.jstorage.client.notification.objects.listener.NotificationListener;
+import de.netbeacon.jstorage.client.notification.objects.notifiation.DataNotification;
+import de.netbeacon.jstorage.client.notification.objects.notifiation.NotificationGap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Routes notifications to the listeners subscribed to their database, table or dataset
+ * <br>
+ * Listeners are stored in a tree of database, table and dataset nodes. Routing only visits the nodes on the path of a
+ * notification, the cost depends on the number of matching listeners instead of all listeners.
+ * Changes are serialized, routing does not lock.
+ * <br>
+ * A node holds listeners with their own ListenerQueue and shared listeners, which do not have a queue and thread
+ * of their own. Dispatching only reports whether shared listeners are affected, they are called by {@link #deliver(DataNotification)}
+ * from the thread of the shared queue.
+ */
+class ListenerIndex {
+
+    private static final int MAX_DEPTH = 3;
+
+    private final Node root = new Node(null, null);
+    private final HashMap<ListenerQueue, Node> nodes = new HashMap<>();
+    private final HashMap<NotificationListener, List<Node>> sharedNodes = new HashMap<>();
+
+    private final Logger logger = LoggerFactory.getLogger(ListenerIndex.class);
+
+    /**
+     * Adds a listener to the given scope
+     * @param listenerQueue of the listener
+     * @param scope database, table, dataset or none to receive all notifications
+     */
+    synchronized void add(ListenerQueue listenerQueue, String... scope){
+        Node node = getOrCreate(scope);
+        node.listenerQueues.add(listenerQueue);
+        nodes.put(listenerQueue, node);
+    }
+
+    /**
+     * Adds a shared listener to the given scope
+     * <br>
+     * The same listener may be added to several scopes
+     * @param notificationListener listener
+     * @param scope database, table, dataset or none to receive all notifications
+     */
+    synchronized void add(NotificationListener notificationListener, String... scope){
+        Node node = getOrCreate(scope);
+        node.listeners.add(notificationListener);
+        sharedNodes.computeIfAbsent(notificationListener, k -> new ArrayList<>()).add(node);
+    }
+
+    /**
+     * Removes a listener
+     * @param listenerQueue of the listener
+     * @return true if the listener has been found
+     */
+    synchronized boolean remove(ListenerQueue listenerQueue){
+        Node node = nodes.remove(listenerQueue);
+        if(node == null){
+            return false;
+        }
+        node.listenerQueues.remove(listenerQueue);
+        prune(node);
+        return true;
+    }
+
+    /**
+     * Removes a shared listener from all scopes
+     * @param notificationListener listener
+     * @return true if the listener has been found
+     */
+    synchronized boolean remove(NotificationListener notificationListener){
+        List<Node> nodes = sharedNodes.remove(notificationListener);
+        if(nodes == null){
+            return false;
+        }
+        for(Node node : nodes){
+            node.listeners.remove(notificationListener);
+            prune(node);
+        }
+        return true;
+    }
+
+    /**
+     * Used to get all listeners with their own queue
+     * @return List of ListenerQueue
+     */
+    synchronized List<ListenerQueue> getAll(){
+        return new ArrayList<>(nodes.keySet());
+    }
+
+    /**
+     * Used to get all shared listeners
+     * @return List of NotificationListener
+     */
+    synchronized List<NotificationListener> getAllShared(){
+        return new ArrayList<>(sharedNodes.keySet());
+    }
+
+    /**
+     * Used to check if shared listeners are registered
+     * @return boolean
+     */
+    synchronized boolean hasSharedListeners(){
+        return !sharedNodes.isEmpty();
+    }
+
+    /**
+     * Used to check if listeners without scope are registered
+     * @return boolean
+     */
+    boolean hasUnscopedListeners(){
+        return !root.listenerQueues.isEmpty() || !root.listeners.isEmpty();
+    }
+
+    /**
+     * Used to get the number of scopes listeners are subscribed to
+     * @return int
+     */
+    int getScopeCount(){
+        return count(root) - 1;
+    }
+
+    /**
+     * Hands a notification to the listeners of all scopes it affects
+     * <br>
+     * Listeners of a scope below the one of the notification receive it as well, as deleting a table deletes its datasets too.
+     * Heartbeats are only delivered to listeners without scope.
+     * @param dataNotification notification
+     * @return true if shared listeners are within the scope and the notification needs to be passed to {@link #deliver(DataNotification)}
+     */
+    boolean dispatch(DataNotification dataNotification){
+        return visit(dataNotification, node -> offer(node, dataNotification));
+    }
+
+    /**
+     * Hands a gap to the listeners of all scopes within it
+     * <br>
+     * Listeners without scope and listeners of a database or table covered by the gap receive it
+     * @param notificationGap gap
+     * @return true if shared listeners are within the scope and the gap needs to be passed to {@link #deliver(NotificationGap)}
+     */
+    boolean dispatch(NotificationGap notificationGap){
+        return visit(notificationGap, node -> offer(node, notificationGap));
+    }
+
+    /**
+     * Calls the shared listeners of all scopes a notification affects
+     * <br>
+     * Listeners are called one after another, an exception thrown by one of them does not affect the others
+     * @param dataNotification notification
+     */
+    void deliver(DataNotification dataNotification){
+        visit(dataNotification, node -> {
+            for(NotificationListener notificationListener : node.listeners){
+                try{
+                    notificationListener.onNotification(dataNotification);
+                }catch (Exception e){
+                    logger.error("Notification Listener Failed", e);
+                }
+            }
+            return false;
+        });
+    }
+
+    /**
+     * Calls the shared listeners of all scopes within a gap
+     * @param notificationGap gap
+     */
+    void deliver(NotificationGap notificationGap){
+        visit(notificationGap, node -> {
+            for(NotificationListener notificationListener : node.listeners){
+                try{
+                    notificationListener.onGap(notificationGap);
+                }catch (Exception e){
+                    logger.error("Notification Listener Failed", e);
+                }
+            }
+            return false;
+        });
+    }
+
+    /**
+     * Internal helper to visit the nodes of all scopes a notification affects
+     * @param dataNotification notification
+     * @param visitor to call for each node
+     * @return true if one of the visitors returned true
+     */
+    private boolean visit(DataNotification dataNotification, Visitor visitor){
+        Node node = root;
+        boolean result = visitor.visit(node);
+        if(dataNotification.getContent() == DataNotification.Content.heartbeat){
+            return result;
+        }
+        for(int depth = 0; depth < MAX_DEPTH; depth++){
+            String key = key(dataNotification, depth);
+            if(key == null){
+                return visitBelow(node, visitor) | result;
+            }
+            node = node.children.get(key.toLowerCase());
+            if(node == null){
+                return result;
+            }
+            result |= visitor.visit(node);
+        }
+        return result;
+    }
+
+    /**
+     * Internal helper to visit the nodes of all scopes within a gap
+     * @param notificationGap gap
+     * @param visitor to call for each node
+     * @return true if one of the visitors returned true
+     */
+    private boolean visit(NotificationGap notificationGap, Visitor visitor){
+        boolean result = visitor.visit(root);
+        for(Map.Entry<String, List<String>> entry : notificationGap.getScope().entrySet()){
+            Node database = root.children.get(entry.getKey());
+            if(database == null){
+                continue;
+            }
+            result |= visitor.visit(database);
+            if(entry.getValue().isEmpty()){
+                result |= visitBelow(database, visitor);
+                continue;
+            }
+            for(String tableName : entry.getValue()){
+                Node table = database.children.get(tableName);
+                if(table != null){
+                    result |= visitor.visit(table);
+                    result |= visitBelow(table, visitor);
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Internal helper to visit all nodes below the given one
+     * @param node parent
+     * @param visitor to call for each node
+     * @return true if one of the visitors returned true
+     */
+    private static boolean visitBelow(Node node, Visitor visitor){
+        boolean result = false;
+        for(Node child : node.children.values()){
+            result |= visitor.visit(child);
+            result |= visitBelow(child, visitor);
+        }
+        return result;
+    }
+
+    /**
+     * Internal helper to hand a gap to the listener queues of a node
+     * @param node to notify
+     * @param notificationGap gap
+     * @return true if the node has shared listeners
+     */
+    private static boolean offer(Node node, NotificationGap notificationGap){
+        for(ListenerQueue listenerQueue : node.listenerQueues){
+            listenerQueue.offer(notificationGap);
+        }
+        return !node.listeners.isEmpty();
+    }
+
+    /**
+     * Internal helper to hand a notification to the listener queues of a node
+     * @param node to notify
+     * @param dataNotification notification
+     * @return true if the node has shared listeners
+     */
+    private static boolean offer(Node node, DataNotification dataNotification){
+        for(ListenerQueue listenerQueue : node.listenerQueues){
+            listenerQueue.offer(dataNotification);
+        }
+        return !node.listeners.isEmpty();
+    }
+
+    /**
+     * Internal helper to get the node of a scope, creates missing nodes, needs to be called while holding the lock
+     * @param scope database, table, dataset or none
+     * @return Node
+     */
+    private Node getOrCreate(String... scope){
+        if(scope.length > MAX_DEPTH){
+            throw new IllegalArgumentException("Scope Too Deep: "+String.join("/", scope));
+        }
+        for(String key : scope){
+            if(key == null){
+                throw new IllegalArgumentException("Scope Contains Null");
+            }
+        }
+        Node node = root;
+        for(String key : scope){
+            Node parent = node;
+            node = parent.children.computeIfAbsent(key.toLowerCase(), k -> new Node(parent, k));
+        }
+        return node;
+    }
+
+    /**
+     * Internal helper to remove nodes of scopes nobody is subscribed to anymore, needs to be called while holding the lock
+     * @param node to start at
+     */
+    private static void prune(Node node){
+        while(node.parent != null && node.listenerQueues.isEmpty() && node.listeners.isEmpty() && node.children.isEmpty()){
+            node.parent.children.remove(node.key, node);
+            node = node.parent;
+        }
+    }
+
+    /**
+     * Internal helper to count a node and all nodes below it
+     * @param node to start at
+     * @return int
+     */
+    private static int count(Node node){
+        int count = 1;
+        for(Node child : node.children.values()){
+            count += count(child);
+        }
+        return count;
+    }
+    /**
+     * Internal helper to get the part of the scope of a notification at the given depth
+     * @param dataNotification notification
+     * @param depth 0 database, 1 table, 2 dataset
+     * @return String or null
+     */
+    private static String key(DataNotification dataNotification, int depth){
+        switch (depth){
+            case 0:
+                return dataNotification.getDatabase();
+            case 1:
+                return dataNotification.getTable();
+            default:
+                return dataNotification.getDataset();
+        }
+    }
+
+    /**
+     * Called for each node a notification or gap affects
+     */
+    private interface Visitor {
+
+        /**
+         * Visits a node
+         * @param node to visit
+         * @return boolean passed on to the caller
+         */
+        boolean visit(Node node);
+    }
+
+    /**
+     * Holds the listeners of a single scope
+     */
+    private static class Node {
+
+        private final Node parent;
+        private final String key;
+        private final CopyOnWriteArrayList<ListenerQueue> listenerQueues = new CopyOnWriteArrayList<>();
+        private final CopyOnWriteArrayList<NotificationListener> listeners = new CopyOnWriteArrayList<>();
+        private final ConcurrentHashMap<String, Node> children = new ConcurrentHashMap<>();
+
+        private Node(Node parent, String key){
+            this.parent = parent;
+            this.key = key;
+        }
+    }
+}
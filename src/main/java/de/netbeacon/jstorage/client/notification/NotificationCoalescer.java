@@ -0,0 +1,212 @@
+/*
+ *     Copyright 2020 Horstexplorer @ https://www.netbeacon.de
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.netbeacon.jstorage.client.notification;
+
+import de.netbeacon.jstorage.client.notification.objects.notifiation.DataNotification;
+
+import java.util.LinkedHashMap;
+import java.util.Objects;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+/**
+ * Merges notifications for the same database, table and dataset which arrive within a short time
+ * <br>
+ * The first notification of a key opens the window, all following ones are merged into it until the window is flushed.
+ * The merged notification carries the content and timestamp of the last one, except that an update does not hide
+ * an earlier deletion while a later creation does. If the datatypes differ the merged notification covers the whole
+ * dataset as update, or as deletion if the dataset itself has been deleted and not recreated since.
+ * Merged notifications are passed on in the order of their last change. Heartbeats are passed on right away.
+ * <br>
+ * Notifications are passed on while holding the lock, submits wait while the target blocks.
+ */
+public class NotificationCoalescer {
+
+    private final Consumer<DataNotification> target;
+    private final long windowMillis;
+    private final ScheduledExecutorService scheduler;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private LinkedHashMap<String, DataNotification> pending = new LinkedHashMap<>();
+    private ScheduledFuture<?> flushTask;
+    private boolean shutdown;
+
+    private final LongAdder received = new LongAdder();
+    private final LongAdder suppressed = new LongAdder();
+
+    /**
+     * Creates a new instance of this class
+     * @param target receiving the merged notifications
+     * @param windowMillis time in ms notifications are held back to be merged with following ones
+     * @param scheduler used to flush the windows, e.g. the one of the client
+     */
+    public NotificationCoalescer(Consumer<DataNotification> target, long windowMillis, ScheduledExecutorService scheduler){
+        this.target = target;
+        this.windowMillis = Math.max(1, windowMillis);
+        this.scheduler = scheduler;
+    }
+
+    /**
+     * Adds a notification to the current window
+     * <br>
+     * After {@link #shutdown()} the notification is passed on right away
+     * @param dataNotification notification
+     */
+    public void submit(DataNotification dataNotification){
+        if(dataNotification.getContent() == DataNotification.Content.heartbeat){
+            target.accept(dataNotification);
+            return;
+        }
+        received.increment();
+        String key = dataNotification.getDatabase()+"/"+dataNotification.getTable()+"/"+dataNotification.getDataset();
+        try{
+            lock.lock();
+            if(shutdown){
+                target.accept(dataNotification);
+                return;
+            }
+            DataNotification previous = pending.get(key);
+            if(previous == null){
+                pending.put(key, dataNotification);
+                if(flushTask == null){
+                    try{
+                        flushTask = scheduler.schedule(this::flush, windowMillis, TimeUnit.MILLISECONDS);
+                    }catch (RejectedExecutionException e){
+                        // the scheduler is gone, stop merging instead of holding the notifications back forever
+                        shutdown = true;
+                        flush();
+                    }
+                }
+            }else{
+                // move the key behind the ones changed in the meantime
+                pending.remove(key);
+                pending.put(key, merge(previous, dataNotification));
+                suppressed.increment();
+            }
+        }finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Passes on all pending notifications
+     */
+    public void flush(){
+        try{
+            lock.lock();
+            if(flushTask != null){
+                flushTask.cancel(false);
+                flushTask = null;
+            }
+            if(pending.isEmpty()){
+                return;
+            }
+            LinkedHashMap<String, DataNotification> window = pending;
+            pending = new LinkedHashMap<>();
+            // passed on under the lock to keep them ahead of notifications submitted after a shutdown
+            for(DataNotification dataNotification : window.values()){
+                target.accept(dataNotification);
+            }
+        }finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Passes on all pending notifications and stops merging
+     * <br>
+     * Notifications submitted afterwards are passed on right away. The scheduler is not shut down
+     */
+    public void shutdown(){
+        try{
+            lock.lock();
+            shutdown = true;
+            flush();
+        }finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Used to get the time notifications are held back
+     * @return ms
+     */
+    public long getWindowMillis(){
+        return windowMillis;
+    }
+
+    /**
+     * Used to get the number of notifications submitted, not including heartbeats
+     * @return long
+     */
+    public long getReceived(){
+        return received.sum();
+    }
+
+    /**
+     * Used to get the number of notifications which have been merged into another one
+     * @return long
+     */
+    public long getSuppressed(){
+        return suppressed.sum();
+    }
+
+    /**
+     * Used to get the number of notifications waiting for their window to be flushed
+     * @return int
+     */
+    public int getPending(){
+        try{
+            lock.lock();
+            return pending.size();
+        }finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Internal helper to merge two notifications for the same dataset
+     * @param previous notification
+     * @param next notification
+     * @return DataNotification
+     */
+    static DataNotification merge(DataNotification previous, DataNotification next){
+        DataNotification.Content content;
+        String datatype;
+        if(Objects.equals(previous.getDatatype(), next.getDatatype())){
+            boolean deleted = previous.getContent() == DataNotification.Content.deleted && next.getContent() == DataNotification.Content.updated;
+            if(!deleted){
+                return next;
+            }
+            content = DataNotification.Content.deleted;
+            datatype = next.getDatatype();
+        }else if(next.getDatatype() == null){
+            // covers the whole dataset already
+            return next;
+        }else{
+            boolean datasetDeleted = previous.getDatatype() == null && previous.getContent() == DataNotification.Content.deleted && next.getContent() != DataNotification.Content.created;
+            content = datasetDeleted ? DataNotification.Content.deleted : DataNotification.Content.updated;
+            datatype = null;
+        }
+        return new DataNotification(content, next.getTimestamp(), next.getDatabase(), next.getTable(), next.getDataset(), datatype);
+    }
+}
@@ -17,21 +17,32 @@
 package de.netbeacon.jstorage.client.notification;
 
 import de.netbeacon.jstorage.client.JStorageClient;
+import de.netbeacon.jstorage.client.cache.DataCache;
 import de.netbeacon.jstorage.client.notification.objects.connection.NotificationConnection;
+import de.netbeacon.jstorage.client.notification.objects.listener.ListenerQueue;
 import de.netbeacon.jstorage.client.notification.objects.notifiation.DataNotification;
+import de.netbeacon.jstorage.client.notification.objects.notifiation.NotificationGap;
 import de.netbeacon.jstorage.client.notification.objects.listener.NotificationListener;
 
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 
 /**
  * Takes care of managing notifications
  */
 public class NotificationManager {
 
+    private static final int DEFAULT_LISTENER_CAPACITY = 1024;
+
     private final JStorageClient jStorageClient;
-    private final ArrayList<NotificationListener> notificationListeners = new ArrayList<>();
+    private final ListenerIndex listenerIndex = new ListenerIndex();
+    private volatile ListenerQueue sharedQueue;
+    private volatile NotificationCoalescer notificationCoalescer;
     private NotificationConnection notificationConnection;
+    private HashMap<String, ArrayList<String>> selectedNotifications;
+    private long reconnectBaseDelay = 500;
+    private long reconnectMaxDelay = 30000;
 
     /**
      * Creates a new instance of this class
@@ -46,7 +57,7 @@ public class NotificationManager {
      * @param selectedNotifications notifications to receive
      * @param port port of the notification socket
      * @param unsecureSSL use unsecure ssl
-     * @return boolean, true on successful start
+     * @return boolean, true on successful start. If the first connect fails it is retried in the background
      */
     public boolean start(HashMap<String, ArrayList<String>> selectedNotifications, int port, boolean unsecureSSL){
         // stop old
@@ -54,9 +65,11 @@ public class NotificationManager {
             notificationConnection.disconnect();
         }
         // start new
+        this.selectedNotifications = selectedNotifications;
         notificationConnection = new NotificationConnection(this, selectedNotifications, port);
         notificationConnection.setUnsecureSSL(unsecureSSL);
-        return notificationConnection.connect();
+        notificationConnection.getReconnectSupervisor().setBackoff(reconnectBaseDelay, reconnectMaxDelay);
+        return notificationConnection.start();
     }
 
     /**
@@ -68,19 +81,194 @@ public class NotificationManager {
         }
     }
 
+    /**
+     * Can be used to change the delay between reconnect attempts, applies to the next start
+     * @param baseDelay delay in ms before the first attempt, doubled on each failed one
+     * @param maxDelay max delay in ms between two attempts
+     */
+    public void setReconnectBackoff(long baseDelay, long maxDelay){
+        this.reconnectBaseDelay = baseDelay;
+        this.reconnectMaxDelay = maxDelay;
+    }
+
+    /**
+     * Used to get the current connection of the notification socket
+     * @return NotificationConnection or null if not started
+     */
+    public NotificationConnection getNotificationConnection(){
+        return notificationConnection;
+    }
+
+    /**
+     * Can be used to merge notifications for the same dataset before they are handed to the listeners
+     * <br>
+     * The DataCache is still invalidated by every notification as soon as it arrives
+     * @param windowMillis time in ms notifications are held back to be merged with following ones
+     */
+    public void enableCoalescing(long windowMillis){
+        NotificationCoalescer old = this.notificationCoalescer;
+        this.notificationCoalescer = new NotificationCoalescer(this::dispatch, windowMillis, jStorageClient.getScheduler());
+        if(old != null){
+            old.shutdown();
+        }
+    }
+
+    /**
+     * Can be used to disable merging of notifications, pending ones are passed on
+     */
+    public void disableCoalescing(){
+        NotificationCoalescer old = this.notificationCoalescer;
+        this.notificationCoalescer = null;
+        if(old != null){
+            old.shutdown();
+        }
+    }
+
+    /**
+     * Used to get the NotificationCoalescer
+     * @return NotificationCoalescer or null if disabled
+     */
+    public NotificationCoalescer getNotificationCoalescer(){
+        return notificationCoalescer;
+    }
+
     /**
      * Add a notification listener
+     * <br>
+     * The listener is called on its own thread, the socket waits for it if more than 1024 notifications are pending
      * @param notificationListener listener
      */
     public void addNotificationListener(NotificationListener notificationListener){
-        notificationListeners.add(notificationListener);
+        addNotificationListener(notificationListener, DEFAULT_LISTENER_CAPACITY, ListenerQueue.OverflowPolicy.BLOCK);
+    }
+
+    /**
+     * Add a notification listener with its own queue settings
+     * @param notificationListener listener
+     * @param capacity max number of notifications pending for this listener
+     * @param overflowPolicy what to do if the listener falls behind by more than the capacity
+     * @return ListenerQueue of the listener, providing its lag
+     */
+    public ListenerQueue addNotificationListener(NotificationListener notificationListener, int capacity, ListenerQueue.OverflowPolicy overflowPolicy){
+        return subscribe(notificationListener, capacity, overflowPolicy);
+    }
+
+    /**
+     * Add a notification listener which only receives notifications of the given database, table or dataset
+     * <br>
+     * Notifications are routed to the matching listeners only, so many listeners with narrow scopes are cheap.
+     * Listeners subscribed this way do not get a thread of their own, they are called one after another from a single
+     * shared queue. A slow listener delays the other shared listeners and the socket waits for them if more than 1024
+     * notifications are pending, listeners which may block should be subscribed with a queue of their own.
+     * @param notificationListener listener
+     * @param scope database, table, dataset or none to receive all notifications
+     * @return ListenerQueue shared by these listeners, providing their lag
+     */
+    public ListenerQueue subscribe(NotificationListener notificationListener, String... scope){
+        synchronized (listenerIndex){
+            ListenerQueue sharedQueue = this.sharedQueue;
+            if(sharedQueue == null){
+                sharedQueue = this.sharedQueue = new ListenerQueue(new NotificationListener() {
+                    @Override
+                    public void onNotification(DataNotification dataNotification){
+                        listenerIndex.deliver(dataNotification);
+                    }
+
+                    @Override
+                    public void onGap(NotificationGap notificationGap){
+                        listenerIndex.deliver(notificationGap);
+                    }
+                }, DEFAULT_LISTENER_CAPACITY, ListenerQueue.OverflowPolicy.BLOCK);
+            }
+            try{
+                listenerIndex.add(notificationListener, scope);
+            }catch (IllegalArgumentException e){
+                shutdownSharedQueue();
+                throw e;
+            }
+            return sharedQueue;
+        }
+    }
+
+    /**
+     * Add a notification listener which only receives notifications of the given database, table or dataset
+     * <br>
+     * The listener is called on its own thread
+     * @param notificationListener listener
+     * @param capacity max number of notifications pending for this listener
+     * @param overflowPolicy what to do if the listener falls behind by more than the capacity
+     * @param scope database, table, dataset or none to receive all notifications
+     * @return ListenerQueue of the listener, providing its lag
+     */
+    public ListenerQueue subscribe(NotificationListener notificationListener, int capacity, ListenerQueue.OverflowPolicy overflowPolicy, String... scope){
+        ListenerQueue listenerQueue = new ListenerQueue(notificationListener, capacity, overflowPolicy);
+        try{
+            listenerIndex.add(listenerQueue, scope);
+        }catch (IllegalArgumentException e){
+            listenerQueue.shutdown();
+            throw e;
+        }
+        return listenerQueue;
+    }
+
+    /**
+     * Remove a notification listener from all scopes
+     * <br>
+     * Pending notifications are still delivered to listeners with a queue of their own, shared listeners do not receive them
+     * @param notificationListener listener
+     */
+    public void removeNotificationListener(NotificationListener notificationListener){
+        for(ListenerQueue listenerQueue : listenerIndex.getAll()){
+            if(listenerQueue.getNotificationListener() == notificationListener && listenerIndex.remove(listenerQueue)){
+                listenerQueue.shutdown();
+            }
+        }
+        if(listenerIndex.remove(notificationListener)){
+            shutdownSharedQueue();
+        }
     }
 
     /**
      * Remove all listeners
      */
     public void clearNotificationListener(){
-        notificationListeners.clear();
+        for(ListenerQueue listenerQueue : listenerIndex.getAll()){
+            if(listenerIndex.remove(listenerQueue)){
+                listenerQueue.shutdown();
+            }
+        }
+        for(NotificationListener notificationListener : listenerIndex.getAllShared()){
+            listenerIndex.remove(notificationListener);
+        }
+        shutdownSharedQueue();
+    }
+
+    /**
+     * Used to get the queues of all listeners
+     * <br>
+     * Contains the queue shared by the listeners without a queue of their own once
+     * @return List of ListenerQueue
+     */
+    public List<ListenerQueue> getListenerQueues(){
+        List<ListenerQueue> listenerQueues = listenerIndex.getAll();
+        ListenerQueue sharedQueue = this.sharedQueue;
+        if(sharedQueue != null){
+            listenerQueues.add(sharedQueue);
+        }
+        return listenerQueues;
+    }
+
+    /**
+     * Internal helper to stop the shared queue once no listener uses it anymore
+     */
+    private void shutdownSharedQueue(){
+        synchronized (listenerIndex){
+            ListenerQueue sharedQueue = this.sharedQueue;
+            if(sharedQueue != null && !listenerIndex.hasSharedListeners()){
+                this.sharedQueue = null;
+                sharedQueue.shutdown();
+            }
+        }
     }
 
     /**
@@ -88,8 +276,76 @@ public class NotificationManager {
      * @param dataNotification notification
      */
     public void dispatchNotification(DataNotification dataNotification){
-        for(NotificationListener n : notificationListeners){
-            n.onNotification(dataNotification);
+        DataCache dataCache = jStorageClient.getDataCache();
+        if(dataCache != null){
+            dataCache.onNotification(dataNotification);
+        }
+        NotificationCoalescer notificationCoalescer = this.notificationCoalescer;
+        if(notificationCoalescer != null){
+            notificationCoalescer.submit(dataNotification);
+        }else{
+            dispatch(dataNotification);
+        }
+    }
+
+    /**
+     * Used by the notification socket to signal a received heartbeat
+     * <br>
+     * Heartbeats are only turned into a notification if a listener without scope is registered
+     * @param timestamp of the heartbeat
+     */
+    public void onHeartbeat(long timestamp){
+        if(listenerIndex.hasUnscopedListeners()){
+            dispatch(new DataNotification(DataNotification.Content.heartbeat, timestamp, null, null, null, null));
+        }
+    }
+
+    /**
+     * Used by the notification socket to signal that notifications may have been missed while reconnecting
+     * <br>
+     * The DataCache drops the entries of the affected scope, listeners within it receive the gap after all notifications received before
+     * @param notificationGap gap
+     */
+    public void onGap(NotificationGap notificationGap){
+        DataCache dataCache = jStorageClient.getDataCache();
+        if(dataCache != null){
+            dataCache.onGap(notificationGap);
+        }
+        NotificationCoalescer notificationCoalescer = this.notificationCoalescer;
+        if(notificationCoalescer != null){
+            notificationCoalescer.flush();
+        }
+        if(listenerIndex.dispatch(notificationGap)){
+            ListenerQueue sharedQueue = this.sharedQueue;
+            if(sharedQueue != null){
+                sharedQueue.offer(notificationGap);
+            }
+        }
+    }
+
+    /**
+     * Internal helper to hand a notification to the listeners of its scope
+     * <br>
+     * Shared listeners are called from the shared queue, which only receives the notifications within their scopes
+     * @param dataNotification notification
+     */
+    private void dispatch(DataNotification dataNotification){
+        if(listenerIndex.dispatch(dataNotification)){
+            ListenerQueue sharedQueue = this.sharedQueue;
+            if(sharedQueue != null){
+                sharedQueue.offer(dataNotification);
+            }
+        }
+    }
+
+    /**
+     * Used by the notification socket to signal whether it is connected
+     * @param connected state of the connection
+     */
+    public void onConnectionStateChange(boolean connected){
+        DataCache dataCache = jStorageClient.getDataCache();
+        if(dataCache != null){
+            dataCache.setInvalidationActive(connected, selectedNotifications);
         }
     }
 
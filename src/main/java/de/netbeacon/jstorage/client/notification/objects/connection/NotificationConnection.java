@@ -17,6 +17,7 @@
 package de.netbeacon.jstorage.client.notification.objects.connection;
 
 import de.netbeacon.jstorage.client.notification.NotificationManager;
+import de.netbeacon.jstorage.client.notification.objects.notifiation.NotificationParser;
 
 import javax.net.ssl.*;
 import java.io.BufferedReader;
@@ -44,11 +45,14 @@ public class NotificationConnection {
     private final AtomicBoolean reconnect = new AtomicBoolean(true);
     private SSLSocket sslSocket;
     private final Executor connectionWorker = Executors.newSingleThreadExecutor();
+    private final NotificationParser notificationParser = new NotificationParser();
+    private final ReconnectSupervisor reconnectSupervisor;
 
     public NotificationConnection(NotificationManager notificationManager, HashMap<String, ArrayList<String>> selectedNotifications, int notificationSocketPort){
         this.notificationManager = notificationManager;
         this.selectedNotifications = selectedNotifications;
         this.notificationSocketPort = notificationSocketPort;
+        this.reconnectSupervisor = new ReconnectSupervisor(this, notificationManager, selectedNotifications);
     }
 
     public void setUnsecureSSL(boolean value){
@@ -59,6 +63,21 @@ public class NotificationConnection {
         this.reconnect.set(value);
     }
 
+    /**
+     * Connects for the first time
+     * <br>
+     * If this fails and reconnecting is allowed the ReconnectSupervisor keeps trying in the background
+     * @return true if connected right away
+     */
+    public boolean start(){
+        if(connect()){
+            return true;
+        }
+        if(allowReconnect()){
+            connectionWorker.execute(reconnectSupervisor::retryConnect);
+        }
+        return false;
+    }
 
     public boolean connect(){
         BufferedReader bufferedReader = null;
@@ -122,6 +141,7 @@ public class NotificationConnection {
             if(!auth.contains("200 OK")){
                 throw new Exception("Invalid Response: "+auth);
             }
+            notificationManager.onConnectionStateChange(true);
             connectionWorker.execute(new NotificationConnectionWorker(this, sslSocket, bufferedReader, bufferedWriter, this.notificationManager));
             return true;
         }catch (Exception e){
@@ -136,6 +156,7 @@ public class NotificationConnection {
 
     public void disconnect(){
         reconnect.set(false);
+        reconnectSupervisor.wakeUp();
         if(sslSocket != null){
             try{sslSocket.close();}catch (Exception ignore){} // this should let the worker die
         }
@@ -144,4 +165,20 @@ public class NotificationConnection {
     public boolean allowReconnect() {
         return reconnect.get();
     }
+
+    /**
+     * Used to get the supervisor restoring this connection
+     * @return ReconnectSupervisor
+     */
+    public ReconnectSupervisor getReconnectSupervisor(){
+        return reconnectSupervisor;
+    }
+
+    /**
+     * Used to get the parser shared by the workers of this connection, which run one after another
+     * @return NotificationParser
+     */
+    public NotificationParser getNotificationParser(){
+        return notificationParser;
+    }
 }
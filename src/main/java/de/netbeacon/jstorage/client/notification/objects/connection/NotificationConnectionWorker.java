@@ -18,14 +18,16 @@ package de.netbeacon.jstorage.client.notification.objects.connection;
 
 import de.netbeacon.jstorage.client.notification.NotificationManager;
 import de.netbeacon.jstorage.client.notification.objects.notifiation.DataNotification;
+import de.netbeacon.jstorage.client.notification.objects.notifiation.NotificationParser;
 import org.json.JSONException;
-import org.json.JSONObject;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.net.ssl.SSLSocket;
 import java.io.BufferedReader;
 import java.io.BufferedWriter;
+import java.io.EOFException;
+import java.net.SocketTimeoutException;
 
 public class NotificationConnectionWorker implements Runnable{
 
@@ -47,24 +49,47 @@ public class NotificationConnectionWorker implements Runnable{
 
     @Override
     public void run() {
+        NotificationParser notificationParser = notificationConnection.getNotificationParser();
+        ReconnectSupervisor reconnectSupervisor = notificationConnection.getReconnectSupervisor();
+        int readTimeout = 0;
         try{
             while(true){
+                String line = bufferedReader.readLine();
+                if(line == null){
+                    throw new EOFException("Connection Closed");
+                }
+                DataNotification dataNotification;
                 try{
-                    String line = bufferedReader.readLine();
-                    notificationManager.dispatchNotification(new DataNotification(new JSONObject(line)));
-                }catch (JSONException ignore){}
+                    dataNotification = notificationParser.parse(line);
+                }catch (JSONException e){
+                    logger.warn("Received Invalid Notification: "+e.getMessage());
+                    continue;
+                }
+                if(dataNotification == null){
+                    reconnectSupervisor.onHeartbeat(notificationParser.getLastHeartbeat());
+                    // consider the connection dead if heartbeats stop arriving
+                    if(readTimeout != reconnectSupervisor.getReadTimeout()){
+                        readTimeout = reconnectSupervisor.getReadTimeout();
+                        sslSocket.setSoTimeout(readTimeout);
+                    }
+                    notificationManager.onHeartbeat(notificationParser.getLastHeartbeat());
+                }else{
+                    reconnectSupervisor.onNotification(dataNotification.getTimestamp());
+                    notificationManager.dispatchNotification(dataNotification);
+                }
             }
         }catch (Exception e){
             try{bufferedReader.close();}catch (Exception ignore){}
             try{bufferedWriter.close();}catch (Exception ignore){}
             try{sslSocket.close();}catch (Exception ignore){}
+            notificationManager.onConnectionStateChange(false);
+            if(e instanceof SocketTimeoutException){
+                logger.warn("Notification Worker Received No Heartbeat For "+readTimeout+"ms");
+            }
             // try reconnecting
             if(notificationConnection.allowReconnect()){
-                if(notificationConnection.connect()){
-                    logger.warn("Notification Worker Died. Reconnecting.");
-                }else{
-                    logger.warn("Notification Worker Died. Reconnecting Failed.");
-                }
+                logger.warn("Notification Worker Died. Reconnecting.");
+                reconnectSupervisor.reconnect();
             }else{
                 logger.warn("Notification Worker Died. Not Reconnecting.");
             }
@@ -0,0 +1,239 @@
+/*
+ *     Copyright 2020 Horstexplorer @ https://www.netbeacon.de
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.netbeacon.jstorage.client.notification.objects.connection;
+
+import de.netbeacon.jstorage.client.notification.NotificationManager;
+import de.netbeacon.jstorage.client.notification.objects.notifiation.NotificationGap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Keeps track of the health of a NotificationConnection and restores it once it got lost
+ * <br>
+ * Reconnects are retried with exponential backoff and jitter until they succeed or the connection is closed.
+ * The server can not replay missed notifications, so a NotificationGap is raised after each reconnect instead.
+ * Heartbeat intervals are measured to detect connections which died silently.
+ */
+public class ReconnectSupervisor {
+
+    private static final long DEFAULT_BASE_DELAY = 500;
+    private static final long DEFAULT_MAX_DELAY = 30000;
+    private static final int HEARTBEAT_TOLERANCE = 3;
+    private static final long MIN_READ_TIMEOUT = 2000;
+
+    private final NotificationConnection notificationConnection;
+    private final NotificationManager notificationManager;
+    private final HashMap<String, ArrayList<String>> selectedNotifications;
+
+    private volatile long baseDelay = DEFAULT_BASE_DELAY;
+    private volatile long maxDelay = DEFAULT_MAX_DELAY;
+    private final Object sleeper = new Object();
+
+    private volatile long lastTimestamp = -1;
+    private volatile long lastHeartbeat = -1;
+    private volatile long heartbeatInterval = -1;
+
+    private final LongAdder reconnects = new LongAdder();
+    private final LongAdder failedAttempts = new LongAdder();
+
+    private final Logger logger = LoggerFactory.getLogger(ReconnectSupervisor.class);
+
+    /**
+     * Creates a new instance of this class
+     * @param notificationConnection to supervise
+     * @param notificationManager receiving the gaps
+     * @param selectedNotifications notifications received by the connection
+     */
+    public ReconnectSupervisor(NotificationConnection notificationConnection, NotificationManager notificationManager, HashMap<String, ArrayList<String>> selectedNotifications){
+        this.notificationConnection = notificationConnection;
+        this.notificationManager = notificationManager;
+        this.selectedNotifications = selectedNotifications;
+    }
+
+    /**
+     * Can be used to change the delay between reconnect attempts
+     * @param baseDelay delay in ms before the first attempt, doubled on each failed one
+     * @param maxDelay max delay in ms between two attempts
+     */
+    public void setBackoff(long baseDelay, long maxDelay){
+        this.baseDelay = Math.max(1, baseDelay);
+        this.maxDelay = Math.max(this.baseDelay, maxDelay);
+    }
+
+    /**
+     * Will be called for each notification received
+     * @param timestamp of the notification
+     */
+    public void onNotification(long timestamp){
+        lastTimestamp = Math.max(lastTimestamp, timestamp);
+    }
+
+    /**
+     * Will be called for each heartbeat received
+     * @param timestamp of the heartbeat
+     */
+    public void onHeartbeat(long timestamp){
+        long previous = lastHeartbeat;
+        lastHeartbeat = timestamp;
+        lastTimestamp = Math.max(lastTimestamp, timestamp);
+        if(previous < 0 || timestamp <= previous){
+            return;
+        }
+        long interval = timestamp - previous;
+        long current = heartbeatInterval;
+        heartbeatInterval = (current < 0) ? interval : (current * 3 + interval) / 4;
+    }
+
+    /**
+     * Used to get the time after which a connection without any incoming data should be considered dead
+     * @return timeout in ms or 0 as long as no heartbeat interval is known
+     */
+    public int getReadTimeout(){
+        long interval = heartbeatInterval;
+        if(interval <= 0){
+            return 0;
+        }
+        return (int) Math.min(Integer.MAX_VALUE, Math.max(MIN_READ_TIMEOUT, interval * HEARTBEAT_TOLERANCE));
+    }
+
+    /**
+     * Reconnects after the connection got lost, blocks until connected or reconnecting is no longer allowed
+     * <br>
+     * Raises a NotificationGap at the NotificationManager once the connection has been restored
+     * @return true if the connection has been restored
+     */
+    public boolean reconnect(){
+        return reconnect(true);
+    }
+
+    /**
+     * Retries the first connect after it failed, blocks until connected or reconnecting is no longer allowed
+     * <br>
+     * Nothing could have been received before, so no NotificationGap is raised
+     * @return true if the connection has been established
+     */
+    public boolean retryConnect(){
+        return reconnect(false);
+    }
+
+    /**
+     * Internal helper to retry connecting with backoff
+     * @param raiseGap whether a NotificationGap should be raised once connected
+     * @return true if connected
+     */
+    private boolean reconnect(boolean raiseGap){
+        long disconnected = System.currentTimeMillis();
+        long gapStart = lastTimestamp;
+        // intervals are only measured within a single connection
+        lastHeartbeat = -1;
+        int attempt = 0;
+        while(notificationConnection.allowReconnect()){
+            if(!sleep(delay(attempt++))){
+                break;
+            }
+            if(notificationConnection.connect()){
+                reconnects.increment();
+                logger.warn("Notification Socket Reconnected After "+attempt+" Attempts");
+                if(raiseGap){
+                    notificationManager.onGap(new NotificationGap(gapStart, disconnected, System.currentTimeMillis(), selectedNotifications));
+                }
+                return true;
+            }
+            failedAttempts.increment();
+            logger.debug("Notification Socket Reconnect Attempt "+attempt+" Failed");
+        }
+        logger.warn("Notification Worker Died. Not Reconnecting.");
+        return false;
+    }
+
+    /**
+     * Wakes up a pending reconnect attempt to let it check whether it is still allowed
+     */
+    public void wakeUp(){
+        synchronized (sleeper){
+            sleeper.notifyAll();
+        }
+    }
+
+    /**
+     * Used to get the timestamp of the last notification or heartbeat received
+     * @return timestamp or -1 if none has been received
+     */
+    public long getLastTimestamp(){
+        return lastTimestamp;
+    }
+
+    /**
+     * Used to get the average time between two heartbeats
+     * @return interval in ms or -1 if unknown
+     */
+    public long getHeartbeatInterval(){
+        return heartbeatInterval;
+    }
+
+    /**
+     * Used to get the number of times the connection has been restored
+     * @return long
+     */
+    public long getReconnects(){
+        return reconnects.sum();
+    }
+
+    /**
+     * Used to get the number of failed reconnect attempts
+     * @return long
+     */
+    public long getFailedAttempts(){
+        return failedAttempts.sum();
+    }
+
+    /**
+     * Internal helper to calculate the delay before a reconnect attempt
+     * @param attempt number of previous attempts
+     * @return delay in ms, never more than the max delay
+     */
+    long delay(int attempt){
+        long backoff = Math.min(maxDelay, baseDelay << Math.min(attempt, 16));
+        return Math.min(maxDelay, backoff + ThreadLocalRandom.current().nextLong(backoff / 2 + 1));
+    }
+
+    /**
+     * Internal helper to wait before the next attempt
+     * @param delay in ms
+     * @return false if reconnecting is no longer allowed
+     */
+    private boolean sleep(long delay){
+        long until = System.currentTimeMillis() + delay;
+        synchronized (sleeper){
+            long remaining;
+            while(notificationConnection.allowReconnect() && (remaining = until - System.currentTimeMillis()) > 0){
+                try{
+                    sleeper.wait(remaining);
+                }catch (InterruptedException e){
+                    Thread.currentThread().interrupt();
+                    return false;
+                }
+            }
+        }
+        return notificationConnection.allowReconnect();
+    }
+}
@@ -0,0 +1,377 @@
+/*
+ *     Copyright 2020 Horstexplorer @ https://www.netbeacon.de
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.netbeacon.jstorage.client.notification.objects.listener;
+
+import de.netbeacon.jstorage.client.metrics.LatencyHistogram;
+import de.netbeacon.jstorage.client.notification.objects.notifiation.DataNotification;
+import de.netbeacon.jstorage.client.notification.objects.notifiation.NotificationGap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Bounded ring buffer delivering notifications to a single listener on its own thread
+ * <br>
+ * The thread reading from the notification socket only enqueues, so a slow listener does not delay the other
+ * listeners as long as its queue has space left. Once the queue is full the OverflowPolicy decides, with the default
+ * BLOCK the socket waits for the listener and a listener which does not catch up stalls reading from it.
+ * DROP_OLDEST and COALESCE never wait but lose notifications instead.
+ */
+public class ListenerQueue {
+
+    public enum OverflowPolicy{
+        /**
+         * Wait for the listener to catch up
+         */
+        BLOCK,
+        /**
+         * Remove the oldest pending notification
+         */
+        DROP_OLDEST,
+        /**
+         * Remove a pending notification with the same scope and add the new one behind all others, removes the oldest one if there is none
+         */
+        COALESCE
+    }
+
+    private static final AtomicInteger THREAD_COUNTER = new AtomicInteger();
+
+    private final NotificationListener notificationListener;
+    private final OverflowPolicy overflowPolicy;
+    private final Object[] notifications;
+    private final long[] enqueued;
+    private int head;
+    private int size;
+    private boolean running = true;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+    private final Condition notFull = lock.newCondition();
+    private final Thread thread;
+
+    private final LatencyHistogram lag = new LatencyHistogram();
+    private final LongAdder delivered = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private int maxQueueDepth;
+
+    private final Logger logger = LoggerFactory.getLogger(ListenerQueue.class);
+
+    /**
+     * Creates a new instance of this class and starts its thread
+     * @param notificationListener to deliver the notifications to
+     * @param capacity max number of pending notifications
+     * @param overflowPolicy what to do if the queue is full
+     */
+    public ListenerQueue(NotificationListener notificationListener, int capacity, OverflowPolicy overflowPolicy){
+        this.notificationListener = notificationListener;
+        this.overflowPolicy = overflowPolicy;
+        this.notifications = new Object[Math.max(1, capacity)];
+        this.enqueued = new long[notifications.length];
+        this.thread = new Thread(this::run, "NotificationListener-"+THREAD_COUNTER.incrementAndGet());
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    /**
+     * Hands a notification to the listener
+     * @param dataNotification notification
+     * @return false if the notification has been dropped
+     */
+    public boolean offer(DataNotification dataNotification){
+        return enqueue(dataNotification);
+    }
+
+    /**
+     * Hands a gap to the listener, behind the notifications received before it
+     * @param notificationGap gap
+     * @return false if the gap has been dropped
+     */
+    public boolean offer(NotificationGap notificationGap){
+        return enqueue(notificationGap);
+    }
+
+    /**
+     * Internal helper to add a notification or gap to the queue
+     * @param dataNotification DataNotification or NotificationGap
+     * @return false if it has been dropped
+     */
+    private boolean enqueue(Object dataNotification){
+        lock.lock();
+        try{
+            if(!running){
+                return false;
+            }
+            if(size == notifications.length){
+                switch (overflowPolicy){
+                    case BLOCK:
+                        while(size == notifications.length && running){
+                            notFull.await();
+                        }
+                        if(!running){
+                            dropped.increment();
+                            return false;
+                        }
+                        break;
+                    case COALESCE:
+                        int offset = find(dataNotification);
+                        if(offset >= 0){
+                            // the new one is added at the tail, so notifications are still delivered in the order received
+                            removeAt(offset);
+                            coalesced.increment();
+                        }else{
+                            removeOldest();
+                        }
+                        break;
+                    case DROP_OLDEST:
+                        removeOldest();
+                        break;
+                }
+            }
+            int tail = (head + size) % notifications.length;
+            notifications[tail] = dataNotification;
+            enqueued[tail] = System.nanoTime();
+            size++;
+            maxQueueDepth = Math.max(maxQueueDepth, size);
+            notEmpty.signal();
+            return true;
+        }catch (InterruptedException e){
+            Thread.currentThread().interrupt();
+            dropped.increment();
+            return false;
+        }finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Stops the thread after all pending notifications have been delivered
+     */
+    public void shutdown(){
+        lock.lock();
+        try{
+            running = false;
+            notEmpty.signalAll();
+            notFull.signalAll();
+        }finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Used to get the listener
+     * @return NotificationListener
+     */
+    public NotificationListener getNotificationListener(){
+        return notificationListener;
+    }
+
+    /**
+     * Used to get the overflow policy
+     * @return OverflowPolicy
+     */
+    public OverflowPolicy getOverflowPolicy(){
+        return overflowPolicy;
+    }
+
+    /**
+     * Used to get the max number of pending notifications
+     * @return int
+     */
+    public int getCapacity(){
+        return notifications.length;
+    }
+
+    /**
+     * Used to get the number of pending notifications
+     * @return int
+     */
+    public int getQueueDepth(){
+        lock.lock();
+        try{
+            return size;
+        }finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Used to get the highest number of pending notifications seen
+     * @return int
+     */
+    public int getMaxQueueDepth(){
+        lock.lock();
+        try{
+            return maxQueueDepth;
+        }finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Used to get how long the oldest pending notification is waiting already
+     * @return lag in ns, 0 if nothing is pending
+     */
+    public long getCurrentLag(){
+        lock.lock();
+        try{
+            return (size == 0) ? 0 : System.nanoTime() - enqueued[head];
+        }finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Used to get the time notifications waited before being delivered
+     * @return LatencyHistogram containing values in ns
+     */
+    public LatencyHistogram getLag(){
+        return lag;
+    }
+
+    /**
+     * Used to get the number of notifications delivered to the listener
+     * @return long
+     */
+    public long getDelivered(){
+        return delivered.sum();
+    }
+
+    /**
+     * Used to get the number of notifications removed because the queue was full
+     * @return long
+     */
+    public long getDropped(){
+        return dropped.sum();
+    }
+
+    /**
+     * Used to get the number of notifications merged into a pending one
+     * @return long
+     */
+    public long getCoalesced(){
+        return coalesced.sum();
+    }
+
+    /**
+     * Used to get the number of notifications on which the listener threw an exception
+     * @return long
+     */
+    public long getFailed(){
+        return failed.sum();
+    }
+
+    /**
+     * Internal helper delivering the notifications until shut down
+     */
+    private void run(){
+        while(true){
+            Object dataNotification;
+            long enqueuedAt;
+            lock.lock();
+            try{
+                while(size == 0){
+                    if(!running){
+                        return;
+                    }
+                    notEmpty.await();
+                }
+                dataNotification = notifications[head];
+                enqueuedAt = enqueued[head];
+                notifications[head] = null;
+                head = (head + 1) % notifications.length;
+                size--;
+                notFull.signal();
+            }catch (InterruptedException e){
+                return;
+            }finally {
+                lock.unlock();
+            }
+            lag.record(System.nanoTime() - enqueuedAt);
+            try{
+                if(dataNotification instanceof NotificationGap){
+                    notificationListener.onGap((NotificationGap) dataNotification);
+                }else{
+                    notificationListener.onNotification((DataNotification) dataNotification);
+                }
+            }catch (Exception e){
+                failed.increment();
+                logger.error("Notification Listener Failed", e);
+            }
+            delivered.increment();
+        }
+    }
+
+    /**
+     * Internal helper to remove the oldest pending notification, needs to be called while holding the lock
+     */
+    private void removeOldest(){
+        notifications[head] = null;
+        head = (head + 1) % notifications.length;
+        size--;
+        dropped.increment();
+    }
+
+    /**
+     * Internal helper to remove a pending notification, needs to be called while holding the lock
+     * <br>
+     * The notifications behind it move up by one
+     * @param offset of the notification from the head
+     */
+    private void removeAt(int offset){
+        for(int i = offset; i < size - 1; i++){
+            int to = (head + i) % notifications.length;
+            int from = (head + i + 1) % notifications.length;
+            notifications[to] = notifications[from];
+            enqueued[to] = enqueued[from];
+        }
+        notifications[(head + size - 1) % notifications.length] = null;
+        size--;
+    }
+
+    /**
+     * Internal helper to find a pending notification with the same scope, needs to be called while holding the lock
+     * @param dataNotification to find a match for
+     * @return offset from the head or -1
+     */
+    private int find(Object dataNotification){
+        if(!(dataNotification instanceof DataNotification)){
+            return -1;
+        }
+        DataNotification notification = (DataNotification) dataNotification;
+        for(int i = 0; i < size; i++){
+            int index = (head + i) % notifications.length;
+            if(!(notifications[index] instanceof DataNotification)){
+                continue;
+            }
+            DataNotification pending = (DataNotification) notifications[index];
+            if(Objects.equals(pending.getDatabase(), notification.getDatabase())
+                    && Objects.equals(pending.getTable(), notification.getTable())
+                    && Objects.equals(pending.getDataset(), notification.getDataset())
+                    && Objects.equals(pending.getDatatype(), notification.getDatatype())){
+                return i;
+            }
+        }
+        return -1;
+    }
+}
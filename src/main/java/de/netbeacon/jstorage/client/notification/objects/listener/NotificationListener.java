@@ -17,6 +17,7 @@
 package de.netbeacon.jstorage.client.notification.objects.listener;
 
 import de.netbeacon.jstorage.client.notification.objects.notifiation.DataNotification;
+import de.netbeacon.jstorage.client.notification.objects.notifiation.NotificationGap;
 
 /**
  * Listener class
@@ -29,4 +30,12 @@ public interface NotificationListener {
      */
     void onNotification(DataNotification dataNotification);
 
+    /**
+     * Will be executed after the notification socket reconnected, as notifications within the scope of the gap may have been missed
+     * <br>
+     * Data of the affected scope which is kept elsewhere should be fetched again
+     * @param notificationGap gap
+     */
+    default void onGap(NotificationGap notificationGap){}
+
 }
@@ -59,6 +59,24 @@ public class DataNotification {
         }
     }
 
+    /**
+     * Creates a new instance of this class
+     * @param content of the notification
+     * @param timestamp of the notification
+     * @param database or null
+     * @param table or null
+     * @param dataset or null
+     * @param datatype or null
+     */
+    public DataNotification(Content content, long timestamp, String database, String table, String dataset, String datatype){
+        this.content = content;
+        this.timestamp = timestamp;
+        this.database = database;
+        this.table = table;
+        this.dataset = dataset;
+        this.datatype = datatype;
+    }
+
     /**
      * Used to return the content
      * @return String or null
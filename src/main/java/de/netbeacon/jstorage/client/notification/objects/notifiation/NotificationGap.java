@@ -0,0 +1,110 @@
+/*
+ *     Copyright 2020 Horstexplorer @ https://www.netbeacon.de
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.netbeacon.jstorage.client.notification.objects.notifiation;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * This class represents a period in which no notifications could be received
+ * <br>
+ * Raised after the notification socket reconnected. Changes within the scope of the gap may have been missed,
+ * anything outside of it has not been covered by notifications anyway.
+ */
+public class NotificationGap {
+
+    private final long lastTimestamp;
+    private final long disconnected;
+    private final long reconnected;
+    private final Map<String, List<String>> scope;
+
+    /**
+     * Creates a new instance of this class
+     * @param lastTimestamp timestamp of the last notification or heartbeat received before the connection got lost, -1 if none
+     * @param disconnected local time in ms the connection got lost
+     * @param reconnected local time in ms the connection has been restored
+     * @param scope databases and tables notifications are received for. An empty list means all tables of a database
+     */
+    public NotificationGap(long lastTimestamp, long disconnected, long reconnected, Map<String, ? extends List<String>> scope){
+        this.lastTimestamp = lastTimestamp;
+        this.disconnected = disconnected;
+        this.reconnected = reconnected;
+        HashMap<String, List<String>> normalized = new HashMap<>();
+        if(scope != null){
+            for(Map.Entry<String, ? extends List<String>> entry : scope.entrySet()){
+                ArrayList<String> tables = new ArrayList<>();
+                entry.getValue().forEach(table -> tables.add(table.toLowerCase()));
+                normalized.put(entry.getKey().toLowerCase(), Collections.unmodifiableList(tables));
+            }
+        }
+        this.scope = Collections.unmodifiableMap(normalized);
+    }
+
+    /**
+     * Used to get the timestamp of the last notification or heartbeat received before the gap
+     * @return timestamp as sent by the server or -1 if none has been received
+     */
+    public long getLastTimestamp(){
+        return lastTimestamp;
+    }
+
+    /**
+     * Used to get the local time the connection got lost
+     * @return ms
+     */
+    public long getDisconnected(){
+        return disconnected;
+    }
+
+    /**
+     * Used to get the local time the connection has been restored
+     * @return ms
+     */
+    public long getReconnected(){
+        return reconnected;
+    }
+
+    /**
+     * Used to get the duration of the gap
+     * @return ms
+     */
+    public long getDuration(){
+        return reconnected - disconnected;
+    }
+
+    /**
+     * Used to get the affected databases and tables, lower case
+     * @return Map of database to tables. An empty list means all tables of a database
+     */
+    public Map<String, List<String>> getScope(){
+        return scope;
+    }
+
+    /**
+     * Checks whether changes to the given table may have been missed
+     * @param database name
+     * @param table name or null for any table of the database
+     * @return boolean
+     */
+    public boolean covers(String database, String table){
+        List<String> tables = scope.get(database.toLowerCase());
+        return tables != null && (tables.isEmpty() || table == null || tables.contains(table.toLowerCase()));
+    }
+}
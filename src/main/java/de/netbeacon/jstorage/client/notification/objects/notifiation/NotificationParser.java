@@ -0,0 +1,425 @@
+/*
+ *     Copyright 2020 Horstexplorer @ https://www.netbeacon.de
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.netbeacon.jstorage.client.notification.objects.notifiation;
+
+import org.json.JSONException;
+
+import java.math.BigDecimal;
+
+/**
+ * Single pass parser for the lines received by the notification socket
+ * <br>
+ * Only knows the fields of a notification and reads them straight from the line. Database, table and datatype names
+ * are interned in a small table, so repeated names are not copied again. Heartbeats are not turned into objects,
+ * their timestamp is kept by the parser instead. Instances are not thread safe.
+ */
+public class NotificationParser {
+
+    private static final int INTERN_TABLE_SIZE = 256;
+    private static final DataNotification.Content[] CONTENTS = DataNotification.Content.values();
+
+    private final String[] internTable = new String[INTERN_TABLE_SIZE];
+    private long lastHeartbeat = -1;
+    private long heartbeats;
+    private long notifications;
+
+    private String line;
+    private int position;
+    private boolean escaped;
+
+    /**
+     * Parses a line
+     * @param line json object as sent by the server
+     * @return DataNotification or null if the line is a heartbeat
+     * @throws JSONException if the line is not a valid notification
+     */
+    public DataNotification parse(String line){
+        this.line = line;
+        this.position = 0;
+        try{
+            DataNotification.Content content = null;
+            long timestamp = 0;
+            boolean hasTimestamp = false;
+            String database = null;
+            String table = null;
+            String dataset = null;
+            String datatype = null;
+            expect('{');
+            if(peek() == '}'){
+                position++;
+            }else{
+                char c;
+                do{
+                    expect('"');
+                    int keyStart = position;
+                    int keyEnd = skipString();
+                    expect(':');
+                    if(isKey(keyStart, keyEnd, "content")){
+                        content = readContent();
+                    }else if(isKey(keyStart, keyEnd, "timestamp")){
+                        timestamp = readLong();
+                        hasTimestamp = true;
+                    }else if(isKey(keyStart, keyEnd, "database")){
+                        database = readString(true);
+                    }else if(isKey(keyStart, keyEnd, "table")){
+                        table = readString(true);
+                    }else if(isKey(keyStart, keyEnd, "dataset")){
+                        dataset = readString(false);
+                    }else if(isKey(keyStart, keyEnd, "datatype")){
+                        datatype = readString(true);
+                    }else{
+                        skipValue();
+                    }
+                }while((c = next()) == ',');
+                if(c != '}'){
+                    throw error("Expected a ',' or '}'");
+                }
+            }
+            if(peek() != 0){
+                throw error("Unexpected Trailing Characters");
+            }
+            if(content == null || !hasTimestamp){
+                throw error("Missing Content Or Timestamp");
+            }
+            if(content == DataNotification.Content.heartbeat){
+                lastHeartbeat = timestamp;
+                heartbeats++;
+                return null;
+            }
+            notifications++;
+            return new DataNotification(content, timestamp, database, table, dataset, datatype);
+        }finally {
+            this.line = null;
+        }
+    }
+
+    /**
+     * Used to get the timestamp of the last heartbeat
+     * @return timestamp or -1 if none has been received
+     */
+    public long getLastHeartbeat(){
+        return lastHeartbeat;
+    }
+
+    /**
+     * Used to get the number of heartbeats parsed
+     * @return long
+     */
+    public long getHeartbeats(){
+        return heartbeats;
+    }
+
+    /**
+     * Used to get the number of notifications parsed, not including heartbeats
+     * @return long
+     */
+    public long getNotifications(){
+        return notifications;
+    }
+
+    /**
+     * Internal helper to read the content value
+     * @return Content
+     */
+    private DataNotification.Content readContent(){
+        expect('"');
+        int start = position;
+        int end = skipString();
+        for(DataNotification.Content content : CONTENTS){
+            if(isKey(start, end, content.name())){
+                return content;
+            }
+        }
+        throw error("Unknown Content");
+    }
+
+    /**
+     * Internal helper to read an integer value
+     * <br>
+     * Quoted numbers are accepted as well, like JSONObject.getLong does
+     * @return long
+     */
+    private long readLong(){
+        skipWhitespace();
+        if(position < line.length() && line.charAt(position) == '"'){
+            position++;
+            int start = position;
+            int end = skipString();
+            return toLong(start, end);
+        }
+        int start = position;
+        boolean negative = position < line.length() && line.charAt(position) == '-';
+        if(negative){
+            position++;
+        }
+        long value = 0;
+        int digits = 0;
+        while(position < line.length()){
+            char c = line.charAt(position);
+            if(c < '0' || c > '9'){
+                break;
+            }
+            if(digits++ == 18){
+                // may overflow, let the jdk take care of it
+                return slowLong(start);
+            }
+            value = value * 10 + (c - '0');
+            position++;
+        }
+        if(digits == 0){
+            throw error("Expected A Number");
+        }
+        if(position < line.length() && (line.charAt(position) == '.' || line.charAt(position) == 'e' || line.charAt(position) == 'E')){
+            return slowLong(start);
+        }
+        return negative ? -value : value;
+    }
+
+    /**
+     * Internal helper to read numbers which do not fit the fast path
+     * @param start of the number
+     * @return long
+     */
+    private long slowLong(int start){
+        position = start;
+        skipNumber();
+        return toLong(start, position);
+    }
+
+    /**
+     * Internal helper to convert a number to a long without losing precision on the way
+     * @param start of the number
+     * @param end of the number, exclusive
+     * @return long
+     */
+    private long toLong(int start, int end){
+        try{
+            return new BigDecimal(line.substring(start, end)).longValue();
+        }catch (NumberFormatException e){
+            throw error("Invalid Number");
+        }
+    }
+
+    /**
+     * Internal helper to read a string value or null
+     * @param intern whether the value should be interned
+     * @return String or null
+     */
+    private String readString(boolean intern){
+        skipWhitespace();
+        if(line.startsWith("null", position)){
+            position += 4;
+            return null;
+        }
+        expect('"');
+        int start = position;
+        int end = skipString();
+        if(escaped){
+            return unescape(start, end);
+        }
+        return intern ? intern(start, end) : line.substring(start, end);
+    }
+
+    /**
+     * Internal helper to get a string from the intern table, adds it if it is missing
+     * @param start of the string
+     * @param end of the string, exclusive
+     * @return String
+     */
+    private String intern(int start, int end){
+        int hash = 0;
+        for(int i = start; i < end; i++){
+            hash = 31 * hash + line.charAt(i);
+        }
+        int index = (hash ^ (hash >>> 16)) & (INTERN_TABLE_SIZE - 1);
+        String interned = internTable[index];
+        if(interned != null && interned.length() == end - start && line.regionMatches(start, interned, 0, end - start)){
+            return interned;
+        }
+        interned = line.substring(start, end);
+        internTable[index] = interned;
+        return interned;
+    }
+
+    /**
+     * Internal helper to decode a string containing escape sequences
+     * @param start of the string
+     * @param end of the string, exclusive
+     * @return String
+     */
+    private String unescape(int start, int end){
+        StringBuilder stringBuilder = new StringBuilder(end - start);
+        for(int i = start; i < end; i++){
+            char c = line.charAt(i);
+            if(c != '\\'){
+                stringBuilder.append(c);
+                continue;
+            }
+            c = line.charAt(++i);
+            switch (c){
+                case 'b':
+                    stringBuilder.append('\b');
+                    break;
+                case 't':
+                    stringBuilder.append('\t');
+                    break;
+                case 'n':
+                    stringBuilder.append('\n');
+                    break;
+                case 'f':
+                    stringBuilder.append('\f');
+                    break;
+                case 'r':
+                    stringBuilder.append('\r');
+                    break;
+                case 'u':
+                    if(i + 4 >= end){
+                        throw error("Illegal Escape");
+                    }
+                    try{
+                        stringBuilder.append((char) Integer.parseInt(line.substring(i + 1, i + 5), 16));
+                    }catch (NumberFormatException e){
+                        throw error("Illegal Escape");
+                    }
+                    i += 4;
+                    break;
+                default:
+                    stringBuilder.append(c);
+            }
+        }
+        return stringBuilder.toString();
+    }
+
+    /**
+     * Internal helper to move behind the end of a string, the opening quote has to be consumed already
+     * <br>
+     * Remembers whether the string contains escape sequences
+     * @return end of the string content, exclusive
+     */
+    private int skipString(){
+        escaped = false;
+        while(position < line.length()){
+            char c = line.charAt(position++);
+            if(c == '\\'){
+                escaped = true;
+                position++;
+            }else if(c == '"'){
+                return position - 1;
+            }
+        }
+        throw error("Unterminated String");
+    }
+
+    /**
+     * Internal helper to move behind a number
+     */
+    private void skipNumber(){
+        while(position < line.length() && "+-0123456789.eE".indexOf(line.charAt(position)) >= 0){
+            position++;
+        }
+    }
+
+    /**
+     * Internal helper to move behind a value of a field which is not part of the notification
+     */
+    private void skipValue(){
+        char c = peek();
+        if(c == '"'){
+            position++;
+            skipString();
+        }else if(c == '{' || c == '['){
+            int depth = 0;
+            do{
+                c = next();
+                if(c == '"'){
+                    skipString();
+                }else if(c == '{' || c == '['){
+                    depth++;
+                }else if(c == '}' || c == ']'){
+                    depth--;
+                }else if(c == 0){
+                    throw error("Unterminated Value");
+                }
+            }while(depth > 0);
+        }else if(c == '-' || (c >= '0' && c <= '9')){
+            skipNumber();
+        }else if(line.startsWith("true", position) || line.startsWith("null", position)){
+            position += 4;
+        }else if(line.startsWith("false", position)){
+            position += 5;
+        }else{
+            throw error("Unexpected Value");
+        }
+    }
+
+    /**
+     * Internal helper to check if a key equals the given name
+     * @param start of the key
+     * @param end of the key, exclusive
+     * @param name to compare to
+     * @return boolean
+     */
+    private boolean isKey(int start, int end, String name){
+        return end - start == name.length() && line.regionMatches(start, name, 0, name.length());
+    }
+
+    /**
+     * Internal helper to consume the given char, skipping whitespace in front of it
+     * @param c expected char
+     */
+    private void expect(char c){
+        if(next() != c){
+            throw error("Expected '"+c+"'");
+        }
+    }
+
+    /**
+     * Internal helper to consume the next char which is not whitespace
+     * @return char or 0 at the end of the line
+     */
+    private char next(){
+        skipWhitespace();
+        return (position < line.length()) ? line.charAt(position++) : 0;
+    }
+
+    /**
+     * Internal helper to get the next char which is not whitespace without consuming it
+     * @return char or 0 at the end of the line
+     */
+    private char peek(){
+        skipWhitespace();
+        return (position < line.length()) ? line.charAt(position) : 0;
+    }
+
+    /**
+     * Internal helper to move behind whitespace
+     */
+    private void skipWhitespace(){
+        while(position < line.length() && line.charAt(position) <= ' '){
+            position++;
+        }
+    }
+
+    /**
+     * Internal helper to create an exception pointing to the current position
+     * @param message describing the error
+     * @return JSONException
+     */
+    private JSONException error(String message){
+        return new JSONException(message+" at "+position+" ["+line+"]");
+    }
+}
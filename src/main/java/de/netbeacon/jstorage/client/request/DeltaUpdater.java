@@ -0,0 +1,244 @@
+/*
+ *     Copyright 2020 Horstexplorer @ https://www.netbeacon.de
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package de.netbeacon.jstorage.client.request;
+
+import de.netbeacon.jstorage.client.JStorageClient;
+import de.netbeacon.jstorage.client.result.JStorageResult;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.math.BigDecimal;
+import java.util.Optional;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Builds DataAction_UpdateDataType requests which only contain the top level keys of a datatype that have changed
+ * <br>
+ * This relies on the server merging the keys of an update into the datatype, so unchanged keys do not need to be sent.
+ * The server does not document whether it merges or replaces the datatype, merging is only what the JStorageStubServer
+ * of the tests does. Servers replacing the whole datatype would lose the unchanged keys, so delta updates are disabled
+ * by default and all updates are sent as full write until {@link #setEnabled(boolean)} is called for a server known to merge.
+ * <br>
+ * Removed keys can not be expressed as delta, such updates as well as updates which would not be smaller fall back to
+ * a full write. Updates which do not change anything are not sent at all.
+ */
+public class DeltaUpdater {
+
+    private final JStorageClient client;
+    private final LongAdder deltaUpdates = new LongAdder();
+    private final LongAdder fullUpdates = new LongAdder();
+    private final LongAdder skippedUpdates = new LongAdder();
+    private final LongAdder bytesSaved = new LongAdder();
+    private volatile boolean enabled;
+
+    /**
+     * Creates a new instance of this class
+     * @param client the updates belong to
+     */
+    public DeltaUpdater(JStorageClient client){
+        this.client = client;
+    }
+
+    /**
+     * Can be used to enable delta updates
+     * <br>
+     * Only enable this if the server is known to merge the keys of DataAction_UpdateDataType into the datatype
+     * @param enabled true to send only changed keys, false to send full writes
+     */
+    public void setEnabled(boolean enabled){
+        this.enabled = enabled;
+    }
+
+    /**
+     * Used to check whether delta updates are enabled
+     * @return boolean
+     */
+    public boolean isEnabled(){
+        return enabled;
+    }
+
+    /**
+     * Used to get a request updating a datatype to the modified state
+     * <br>
+     * The modified object may be the one contained in previous.getResult(), in that case the previous state is read
+     * from the raw bytes of the result. If these are gone because the result has been released a full write is sent.
+     * @param previous result of DataAction_GetDataType or DataAction_GetDataSet containing the datatype, not released
+     * @param database name
+     * @param table name
+     * @param dataset identifier
+     * @param datatype identifier
+     * @param modified new content of the datatype
+     * @return JStorageRequestBuilder with args and payload set or empty if the datatype has not been changed
+     */
+    public Optional<JStorageRequestBuilder> newUpdate(JStorageResult previous, String database, String table, String dataset, String datatype, JSONObject modified){
+        JStorageRequestBuilder requestBuilder = client.newRequest(RequestType.DataAction_UpdateDataType)
+                .setArg("database", database)
+                .setArg("table", table)
+                .setArg("dataset", dataset)
+                .setArg("identifier", datatype);
+        // a released result has no bytes left, its parsed object may have been modified in place already
+        if(previous.getResultSize() == 0){
+            fullUpdates.increment();
+            return Optional.of(requestBuilder.setPayload(new JSONObject().put(datatype, modified)));
+        }
+        JSONObject previousResult = previous.getResult();
+        JSONObject previousContent = previousResult.optJSONObject(datatype);
+        if(previousContent == modified){
+            // modified in place, get the unmodified state
+            previousResult = client.getJsonCodec().decode(previous.getResultBuffer());
+            previousContent = previousResult.optJSONObject(datatype);
+        }
+        JSONObject delta = (previousContent != null) ? diff(previousContent, modified) : null;
+        if(delta != null && delta.length() == 0){
+            skippedUpdates.increment();
+            return Optional.empty();
+        }
+        if(delta != null && enabled){
+            byte[] deltaBytes = client.getJsonCodec().encode(new JSONObject().put(datatype, delta));
+            // a result of DataAction_GetDataType contains nothing else, its size is the size of a full write
+            long fullSize = (previousResult.length() == 1) ? previous.getResultSize() : client.getJsonCodec().encode(new JSONObject().put(datatype, previousContent)).length;
+            if(deltaBytes.length < fullSize){
+                deltaUpdates.increment();
+                bytesSaved.add(fullSize - deltaBytes.length);
+                return Optional.of(requestBuilder.setPayload(deltaBytes));
+            }
+        }
+        fullUpdates.increment();
+        return Optional.of(requestBuilder.setPayload(new JSONObject().put(datatype, modified)));
+    }
+
+    /**
+     * Used to get the top level keys which have been added or changed
+     * @param previous state
+     * @param modified state
+     * @return JSONObject containing the changed keys, empty if nothing has changed, or null if keys have been removed or all keys have changed
+     */
+    public static JSONObject diff(JSONObject previous, JSONObject modified){
+        JSONObject delta = new JSONObject();
+        for(String key : previous.keySet()){
+            if(!modified.has(key)){
+                return null;
+            }
+        }
+        for(String key : modified.keySet()){
+            Object value = modified.get(key);
+            if(!isSimilar(previous.opt(key), value)){
+                delta.put(key, value);
+            }
+        }
+        return (delta.length() == modified.length() && delta.length() > 0) ? null : delta;
+    }
+
+    /**
+     * Used to get the number of updates sent as delta
+     * @return long
+     */
+    public long getDeltaUpdates(){
+        return deltaUpdates.sum();
+    }
+
+    /**
+     * Used to get the number of updates sent as full write
+     * @return long
+     */
+    public long getFullUpdates(){
+        return fullUpdates.sum();
+    }
+
+    /**
+     * Used to get the number of updates which have not been sent as nothing has changed
+     * @return long
+     */
+    public long getSkippedUpdates(){
+        return skippedUpdates.sum();
+    }
+
+    /**
+     * Used to get the number of payload bytes saved by delta updates
+     * <br>
+     * Compared to a full write of the datatype in its previous size
+     * @return long
+     */
+    public long getBytesSaved(){
+        return bytesSaved.sum();
+    }
+
+    /**
+     * Internal helper to compare two json values
+     * <br>
+     * Numbers are compared by value as the same number may be decoded to different types
+     * @param a value or null
+     * @param b value
+     * @return true if both values are equal
+     */
+    private static boolean isSimilar(Object a, Object b){
+        if(a == b){
+            return true;
+        }
+        if(a == null || b == null){
+            return false;
+        }
+        if(a instanceof JSONObject && b instanceof JSONObject){
+            JSONObject objectA = (JSONObject) a;
+            JSONObject objectB = (JSONObject) b;
+            if(objectA.length() != objectB.length()){
+                return false;
+            }
+            for(String key : objectA.keySet()){
+                if(!objectB.has(key) || !isSimilar(objectA.get(key), objectB.get(key))){
+                    return false;
+                }
+            }
+            return true;
+        }
+        if(a instanceof JSONArray && b instanceof JSONArray){
+            JSONArray arrayA = (JSONArray) a;
+            JSONArray arrayB = (JSONArray) b;
+            if(arrayA.length() != arrayB.length()){
+                return false;
+            }
+            for(int i = 0; i < arrayA.length(); i++){
+                if(!isSimilar(arrayA.get(i), arrayB.get(i))){
+                    return false;
+                }
+            }
+            return true;
+        }
+        if(a instanceof Number && b instanceof Number){
+            if(isIntegral(a) && isIntegral(b)){
+                return ((Number) a).longValue() == ((Number) b).longValue();
+            }
+            try{
+                return new BigDecimal(a.toString()).compareTo(new BigDecimal(b.toString())) == 0;
+            }catch (NumberFormatException e){
+                // NaN or infinite
+                return a.equals(b);
+            }
+        }
+        return a.equals(b);
+    }
+
+    /**
+     * Internal helper to check if a number fits into a long
+     * @param number to check
+     * @return boolean
+     */
+    private static boolean isIntegral(Object number){
+        return number instanceof Integer || number instanceof Long || number instanceof Short || number instanceof Byte;
+    }
+}
@@ -0,0 +1,151 @@
+/*
+ *     Copyright 2020 Horstexplorer @ https://www.netbeacon.de
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package de.netbeacon.jstorage.client.request;
+
+import de.netbeacon.jstorage.client.exceptions.JStorageException;
+import de.netbeacon.jstorage.client.exceptions.crypt.type.CE_Crypt;
+import de.netbeacon.jstorage.client.exceptions.crypt.type.CE_General;
+import de.netbeacon.jstorage.client.exceptions.datastorage.type.*;
+import de.netbeacon.jstorage.client.exceptions.generic.type.*;
+import de.netbeacon.jstorage.client.exceptions.http.type.HE_BadAccess;
+import de.netbeacon.jstorage.client.exceptions.http.type.HE_General;
+import de.netbeacon.jstorage.client.exceptions.http.type.HE_Processing;
+
+/**
+ * Converts failed responses to the matching JStorageException
+ * <br>
+ * The Internal-Status header ("exceptionclass code message") is parsed in place and the exception is looked up
+ * from a table per exception class, indexed by code.
+ */
+class ExceptionDecoder {
+
+    private static final String[] EXCEPTION_CLASSES = {"datastorageexception", "genericobjectexception", "cryptexception"};
+    private static final Factory[][] TABLES = new Factory[EXCEPTION_CLASSES.length][];
+    private static final Factory[] DEFAULTS = new Factory[EXCEPTION_CLASSES.length];
+
+    static {
+        // datastorageexception
+        Factory[] dse = TABLES[0] = new Factory[401];
+        DEFAULTS[0] = DSE_General::new;
+        put(dse, DSE_General::new, 0);
+        put(dse, (c, m, w) -> new DSE_LoadUnload(c, m, DSE_LoadUnload.Type.ActionPerform_Load, w), 101);
+        put(dse, (c, m, w) -> new DSE_LoadUnload(c, m, DSE_LoadUnload.Type.ActionPerform_Unload, w), 102);
+        put(dse, (c, m, w) -> new DSE_LoadUnload(c, m, DSE_LoadUnload.Type.ActionRunning_Unknown, w), 110);
+        put(dse, (c, m, w) -> new DSE_LoadUnload(c, m, DSE_LoadUnload.Type.ActionRunning_Load, w), 111);
+        put(dse, (c, m, w) -> new DSE_LoadUnload(c, m, DSE_LoadUnload.Type.ActionRunning_Unload, w), 112);
+        put(dse, (c, m, w) -> new DSE_LoadUnload(c, m, DSE_LoadUnload.Type.Timeout, w), 120);
+        put(dse, (c, m, w) -> new DSE_ExpectationFailed(c, m, DSE_ExpectationFailed.Type.DataNotFound, w), 200, 201, 202, 203, 204, 205, 206);
+        put(dse, (c, m, w) -> new DSE_ExpectationFailed(c, m, DSE_ExpectationFailed.Type.DataAlreadyExisting, w), 210, 211, 212, 213, 214, 215, 216);
+        put(dse, (c, m, w) -> new DSE_ExpectationFailed(c, m, DSE_ExpectationFailed.Type.DataMismatch, w), 220, 221);
+        put(dse, (c, m, w) -> new DSE_ExpectationFailed(c, m, DSE_ExpectationFailed.Type.NotReady, w), 230, 231, 232);
+        put(dse, (c, m, w) -> new DSE_ExpectationFailed(c, m, DSE_ExpectationFailed.Type.Validation, w), 240, 241, 242);
+        put(dse, DSE_DataInconsistency::new, 300);
+        put(dse, DSE_DataLocked::new, 400);
+        // genericobjectexception
+        Factory[] goe = TABLES[1] = new Factory[401];
+        DEFAULTS[1] = GOE_General::new;
+        put(goe, GOE_General::new, 0);
+        put(goe, (c, m, w) -> new GOE_NotReady(c, m, GOE_NotReady.Type.Undefined, w), 100);
+        put(goe, (c, m, w) -> new GOE_NotReady(c, m, GOE_NotReady.Type.Loading, w), 101);
+        put(goe, (c, m, w) -> new GOE_NotReady(c, m, GOE_NotReady.Type.Unloading, w), 102);
+        put(goe, GOE_NotFound::new, 200);
+        put(goe, GOE_AlreadyExisting::new, 300);
+        put(goe, GOE_Format::new, 400);
+        // cryptexception
+        Factory[] ce = TABLES[2] = new Factory[22];
+        DEFAULTS[2] = (c, m, w) -> new CE_General(c, m, CE_General.Type.Unknown, w);
+        put(ce, (c, m, w) -> new CE_General(c, m, CE_General.Type.NotReady, w), 0);
+        put(ce, (c, m, w) -> new CE_General(c, m, CE_General.Type.InvalidPassword, w), 1);
+        put(ce, (c, m, w) -> new CE_General(c, m, CE_General.Type.SetupFailed, w), 2);
+        put(ce, (c, m, w) -> new CE_Crypt(c, m, CE_Crypt.Type.Encryption, w), 10, 11);
+        put(ce, (c, m, w) -> new CE_Crypt(c, m, CE_Crypt.Type.Decryption, w), 20, 21);
+    }
+
+    private ExceptionDecoder(){}
+
+    /**
+     * Used to get the exception of a failed response
+     * @param statusCode http
+     * @param internalStatus value of the Internal-Status header or null
+     * @param writableStackTrace whether the stack trace should be captured
+     * @return JStorageException
+     */
+    static JStorageException decode(int statusCode, String internalStatus, boolean writableStackTrace){
+        if(internalStatus == null || internalStatus.isEmpty()){
+            // default http error
+            switch (statusCode){
+                case 403:
+                case 401:
+                    return new HE_BadAccess(statusCode, "Authorization Failed", writableStackTrace);
+                default:
+                    return new HE_General(statusCode, "Unexpected HTTP Response", writableStackTrace);
+            }
+        }
+        int length = internalStatus.length();
+        // exception class
+        int classEnd = 0;
+        while(classEnd < length && !Character.isWhitespace(internalStatus.charAt(classEnd))){
+            classEnd++;
+        }
+        // code
+        int codeStart = classEnd;
+        while(codeStart < length && Character.isWhitespace(internalStatus.charAt(codeStart))){
+            codeStart++;
+        }
+        int codeEnd = codeStart;
+        int code = 0;
+        while(codeEnd < length && !Character.isWhitespace(internalStatus.charAt(codeEnd))){
+            char c = internalStatus.charAt(codeEnd++);
+            if(c < '0' || c > '9' || code > 100000){
+                return new HE_Processing(0, "Insufficient Parameters For Parsing The Error", writableStackTrace);
+            }
+            code = code * 10 + (c - '0');
+        }
+        if(classEnd == 0 || codeEnd == codeStart){
+            return new HE_Processing(0, "Insufficient Parameters For Parsing The Error", writableStackTrace);
+        }
+        for(int i = 0; i < EXCEPTION_CLASSES.length; i++){
+            String exceptionClass = EXCEPTION_CLASSES[i];
+            if(exceptionClass.length() == classEnd && internalStatus.startsWith(exceptionClass)){
+                Factory[] table = TABLES[i];
+                Factory factory = (code < table.length && table[code] != null) ? table[code] : DEFAULTS[i];
+                return factory.create(code, internalStatus.substring(codeEnd).trim(), writableStackTrace);
+            }
+        }
+        return new HE_Processing(0, "Unknown Exception", writableStackTrace);
+    }
+
+    /**
+     * Internal helper to fill a table
+     * @param table to fill
+     * @param factory to add
+     * @param codes the factory should be used for
+     */
+    private static void put(Factory[] table, Factory factory, int... codes){
+        for(int code : codes){
+            table[code] = factory;
+        }
+    }
+
+    /**
+     * Creates an exception
+     */
+    private interface Factory {
+        JStorageException create(int code, String message, boolean writableStackTrace);
+    }
+}
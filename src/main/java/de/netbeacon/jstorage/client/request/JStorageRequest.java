@@ -17,24 +17,32 @@
 package de.netbeacon.jstorage.client.request;
 
 import de.netbeacon.jstorage.client.JStorageClient;
+import de.netbeacon.jstorage.client.buffer.BufferOutputStream;
+import de.netbeacon.jstorage.client.buffer.BufferPool;
+import de.netbeacon.jstorage.client.buffer.PooledBuffer;
+import de.netbeacon.jstorage.client.cache.DataCache;
 import de.netbeacon.jstorage.client.exceptions.JStorageException;
-import de.netbeacon.jstorage.client.exceptions.crypt.type.CE_Crypt;
-import de.netbeacon.jstorage.client.exceptions.crypt.type.CE_General;
-import de.netbeacon.jstorage.client.exceptions.datastorage.type.*;
-import de.netbeacon.jstorage.client.exceptions.generic.type.*;
-import de.netbeacon.jstorage.client.exceptions.http.type.HE_BadAccess;
-import de.netbeacon.jstorage.client.exceptions.http.type.HE_General;
 import de.netbeacon.jstorage.client.exceptions.http.type.HE_Processing;
 import de.netbeacon.jstorage.client.result.JStorageResult;
 import okhttp3.Call;
 import okhttp3.Callback;
 import okhttp3.MediaType;
+import okhttp3.RequestBody;
 import okhttp3.Response;
+import okhttp3.ResponseBody;
+import okio.BufferedSource;
 import org.jetbrains.annotations.NotNull;
+import org.json.JSONException;
 
+import java.io.EOFException;
 import java.io.IOException;
-import java.util.HashMap;
+import java.io.InputStream;
+import java.util.*;
+import java.util.concurrent.CancellationException;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
 import java.util.function.Consumer;
 
 /**
@@ -45,17 +53,41 @@ public class JStorageRequest {
     private final JStorageClient client;
     private final Call call;
     private final RequestType requestType;
+    private final Map<String, String> args;
+    private final PooledBuffer requestBuffer;
+    private String requestKey;
+    private volatile Call currentCall;
+    private volatile boolean shared;
+
+    private static final int MAX_RETRIES = 3;
+    private static final int UNKNOWN_LENGTH_CAPACITY = 8192;
 
     /**
      * Creates a new instance of this class
      * @param client the client which should handle the request
      * @param call the actual request wrapped as call
      * @param requestType the type of the request
+     * @param args url arguments of the request
      */
-    protected JStorageRequest(JStorageClient client, Call call, RequestType requestType){
+    protected JStorageRequest(JStorageClient client, Call call, RequestType requestType, Map<String, String> args){
+        this(client, call, requestType, args, null);
+    }
+
+    /**
+     * Creates a new instance of this class
+     * @param client the client which should handle the request
+     * @param call the actual request wrapped as call
+     * @param requestType the type of the request
+     * @param args url arguments of the request
+     * @param requestBuffer holding the body of the call, released once the request finished, or null
+     */
+    protected JStorageRequest(JStorageClient client, Call call, RequestType requestType, Map<String, String> args, PooledBuffer requestBuffer){
         this.client = client;
         this.call = call;
         this.requestType = requestType;
+        this.args = Collections.unmodifiableMap(args);
+        this.requestBuffer = requestBuffer;
+        this.currentCall = call;
     }
 
     /**
@@ -66,6 +98,31 @@ public class JStorageRequest {
         return requestType;
     }
 
+    /**
+     * Can be used to get the url arguments of this request
+     * @return unmodifiable map of lower case keys to values
+     */
+    public Map<String, String> getArgs() {
+        return args;
+    }
+
+    /**
+     * Can be used to get a key identifying this request by its type and url arguments
+     * <br>
+     * Requests with the same key are expected to return the same result
+     * @return key
+     */
+    public String getRequestKey() {
+        if(requestKey == null){
+            StringBuilder stringBuilder = new StringBuilder(requestType.name());
+            for(Map.Entry<String, String> arg : new TreeMap<>(args).entrySet()){
+                stringBuilder.append(' ').append(arg.getKey()).append('=').append(arg.getValue());
+            }
+            requestKey = stringBuilder.toString();
+        }
+        return requestKey;
+    }
+
     /**
      * Can be used to execute the request async
      */
@@ -87,39 +144,14 @@ public class JStorageRequest {
      * @param failure will be executed with the exception after failed execution
      */
     public void queue(Consumer<JStorageResult> success, Consumer<JStorageException> failure){
-        call.enqueue(new Callback() {
-            @Override
-            public void onFailure(@NotNull Call call, @NotNull IOException e) {
-                if(failure != null){
-                    client.getScalingExecutor().execute(()->failure.accept(new HE_Processing(0, e.getMessage())));
-                }
-            }
-
-            @Override
-            public void onResponse(@NotNull Call call, @NotNull Response response) throws IOException {
-                // get status code
-                int statusCode = response.code();
-                if(statusCode == 200 && response.isSuccessful() && success != null){
-                    JStorageResult jStorageResult = new JStorageResult();
-                    // get body if valid
-                    if(response.body() != null && MediaType.parse("application/json").equals(response.body().contentType()) && response.body().contentLength() > 0){
-                        jStorageResult.setResult(response.body().bytes());
-                    }
-                    // execute
-                    client.getScalingExecutor().execute(()->success.accept(jStorageResult));
-                }else if(failure != null){
-                    // get header data
-                    HashMap<String, String> headers = new HashMap<>();
-                    String additionalInformation = response.header("Additional-Information");
-                    if(additionalInformation != null && !additionalInformation.isEmpty()){
-                        headers.put("additionalinformation", additionalInformation);
-                    }
-                    String internalStatus = response.header("Internal-Status");
-                    if(internalStatus != null && !internalStatus.isEmpty()){
-                        headers.put("internalstatus", internalStatus);
-                    }
-                    client.getScalingExecutor().execute(()->failure.accept(getException(statusCode, headers)));
+        submit().whenComplete((result, throwable) -> {
+            if(throwable == null){
+                if(success != null){
+                    client.getScalingExecutor().execute(()->success.accept(result));
                 }
+            }else if(failure != null){
+                JStorageException exception = unwrap(throwable);
+                client.getScalingExecutor().execute(()->failure.accept(exception));
             }
         });
     }
@@ -131,163 +163,413 @@ public class JStorageRequest {
      * @return result on success
      */
     public JStorageResult complete(){
-        try(Response response = call.execute()){
-            // get status code
-            int statusCode = response.code();
-            if(statusCode == 200 && response.isSuccessful()){
-                JStorageResult jStorageResult = new JStorageResult();
-                // get body if valid
-                if(response.body() != null && MediaType.parse("application/json").equals(response.body().contentType()) && response.body().contentLength() > 0){
-                    jStorageResult.setResult(response.body().bytes());
-                }
-                // return
-                return  jStorageResult;
-            }else{
-                // get header data
-                HashMap<String, String> headers = new HashMap<>();
-                String additionalInformation = response.header("Additional-Information");
-                if(additionalInformation != null && !additionalInformation.isEmpty()){
-                    headers.put("additionalinformation", additionalInformation);
-                }
-                String internalStatus = response.header("Internal-Status");
-                if(internalStatus != null && !internalStatus.isEmpty()){
-                    headers.put("internalstatus", internalStatus);
+        if(isCached() || isCoalesced()){
+            return await(submit());
+        }
+        Call call = this.call;
+        try{
+            sleep(client.getRateLimitInterceptor().reserve());
+            for(int attempt = 0; ; attempt++){
+                currentCall = call;
+                try(Response response = call.execute()){
+                    if(!shouldRetry(response, attempt)){
+                        return handleResponse(response);
+                    }
+                    sleep(client.getRateLimitInterceptor().getRetryDelay(attempt, response.code()));
                 }
-                throw getException(statusCode, headers);
+                call = call.clone();
             }
         } catch (IOException e) {
-            throw new HE_Processing(0, e.getMessage());
+            throw report(new HE_Processing(0, e.getMessage()));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw report(new HE_Processing(0, "Interrupted"));
+        } finally {
+            releaseRequestBuffer();
+        }
+    }
+
+    /**
+     * Can be used to execute the request and process large results without holding them in memory
+     * <br>
+     * The body is parsed incrementally while it is received. For every field of the top level object the handler
+     * receives the name of the field and its value; arrays are handed out element by element, e.g. one dataset at a
+     * time for DataAction_MultiSelect. Values are JSONObject, JSONArray, String, Number, Boolean or JSONObject.NULL.
+     * <br>
+     * The handler runs on the calling thread. Cache and coalescing are bypassed.
+     * Might throw an JStorageException if execution failed
+     * @param handler receiving field name and value
+     */
+    public void stream(BiConsumer<String, Object> handler){
+        Call call = this.call;
+        try{
+            sleep(client.getRateLimitInterceptor().reserve());
+            for(int attempt = 0; ; attempt++){
+                currentCall = call;
+                try(Response response = call.execute()){
+                    if(!shouldRetry(response, attempt)){
+                        if(response.code() != 200 || !response.isSuccessful()){
+                            throw report(getException(response));
+                        }
+                        ResponseBody responseBody = response.body();
+                        if(hasJsonBody(responseBody)){
+                            client.getJsonCodec().decode(responseBody.byteStream(), handler);
+                        }
+                        return;
+                    }
+                    sleep(client.getRateLimitInterceptor().getRetryDelay(attempt, response.code()));
+                }
+                call = call.clone();
+            }
+        } catch (IOException | JSONException e) {
+            throw report(new HE_Processing(0, e.getMessage()));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw report(new HE_Processing(0, "Interrupted"));
+        } finally {
+            releaseRequestBuffer();
+        }
+    }
+
+    /**
+     * Internal helper to wait on the calling thread
+     * @param delay in ms
+     * @throws InterruptedException if interrupted
+     */
+    private static void sleep(long delay) throws InterruptedException {
+        if(delay > 0){
+            TimeUnit.MILLISECONDS.sleep(delay);
         }
     }
 
     /**
      * Returns a completable future instead allowing the request to get canceled
+     * <br>
+     * The request is enqueued directly to the okhttp dispatcher, the future will be completed from its callback
      * @return CompletableFuture<JStorageResult>
      */
     public CompletableFuture<JStorageResult> submit(){
+        // results handed to more than one caller must not be released by one of them
+        shared = isCached() || isCoalesced();
+        if(isCached()){
+            DataCache dataCache = client.getDataCache();
+            JStorageResult cached = dataCache.get(this);
+            if(cached != null){
+                return CompletableFuture.completedFuture(cached);
+            }
+            long epoch = dataCache.getEpoch();
+            return coalesce().whenComplete((result, throwable) -> {
+                if(throwable == null){
+                    dataCache.put(this, result, epoch);
+                }
+            });
+        }
+        return coalesce();
+    }
+
+    /**
+     * Internal helper to pass the request to the coalescer if enabled
+     * @return CompletableFuture<JStorageResult>
+     */
+    private CompletableFuture<JStorageResult> coalesce(){
+        if(isCoalesced()){
+            return client.getRequestCoalescer().submit(this);
+        }
+        return enqueue();
+    }
+
+    /**
+     * Internal helper to enqueue the call to the okhttp dispatcher
+     * <br>
+     * The call is held back until a token of the rate limit is available and retried after a delay on 429/503
+     * @return CompletableFuture<JStorageResult>
+     */
+    CompletableFuture<JStorageResult> enqueue(){
         CompletableFuture<JStorageResult> cf = new CompletableFuture<>();
-        client.getScalingExecutor().execute(()->{cf.complete(this.complete());});
+        schedule(call, 0, client.getRateLimitInterceptor().reserve(), cf);
+        cf.whenComplete((result, throwable) -> {
+            if(cf.isCancelled()){
+                currentCall.cancel();
+            }
+        });
+        return cf;
+    }
+
+    /**
+     * Internal helper to enqueue a call after the given delay without blocking any thread
+     * @param call to enqueue
+     * @param attempt number of retries already done
+     * @param delay in ms
+     * @param cf to complete
+     */
+    private void schedule(Call call, int attempt, long delay, CompletableFuture<JStorageResult> cf){
+        currentCall = call;
+        if(delay > 0){
+            client.getScheduler().schedule(() -> enqueue(call, attempt, cf), delay, TimeUnit.MILLISECONDS);
+        }else{
+            enqueue(call, attempt, cf);
+        }
+    }
+
+    /**
+     * Internal helper to enqueue a call
+     * @param call to enqueue
+     * @param attempt number of retries already done
+     * @param cf to complete
+     */
+    private void enqueue(Call call, int attempt, CompletableFuture<JStorageResult> cf){
+        if(cf.isDone()){
+            releaseRequestBuffer();
+            return;
+        }
+        call.enqueue(new Callback() {
+            @Override
+            public void onFailure(@NotNull Call call, @NotNull IOException e) {
+                releaseRequestBuffer();
+                cf.completeExceptionally(report(new HE_Processing(0, e.getMessage())));
+            }
+
+            @Override
+            public void onResponse(@NotNull Call call, @NotNull Response response) {
+                try(response){
+                    if(shouldRetry(response, attempt)){
+                        schedule(call.clone(), attempt + 1, client.getRateLimitInterceptor().getRetryDelay(attempt, response.code()), cf);
+                        return;
+                    }
+                    // the body has been sent completely once the response arrived
+                    releaseRequestBuffer();
+                    cf.complete(handleResponse(response));
+                }catch (JStorageException e){
+                    cf.completeExceptionally(e);
+                }catch (Exception e){
+                    cf.completeExceptionally(report(new HE_Processing(0, e.getMessage())));
+                }
+            }
+        });
+    }
+
+    /**
+     * Internal helper to check whether a request should be retried
+     * @param response of the request
+     * @param attempt number of retries already done
+     * @return boolean
+     */
+    private boolean shouldRetry(Response response, int attempt){
+        RequestBody requestBody = response.request().body();
+        return (response.code() == 429 || response.code() == 503) && attempt < MAX_RETRIES && (requestBody == null || !requestBody.isOneShot());
+    }
+
+    /**
+     * Can be used to submit multiple requests at once
+     * <br>
+     * The returned future completes after all requests did, or exceptionally as soon as one of them fails.
+     * Canceling it will cancel all requests which are still running.
+     * @param requests which should be executed
+     * @return CompletableFuture<List<JStorageResult>> containing the results in the order of the given collection
+     */
+    public static CompletableFuture<List<JStorageResult>> submitAll(Collection<JStorageRequest> requests){
+        List<CompletableFuture<JStorageResult>> futures = new ArrayList<>(requests.size());
+        for(JStorageRequest request : requests){
+            futures.add(request.submit());
+        }
+        CompletableFuture<List<JStorageResult>> cf = CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0])).thenApply(v -> {
+            List<JStorageResult> results = new ArrayList<>(futures.size());
+            for(CompletableFuture<JStorageResult> future : futures){
+                results.add(future.join());
+            }
+            return results;
+        });
+        cf.whenComplete((results, throwable) -> {
+            if(cf.isCancelled()){
+                futures.forEach(future -> future.cancel(true));
+            }
+        });
         return cf;
     }
 
+    /**
+     * Internal helper to check whether this request should be looked up in the DataCache
+     * @return boolean
+     */
+    private boolean isCached(){
+        return client.getDataCache() != null && DataCache.isCacheable(this);
+    }
+
+    /**
+     * Internal helper to check whether this request should be handled by the RequestCoalescer
+     * @return boolean
+     */
+    private boolean isCoalesced(){
+        return "GET".equals(requestType.getRequestType()) && client.getRequestCoalescer() != null;
+    }
 
     /**
-     * Internal helper which exception to return
-     * @param statusCode http
-     * @param headers of the request
+     * Internal helper to wait for a future, unwrapping the JStorageException on failure
+     * @param cf future to wait for
+     * @return JStorageResult
+     */
+    static JStorageResult await(CompletableFuture<JStorageResult> cf){
+        try{
+            return cf.join();
+        }catch (CompletionException | CancellationException e){
+            throw unwrap(e);
+        }
+    }
+
+    /**
+     * Internal helper to get the JStorageException a future failed with
+     * <br>
+     * Futures derived from shared ones (coalesced, cached) fail with the exception wrapped in a CompletionException
+     * @param throwable the future failed with
      * @return JStorageException
      */
-    private JStorageException getException(int statusCode, HashMap<String, String> headers){
-        if(headers.containsKey("internalstatus")){
-            String[] params = headers.get("internalstatus").split("\\s");
-            if(params.length >= 2){
-                String exceptionClass = params[0];
-                int exceptionType = Integer.parseInt(params[1]);
-                String exceptionMsg = headers.get("internalstatus").replaceAll(params[0], "").replaceAll(params[1], "");
-
-                switch(exceptionClass){
-                    case "datastorageexception":
-                        switch (exceptionType){
-                            case 0:
-                                return new DSE_General(exceptionType, exceptionMsg);
-                            case 101:
-                                return new DSE_LoadUnload(exceptionType, exceptionMsg, DSE_LoadUnload.Type.ActionPerform_Load);
-                            case 102:
-                                return new DSE_LoadUnload(exceptionType, exceptionMsg, DSE_LoadUnload.Type.ActionPerform_Unload);
-                            case 110:
-                                return new DSE_LoadUnload(exceptionType, exceptionMsg, DSE_LoadUnload.Type.ActionRunning_Unknown);
-                            case 111:
-                                return new DSE_LoadUnload(exceptionType, exceptionMsg, DSE_LoadUnload.Type.ActionRunning_Load);
-                            case 112:
-                                return new DSE_LoadUnload(exceptionType, exceptionMsg, DSE_LoadUnload.Type.ActionRunning_Unload);
-                            case 120:
-                                return new DSE_LoadUnload(exceptionType, exceptionMsg, DSE_LoadUnload.Type.Timeout);
-                            case 200:
-                            case 201:
-                            case 202:
-                            case 203:
-                            case 204:
-                            case 205:
-                            case 206:
-                                return new DSE_ExpectationFailed(exceptionType, exceptionMsg, DSE_ExpectationFailed.Type.DataNotFound);
-                            case 210:
-                            case 211:
-                            case 212:
-                            case 213:
-                            case 214:
-                            case 215:
-                            case 216:
-                                return new DSE_ExpectationFailed(exceptionType, exceptionMsg, DSE_ExpectationFailed.Type.DataAlreadyExisting);
-                            case 220:
-                            case 221:
-                                return new DSE_ExpectationFailed(exceptionType, exceptionMsg, DSE_ExpectationFailed.Type.DataMismatch);
-                            case 230:
-                            case 231:
-                            case 232:
-                                return new DSE_ExpectationFailed(exceptionType, exceptionMsg, DSE_ExpectationFailed.Type.NotReady);
-                            case 240:
-                            case 241:
-                            case 242:
-                                return new DSE_ExpectationFailed(exceptionType, exceptionMsg, DSE_ExpectationFailed.Type.Validation);
-                            case 300:
-                                return new DSE_DataInconsistency(exceptionType, exceptionMsg);
-                            case 400:
-                                return new DSE_DataLocked(exceptionType, exceptionMsg);
-                            default:
-                                return new DSE_General(exceptionType, exceptionMsg);
-                        }
-                    case "genericobjectexception":
-                        switch (exceptionType){
-                            case 0:
-                                return new GOE_General(exceptionType, exceptionMsg);
-                            case 100:
-                                return new GOE_NotReady(exceptionType, exceptionMsg, GOE_NotReady.Type.Undefined);
-                            case 101:
-                                return new GOE_NotReady(exceptionType, exceptionMsg, GOE_NotReady.Type.Loading);
-                            case 102:
-                                return new GOE_NotReady(exceptionType, exceptionMsg, GOE_NotReady.Type.Unloading);
-                            case 200:
-                                return new GOE_NotFound(exceptionType, exceptionMsg);
-                            case 300:
-                                return new GOE_AlreadyExisting(exceptionType, exceptionMsg);
-                            case 400:
-                                return new GOE_Format(exceptionType, exceptionMsg);
-                            default:
-                                return new GOE_General(exceptionType, exceptionMsg);
-                        }
-                    case "cryptexception":
-                        switch (exceptionType){
-                            case 0:
-                                return new CE_General(exceptionType, exceptionMsg, CE_General.Type.NotReady);
-                            case 1:
-                                return new CE_General(exceptionType, exceptionMsg, CE_General.Type.InvalidPassword);
-                            case 2:
-                                return new CE_General(exceptionType, exceptionMsg, CE_General.Type.SetupFailed);
-                            case 10:
-                            case 11:
-                                return new CE_Crypt(exceptionType, exceptionMsg, CE_Crypt.Type.Encryption);
-                            case 20:
-                            case 21:
-                                return new CE_Crypt(exceptionType, exceptionMsg, CE_Crypt.Type.Decryption);
-                            default:
-                                return new CE_General(exceptionType, exceptionMsg, CE_General.Type.Unknown);
-                        }
-                    default:
-                        return new HE_Processing(0, "Unknown Exception");
+    static JStorageException unwrap(Throwable throwable){
+        if(throwable instanceof CompletionException && throwable.getCause() != null){
+            throwable = throwable.getCause();
+        }
+        if(throwable instanceof JStorageException){
+            return (JStorageException) throwable;
+        }
+        if(throwable instanceof CancellationException){
+            return new HE_Processing(0, "Canceled");
+        }
+        return new HE_Processing(0, throwable.getMessage());
+    }
+
+    /**
+     * Internal helper to convert the response to a result
+     * <br>
+     * Throws the matching JStorageException if the request failed
+     * @param response of the request
+     * @return JStorageResult
+     * @throws IOException on exception reading the body
+     */
+    private JStorageResult handleResponse(Response response) throws IOException {
+        // get status code
+        int statusCode = response.code();
+        if(statusCode == 200 && response.isSuccessful()){
+            JStorageResult jStorageResult = new JStorageResult(client.getJsonCodec(), client.getTypeMapper());
+            if(shared){
+                jStorageResult.setShared();
+            }
+            // get body if valid
+            if(hasJsonBody(response.body())){
+                BufferPool bufferPool = client.getBufferPool();
+                if(bufferPool != null && !shared){
+                    readBody(response.body(), bufferPool, jStorageResult);
+                }else{
+                    jStorageResult.setResult(readBody(response.body()));
                 }
-            }else{
-                // invalid params
-                return new HE_Processing(0, "Insufficient Parameters For Parsing The Error");
             }
-        }else{
-            // default http error
-            switch (statusCode){
-                case 403:
-                case 401:
-                    return new HE_BadAccess(statusCode, "Authorization Failed");
-                default:
-                    return new HE_General(statusCode, "Unexpected HTTP Response");
+            return jStorageResult;
+        }
+        throw report(getException(response));
+    }
+
+    /**
+     * Internal helper to get the exception matching a failed response
+     * @param response of the request
+     * @return JStorageException
+     */
+    private JStorageException getException(Response response){
+        return ExceptionDecoder.decode(response.code(), response.header("Internal-Status"), client.isCaptureStackTraces());
+    }
+
+    /**
+     * Internal helper to check if a response body contains json
+     * <br>
+     * Compares type and subtype only, so parameters such as the charset do not matter.
+     * The length of transparently decompressed bodies is unknown (-1), only bodies known to be empty are skipped.
+     * @param responseBody to check
+     * @return boolean
+     */
+    private static boolean hasJsonBody(ResponseBody responseBody){
+        if(responseBody == null || responseBody.contentLength() == 0){
+            return false;
+        }
+        MediaType mediaType = responseBody.contentType();
+        return mediaType != null && "application".equals(mediaType.type()) && "json".equals(mediaType.subtype());
+    }
+
+    /**
+     * Internal helper to read the body of a response
+     * <br>
+     * If the length is known the body is read in chunks into an array of the exact size, which avoids buffering
+     * the whole body a second time
+     * @param responseBody to read
+     * @return bytes
+     * @throws IOException on exception
+     */
+    private static byte[] readBody(ResponseBody responseBody) throws IOException {
+        long contentLength = responseBody.contentLength();
+        if(contentLength < 0 || contentLength > Integer.MAX_VALUE - 8){
+            return responseBody.bytes();
+        }
+        byte[] bytes = new byte[(int) contentLength];
+        try(InputStream inputStream = responseBody.byteStream()){
+            int offset = 0;
+            while(offset < bytes.length){
+                int read = inputStream.read(bytes, offset, bytes.length - offset);
+                if(read < 0){
+                    throw new EOFException("Expected "+bytes.length+" Bytes, Received "+offset);
+                }
+                offset += read;
             }
         }
+        return bytes;
+    }
+
+    /**
+     * Internal helper to read the body of a response into a pooled buffer
+     * @param responseBody to read
+     * @param bufferPool to borrow the buffer from
+     * @param jStorageResult to add the body to
+     * @throws IOException on exception
+     */
+    private static void readBody(ResponseBody responseBody, BufferPool bufferPool, JStorageResult jStorageResult) throws IOException {
+        long contentLength = responseBody.contentLength();
+        if(contentLength >= bufferPool.getMaxBufferSize()){
+            jStorageResult.setResult(readBody(responseBody));
+            return;
+        }
+        // one spare byte, so reaching the end does not grow the buffer
+        try(BufferOutputStream bufferOutputStream = new BufferOutputStream(bufferPool, (contentLength >= 0) ? (int) contentLength + 1 : UNKNOWN_LENGTH_CAPACITY);
+            BufferedSource source = responseBody.source()){
+            bufferOutputStream.writeFrom(source);
+            jStorageResult.setResult(bufferOutputStream.toPooledBuffer());
+        }
+    }
+
+    /**
+     * Can be used to give up a request which will not be executed
+     * <br>
+     * Returns the pooled buffer holding the payload, if any. The call is canceled, so the request can not be executed
+     * afterwards. Requests which have been executed already release their buffer on their own and are not affected.
+     */
+    public void release(){
+        if(call.isExecuted()){
+            return;
+        }
+        call.cancel();
+        releaseRequestBuffer();
+    }
+
+    /**
+     * Internal helper to return the buffer of the request body to its pool
+     */
+    private void releaseRequestBuffer(){
+        if(requestBuffer != null){
+            requestBuffer.release();
+        }
+    }
+
+    /**
+     * Internal helper to report an exception to the MetricsCollector
+     * @param exception to report
+     * @return the exception
+     */
+    private JStorageException report(JStorageException exception){
+        client.getMetricsCollector().onError(requestType, exception.getClass());
+        return exception;
     }
 }
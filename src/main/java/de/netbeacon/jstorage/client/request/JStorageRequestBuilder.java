@@ -17,11 +17,24 @@
 package de.netbeacon.jstorage.client.request;
 
 import de.netbeacon.jstorage.client.JStorageClient;
+import de.netbeacon.jstorage.client.buffer.BufferOutputStream;
+import de.netbeacon.jstorage.client.buffer.BufferPool;
+import de.netbeacon.jstorage.client.buffer.PooledBuffer;
 import okhttp3.*;
+import okio.BufferedSink;
+import okio.Okio;
+import okio.Source;
+import org.jetbrains.annotations.NotNull;
 import org.json.JSONObject;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
@@ -31,10 +44,14 @@ import java.util.Map;
  */
 public class JStorageRequestBuilder {
 
+    private static final MediaType JSON = MediaType.get("application/json");
+    private static final RequestBody EMPTY_BODY = RequestBody.create("{}".getBytes(), JSON);
+
     private final JStorageClient client;
     private final RequestType type;
     private final HashMap<String, String> args = new HashMap<>();
     private JSONObject payload;
+    private RequestBody rawPayload;
 
     private final Logger logger = LoggerFactory.getLogger(JStorageRequestBuilder.class);
 
@@ -64,89 +81,275 @@ public class JStorageRequestBuilder {
      */
     public JStorageRequestBuilder setPayload(JSONObject jsonObject){
         this.payload = jsonObject;
+        this.rawPayload = null;
+        return this;
+    }
+
+    /**
+     * Can be used to add already serialized json as payload
+     * <br>
+     * The array will not be copied and should not be modified afterwards
+     * @param bytes utf-8 json
+     */
+    public JStorageRequestBuilder setPayload(byte[] bytes){
+        return setRawPayload(RequestBody.create(bytes, JSON));
+    }
+
+    /**
+     * Can be used to add already serialized json as payload
+     * <br>
+     * The remaining bytes of the buffer will be sent without copying them, its position is not changed
+     * @param byteBuffer utf-8 json
+     */
+    public JStorageRequestBuilder setPayload(ByteBuffer byteBuffer){
+        return setRawPayload(bufferBody(byteBuffer.duplicate()));
+    }
+
+    /**
+     * Can be used to stream json from an InputStream as payload
+     * <br>
+     * The stream can only be read once, requests with this payload will not be retried.
+     * The stream will be closed after the request has been sent.
+     * @param inputStream utf-8 json
+     */
+    public JStorageRequestBuilder setPayload(InputStream inputStream){
+        return setPayload(inputStream, -1);
+    }
+
+    /**
+     * Can be used to stream json from an InputStream as payload
+     * <br>
+     * The stream can only be read once, requests with this payload will not be retried.
+     * The stream will be closed after the request has been sent.
+     * @param inputStream utf-8 json
+     * @param length number of bytes or -1 if unknown
+     */
+    public JStorageRequestBuilder setPayload(InputStream inputStream, long length){
+        return setRawPayload(new RequestBody() {
+            @Override
+            public MediaType contentType() {
+                return JSON;
+            }
+
+            @Override
+            public long contentLength() {
+                return length;
+            }
+
+            @Override
+            public boolean isOneShot() {
+                return true;
+            }
+
+            @Override
+            public void writeTo(@NotNull BufferedSink bufferedSink) throws IOException {
+                try(Source source = Okio.source(inputStream)){
+                    bufferedSink.writeAll(source);
+                }
+            }
+        });
+    }
+
+    /**
+     * Can be used to send a file containing json as payload
+     * <br>
+     * The file is streamed in chunks while sending, it is neither loaded into memory nor re-encoded
+     * @param path of the file, utf-8 json
+     */
+    public JStorageRequestBuilder setPayload(Path path){
+        long length;
+        try{
+            length = Files.size(path);
+        }catch (IOException e){
+            throw new UncheckedIOException(e);
+        }
+        return setRawPayload(new RequestBody() {
+            @Override
+            public MediaType contentType() {
+                return JSON;
+            }
+
+            @Override
+            public long contentLength() {
+                return length;
+            }
+
+            @Override
+            public void writeTo(@NotNull BufferedSink bufferedSink) throws IOException {
+                try(Source source = Okio.source(path)){
+                    bufferedSink.writeAll(source);
+                }
+            }
+        });
+    }
+
+    /**
+     * Can be used to add an object as payload, mapped by the TypeMapper of the client
+     * @param object payload
+     */
+    public JStorageRequestBuilder setPayloadObject(Object object){
+        return setPayload(client.getTypeMapper().write(object));
+    }
+
+    /**
+     * Can be used to add an object as payload wrapped into a single field, e.g. {"datatype": object} for DataAction_UpdateDataType
+     * @param key name of the field
+     * @param object payload
+     */
+    public JStorageRequestBuilder setPayloadObject(String key, Object object){
+        return setPayload(client.getTypeMapper().write(key, object));
+    }
+
+    /**
+     * Internal helper to create a body sending the remaining bytes of a buffer
+     * @param payload to send, should not be used by anything else
+     * @return RequestBody
+     */
+    private static RequestBody bufferBody(ByteBuffer payload){
+        return new RequestBody() {
+            @Override
+            public MediaType contentType() {
+                return JSON;
+            }
+
+            @Override
+            public long contentLength() {
+                return payload.remaining();
+            }
+
+            @Override
+            public void writeTo(@NotNull BufferedSink bufferedSink) throws IOException {
+                // duplicate again so retries send the whole buffer
+                bufferedSink.write(payload.duplicate());
+            }
+        };
+    }
+
+    /**
+     * Internal helper to set a payload which does not need to be encoded
+     * @param requestBody payload
+     * @return this
+     */
+    private JStorageRequestBuilder setRawPayload(RequestBody requestBody){
+        this.payload = null;
+        this.rawPayload = requestBody;
         return this;
     }
 
     /**
      * Can be used to build the request
+     * <br>
+     * If the client uses a BufferPool the payload is held in a pooled buffer until the request finished. Requests which
+     * will not be executed should be released with {@link JStorageRequest#release()}, otherwise their buffer is left to
+     * the garbage collector and reported by the leak detection.
      * @return JStorageRequest
      */
     public JStorageRequest build(){
+        RequestTemplates.Template template = client.getRequestTemplates().get(type);
         // check args
-        if(!args.keySet().containsAll(type.getRequiredArguments())){
-            logger.warn("Missing Arguments For This Type Of Request. Expected: "+ Arrays.toString(type.getRequiredArguments().toArray())+" Provided: "+Arrays.toString(args.keySet().toArray()));
+        for(String argument : template.requiredArguments){
+            if(!args.containsKey(argument)){
+                logger.warn("Missing Arguments For This Type Of Request. Expected: "+ Arrays.toString(template.requiredArguments)+" Provided: "+Arrays.toString(args.keySet().toArray()));
+                break;
+            }
         }
         // check payload
-        if(payload == null && type.requiresBody()){
+        if(payload == null && rawPayload == null && type.requiresBody()){
             logger.warn("Missing Payload For This Type Of Request. Adding Empty Body - This Might Cause Errors");
         }
-        // build url
-        HttpUrl.Builder urlBuilder = new HttpUrl.Builder();
-        urlBuilder
-                .scheme("https")
-                .host(client.getHost())
-                .port(client.getPort());
-        // add path
-        for(String subpath : type.getRequestPath()){
-            urlBuilder.addPathSegment(subpath);
-        }
-        // add args
-        for(Map.Entry<String, String> arg : args.entrySet()){
-            urlBuilder.addQueryParameter(arg.getKey(), arg.getValue());
+        // build url, only the args differ from the template
+        HttpUrl url = template.baseUrl;
+        if(!args.isEmpty()){
+            HttpUrl.Builder urlBuilder = url.newBuilder();
+            for(Map.Entry<String, String> arg : args.entrySet()){
+                urlBuilder.addQueryParameter(arg.getKey(), arg.getValue());
+            }
+            url = urlBuilder.build();
         }
         // build request
         okhttp3.Request.Builder requestBuilder = new okhttp3.Request.Builder();
-        requestBuilder.url(urlBuilder.build());
+        requestBuilder.url(url);
+        requestBuilder.tag(RequestType.class, type);
         // add required auth
-        switch(type.getRequiredAuthMode()){
-            case -1:
-                if(client.getLoginToken() != null){
-                    requestBuilder.header("Token", (client.getLoginToken() != null)? client.getLoginToken() : "");
-                }else if(client.getUserId() != null && client.getPassword() != null){
-                    requestBuilder.header("Authorization", Credentials.basic(
-                            (client.getUserId() != null)? client.getUserId() : "",
-                            (client.getPassword() != null)? client.getPassword() : ""));
-                }else{
-                    logger.warn("Missing Auth For This Request. Adding Empty Auth.");
-                }
-                break;
-            case 0:
-                if(client.getUserId() == null || client.getPassword() == null){
-                    logger.warn("Missing Auth ID/Password For This Request. Adding Empty Auth.");
-                }
-                requestBuilder.header("Authorization", Credentials.basic(
-                        (client.getUserId() != null)? client.getUserId() : "",
-                        (client.getPassword() != null)? client.getPassword() : ""));
-                break;
-            case 1:
-                if(client.getLoginToken() == null){
-                    logger.warn("Missing Auth Token For This Request. Adding Empty Auth.");
-                }
-                requestBuilder.header("Token", (client.getLoginToken() != null)? client.getLoginToken() : "");
-                break;
+        if(template.authWarning != null){
+            logger.warn(template.authWarning);
         }
-        // choose method
-        switch(type.getRequestType()){
-            case "GET":
-                requestBuilder.get();
-                break;
-            case "PUT":
-                if(payload == null){
-                    requestBuilder.put(RequestBody.create("{}".getBytes(), MediaType.get("application/json")));
+        if(template.authHeader != null){
+            requestBuilder.header(template.authHeader, template.authValue);
+        }
+        // encode payload
+        BufferPool bufferPool = client.getBufferPool();
+        PooledBuffer requestBuffer = null;
+        RequestBody body = rawPayload;
+        try{
+            if(body == null && payload != null){
+                if(bufferPool != null){
+                    requestBuffer = encode(bufferPool);
+                    body = bufferBody(requestBuffer.buffer());
                 }else{
-                    requestBuilder.put(RequestBody.create(payload.toString().getBytes(), MediaType.get("application/json")));
+                    body = RequestBody.create(client.getJsonCodec().encode(payload), JSON);
                 }
-                break;
-            case "DELETE":
-                if(payload == null){
-                    requestBuilder.delete();
-                }else{
-                    requestBuilder.delete(RequestBody.create(payload.toString().getBytes(), MediaType.get("application/json")));
+            }
+            RequestCompression requestCompression = client.getRequestCompression();
+            if(body != null && requestCompression != null){
+                RequestBody compressed = requestCompression.compress(type, body);
+                if(compressed != null){
+                    requestBuilder.header("Content-Encoding", "gzip");
+                    body = compressed;
+                    if(requestBuffer != null && !RequestCompression.isStreaming(compressed)){
+                        // compressed into a copy already
+                        requestBuffer.release();
+                        requestBuffer = null;
+                    }
                 }
-                break;
+            }
+            // choose method
+            switch(type.getRequestType()){
+                case "GET":
+                    requestBuilder.get();
+                    break;
+                case "PUT":
+                    if(body == null){
+                        requestBuilder.put(EMPTY_BODY);
+                    }else{
+                        requestBuilder.put(body);
+                    }
+                    break;
+                case "DELETE":
+                    if(body == null){
+                        requestBuilder.delete();
+                    }else{
+                        requestBuilder.delete(body);
+                    }
+                    break;
+            }
+
+            Call call = client.getOkHttpClient().newCall(requestBuilder.build());
+            return new JStorageRequest(client, call, type, new HashMap<>(args), requestBuffer);
+        }catch (RuntimeException e){
+            if(requestBuffer != null){
+                requestBuffer.release();
+            }
+            throw e;
         }
+    }
 
-        Call call = client.getOkHttpClient().newCall(requestBuilder.build());
-        return new JStorageRequest(client, call, type);
+    /**
+     * Internal helper to encode the payload into a pooled buffer
+     * @param bufferPool to borrow the buffer from
+     * @return PooledBuffer containing the payload
+     */
+    private PooledBuffer encode(BufferPool bufferPool){
+        BufferOutputStream bufferOutputStream = new BufferOutputStream(bufferPool, BufferPool.MIN_BUFFER_SIZE);
+        try{
+            client.getJsonCodec().encode(payload, bufferOutputStream);
+        }catch (IOException e){
+            bufferOutputStream.close();
+            throw new UncheckedIOException(e);
+        }catch (RuntimeException e){
+            bufferOutputStream.close();
+            throw e;
+        }
+        return bufferOutputStream.toPooledBuffer();
     }
 }
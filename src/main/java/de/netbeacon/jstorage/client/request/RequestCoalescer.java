@@ -0,0 +1,94 @@
+/*
+ *     Copyright 2020 Horstexplorer @ https://www.netbeacon.de
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.netbeacon.jstorage.client.request;
+
+import de.netbeacon.jstorage.client.result.JStorageResult;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lets identical GET requests which are running at the same time share a single call
+ * <br>
+ * Requests are identical if they have the same RequestType and the same url arguments.
+ * Every caller receives its own future, canceling it will not cancel the shared call.
+ */
+public class RequestCoalescer {
+
+    private final ConcurrentHashMap<String, CompletableFuture<JStorageResult>> inFlight = new ConcurrentHashMap<>();
+    private final LongAdder executed = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+
+    /**
+     * Executes the request or joins an identical one which is already running
+     * @param request to execute
+     * @return CompletableFuture<JStorageResult>
+     */
+    public CompletableFuture<JStorageResult> submit(JStorageRequest request){
+        String key = request.getRequestKey();
+        CompletableFuture<JStorageResult> shared = new CompletableFuture<>();
+        CompletableFuture<JStorageResult> existing = inFlight.putIfAbsent(key, shared);
+        if(existing != null){
+            coalesced.increment();
+            return existing.copy();
+        }
+        executed.increment();
+        CompletableFuture<JStorageResult> cf;
+        try{
+            cf = request.enqueue();
+        }catch (RuntimeException e){
+            // e.g. a call which has been executed already, do not let following requests join it
+            inFlight.remove(key, shared);
+            shared.completeExceptionally(e);
+            return shared.copy();
+        }
+        cf.whenComplete((result, throwable) -> {
+            inFlight.remove(key, shared);
+            if(throwable != null){
+                shared.completeExceptionally(throwable);
+            }else{
+                shared.complete(result);
+            }
+        });
+        return shared.copy();
+    }
+
+    /**
+     * Used to get the number of requests currently in flight
+     * @return int
+     */
+    public int getInFlight(){
+        return inFlight.size();
+    }
+
+    /**
+     * Used to get the number of requests which have actually been executed
+     * @return long
+     */
+    public long getExecuted(){
+        return executed.sum();
+    }
+
+    /**
+     * Used to get the number of requests which joined an identical request instead of being executed
+     * @return long
+     */
+    public long getCoalesced(){
+        return coalesced.sum();
+    }
+}
@@ -0,0 +1,163 @@
+/*
+ *     Copyright 2020 Horstexplorer @ https://www.netbeacon.de
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package de.netbeacon.jstorage.client.request;
+
+import okhttp3.MediaType;
+import okhttp3.RequestBody;
+import okio.Buffer;
+import okio.BufferedSink;
+import okio.GzipSink;
+import okio.Okio;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * Compresses request bodies of selected RequestTypes with gzip
+ * <br>
+ * Bodies of known size below the threshold are sent as they are. Bodies of known size up to MAX_BUFFERED_SIZE are
+ * compressed once while building the request, so the compressed size is known and retries reuse the result.
+ * Larger, unknown sized and one shot bodies are compressed while they are sent.
+ * <br>
+ * The server needs to accept "Content-Encoding: gzip" for the selected RequestTypes.
+ */
+public class RequestCompression {
+
+    private static final long MAX_BUFFERED_SIZE = 8 * 1024 * 1024;
+
+    private final boolean[] enabled = new boolean[RequestType.values().length];
+    private final long minSize;
+
+    /**
+     * Creates a new instance of this class
+     * @param minSize number of bytes from which on bodies should be compressed
+     * @param requestTypes of which the bodies should be compressed
+     */
+    public RequestCompression(long minSize, Set<RequestType> requestTypes){
+        this.minSize = Math.max(0, minSize);
+        for(RequestType requestType : requestTypes){
+            enabled[requestType.ordinal()] = true;
+        }
+    }
+
+    /**
+     * Creates a new instance of this class compressing the bodies of DataAction_UpdateDataType and CacheAction_CreateCachedData
+     * @param minSize number of bytes from which on bodies should be compressed
+     */
+    public RequestCompression(long minSize){
+        this(minSize, EnumSet.of(RequestType.DataAction_UpdateDataType, RequestType.CacheAction_CreateCachedData));
+    }
+
+    /**
+     * Used to check if bodies of the given RequestType will be compressed
+     * @param requestType of the request
+     * @return boolean
+     */
+    public boolean isEnabled(RequestType requestType){
+        return enabled[requestType.ordinal()];
+    }
+
+    /**
+     * Used to get the number of bytes from which on bodies are compressed
+     * @return long
+     */
+    public long getMinSize(){
+        return minSize;
+    }
+
+    /**
+     * Used to get the body which should be sent
+     * @param requestType of the request
+     * @param requestBody to compress
+     * @return the compressed body or null if it should be sent as it is
+     */
+    RequestBody compress(RequestType requestType, RequestBody requestBody){
+        if(!enabled[requestType.ordinal()]){
+            return null;
+        }
+        long contentLength;
+        try{
+            contentLength = requestBody.contentLength();
+        }catch (IOException e){
+            contentLength = -1;
+        }
+        if(contentLength >= 0 && contentLength < minSize){
+            return null;
+        }
+        if(contentLength < 0 || contentLength > MAX_BUFFERED_SIZE || requestBody.isOneShot()){
+            return new GzipRequestBody(requestBody);
+        }
+        Buffer buffer = new Buffer();
+        try(BufferedSink gzipSink = Okio.buffer(new GzipSink(buffer))){
+            requestBody.writeTo(gzipSink);
+        }catch (IOException e){
+            throw new UncheckedIOException(e);
+        }
+        return RequestBody.create(buffer.readByteString(), requestBody.contentType());
+    }
+
+    /**
+     * Used to check whether a body returned by {@link #compress(RequestType, RequestBody)} still reads the original body
+     * @param requestBody compressed body
+     * @return true if it is compressed while it is sent, false if it has been compressed into a copy
+     */
+    static boolean isStreaming(RequestBody requestBody){
+        return requestBody instanceof GzipRequestBody;
+    }
+
+    /**
+     * Compresses the wrapped body while it is sent
+     */
+    private static class GzipRequestBody extends RequestBody {
+
+        private final RequestBody requestBody;
+
+        /**
+         * Creates a new instance of this class
+         * @param requestBody to compress
+         */
+        private GzipRequestBody(RequestBody requestBody){
+            this.requestBody = requestBody;
+        }
+
+        @Override
+        public MediaType contentType() {
+            return requestBody.contentType();
+        }
+
+        @Override
+        public long contentLength() {
+            return -1;
+        }
+
+        @Override
+        public boolean isOneShot() {
+            return requestBody.isOneShot();
+        }
+
+        @Override
+        public void writeTo(@NotNull BufferedSink bufferedSink) throws IOException {
+            try(BufferedSink gzipSink = Okio.buffer(new GzipSink(bufferedSink))){
+                requestBody.writeTo(gzipSink);
+            }
+        }
+    }
+}
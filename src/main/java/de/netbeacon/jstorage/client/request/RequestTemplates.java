@@ -0,0 +1,135 @@
+/*
+ *     Copyright 2020 Horstexplorer @ https://www.netbeacon.de
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package de.netbeacon.jstorage.client.request;
+
+import de.netbeacon.jstorage.client.JStorageClient;
+import okhttp3.Credentials;
+import okhttp3.HttpUrl;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Holds the parts of a request which are the same for every request of a RequestType of a client
+ * <br>
+ * Templates are created on first use. They contain credentials and need to be invalidated if those change.
+ */
+public class RequestTemplates {
+
+    private final JStorageClient client;
+    private volatile AtomicReferenceArray<Template> templates = new AtomicReferenceArray<>(RequestType.values().length);
+
+    /**
+     * Creates a new instance of this class
+     * @param client the templates belong to
+     */
+    public RequestTemplates(JStorageClient client){
+        this.client = client;
+    }
+
+    /**
+     * Used to get the template of a RequestType
+     * @param type of the request
+     * @return Template
+     */
+    Template get(RequestType type){
+        AtomicReferenceArray<Template> templates = this.templates;
+        Template template = templates.get(type.ordinal());
+        if(template == null){
+            template = new Template(client, type);
+            // an invalidation while building replaces the array, the outdated template will not be kept
+            if(!templates.compareAndSet(type.ordinal(), null, template)){
+                template = templates.get(type.ordinal());
+            }
+        }
+        return template;
+    }
+
+    /**
+     * Drops all templates, should be called after the credentials have been changed
+     */
+    public void invalidate(){
+        this.templates = new AtomicReferenceArray<>(RequestType.values().length);
+    }
+
+    /**
+     * Template of a single RequestType
+     */
+    static class Template {
+
+        final HttpUrl baseUrl;
+        final String[] requiredArguments;
+        final String authHeader;
+        final String authValue;
+        final String authWarning;
+
+        /**
+         * Creates a new instance of this class
+         * @param client providing host, port and credentials
+         * @param type of the request
+         */
+        private Template(JStorageClient client, RequestType type){
+            // build url
+            HttpUrl.Builder urlBuilder = new HttpUrl.Builder()
+                    .scheme("https")
+                    .host(client.getHost())
+                    .port(client.getPort());
+            for(String subpath : type.getRequestPath()){
+                urlBuilder.addPathSegment(subpath);
+            }
+            this.baseUrl = urlBuilder.build();
+            this.requiredArguments = type.getRequiredArguments().toArray(new String[0]);
+            // prepare required auth
+            String loginToken = client.getLoginToken();
+            String userId = client.getUserId();
+            String password = client.getPassword();
+            String authHeader = null;
+            String authValue = null;
+            String authWarning = null;
+            switch(type.getRequiredAuthMode()){
+                case -1:
+                    if(loginToken != null){
+                        authHeader = "Token";
+                        authValue = loginToken;
+                    }else if(userId != null && password != null){
+                        authHeader = "Authorization";
+                        authValue = Credentials.basic(userId, password);
+                    }else{
+                        authWarning = "Missing Auth For This Request. Adding Empty Auth.";
+                    }
+                    break;
+                case 0:
+                    if(userId == null || password == null){
+                        authWarning = "Missing Auth ID/Password For This Request. Adding Empty Auth.";
+                    }
+                    authHeader = "Authorization";
+                    authValue = Credentials.basic((userId != null)? userId : "", (password != null)? password : "");
+                    break;
+                case 1:
+                    if(loginToken == null){
+                        authWarning = "Missing Auth Token For This Request. Adding Empty Auth.";
+                    }
+                    authHeader = "Token";
+                    authValue = (loginToken != null)? loginToken : "";
+                    break;
+            }
+            this.authHeader = authHeader;
+            this.authValue = authValue;
+            this.authWarning = authWarning;
+        }
+    }
+}
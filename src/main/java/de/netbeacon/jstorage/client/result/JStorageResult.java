@@ -14,45 +14,231 @@
  * limitations under the License.
  */
 
+
 package de.netbeacon.jstorage.client.result;
 
+import de.netbeacon.jstorage.client.buffer.ByteBufferInputStream;
+import de.netbeacon.jstorage.client.buffer.PooledBuffer;
+import de.netbeacon.jstorage.client.codec.JacksonJsonCodec;
+import de.netbeacon.jstorage.client.codec.JsonCodec;
+import de.netbeacon.jstorage.client.mapping.TypeMapper;
 import org.json.JSONObject;
 
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
 /**
  * This class contains the result of a successful request
+ * <br>
+ * The JSONObject is parsed on first access and kept afterwards. Results which are shared between callers
+ * through request coalescing or the cache are parsed on each access instead, so every caller
+ * receives its own JSONObject and modifying it does not affect the other callers or the cache.
+ * <br>
+ * If the client uses a BufferPool the raw bytes of results which are not shared are held in a pooled buffer.
+ * Such results should be released once they are no longer needed.
  */
 public class JStorageResult {
 
-    private byte[] result = new byte[0];
+    private static final ByteBuffer EMPTY = ByteBuffer.allocate(0);
+    private static final JsonCodec DEFAULT_CODEC = new JacksonJsonCodec();
+    private static final TypeMapper DEFAULT_MAPPER = new TypeMapper();
+
+    private final JsonCodec jsonCodec;
+    private final TypeMapper typeMapper;
+    private ByteBuffer result = EMPTY;
+    private PooledBuffer pooledBuffer;
+    private volatile JSONObject jsonObject;
+    private volatile boolean shared;
+
+    /**
+     * Creates a new instance of this class
+     */
+    public JStorageResult(){
+        this(DEFAULT_CODEC);
+    }
+
+    /**
+     * Creates a new instance of this class
+     * @param jsonCodec used to parse the result
+     */
+    public JStorageResult(JsonCodec jsonCodec){
+        this(jsonCodec, DEFAULT_MAPPER);
+    }
 
     /**
      * Creates a new instance of this class
+     * @param jsonCodec used to parse the result
+     * @param typeMapper used to map the result to objects
      */
-    public JStorageResult(){}
+    public JStorageResult(JsonCodec jsonCodec, TypeMapper typeMapper){
+        this.jsonCodec = jsonCodec;
+        this.typeMapper = typeMapper;
+    }
 
     /**
      * Used to add data to this result
-     * @param bytes jsonobject as string as bytes
+     * @param bytes jsonobject as string as utf-8 bytes, will not be copied
      */
     public void setResult(byte[] bytes){
         if(bytes != null && bytes.length > 0){
-            result = bytes;
+            result = ByteBuffer.wrap(bytes);
+            jsonObject = null;
+        }
+    }
+
+    /**
+     * Used to add data held in a pooled buffer to this result
+     * @param pooledBuffer containing the utf-8 bytes between position and limit, will be released with this result
+     */
+    public void setResult(PooledBuffer pooledBuffer){
+        if(!pooledBuffer.buffer().hasRemaining()){
+            pooledBuffer.release();
+            return;
+        }
+        release();
+        this.pooledBuffer = pooledBuffer;
+        this.result = pooledBuffer.buffer().slice();
+        this.jsonObject = null;
+    }
+
+    /**
+     * Returns the pooled buffer holding the raw bytes, if any
+     * <br>
+     * An already parsed JSONObject stays available, the raw bytes are gone afterwards
+     */
+    public void release(){
+        PooledBuffer pooledBuffer = this.pooledBuffer;
+        if(pooledBuffer != null){
+            this.pooledBuffer = null;
+            this.result = EMPTY;
+            pooledBuffer.release();
         }
     }
 
+    /**
+     * Used to mark this result as shared between callers
+     * <br>
+     * The JSONObject will no longer be kept, each call to {@link #getResult()} parses the bytes again
+     */
+    public void setShared(){
+        this.shared = true;
+        this.jsonObject = null;
+    }
+
+    /**
+     * Used to check whether this result is shared between callers
+     * @return boolean
+     */
+    public boolean isShared(){
+        return shared;
+    }
+
+    /**
+     * Used to check whether the raw bytes are held in a pooled buffer
+     * @return boolean
+     */
+    public boolean isPooled(){
+        return pooledBuffer != null;
+    }
+
     /**
      * Can be used to get the raw response bytes
+     * <br>
+     * This is the internal array unless the result is pooled, it should not be modified
      * @return bytes[]
      */
     public byte[] getResultRaw() {
-        return result;
+        byte[] bytes = array();
+        if(bytes == null){
+            bytes = new byte[result.remaining()];
+            result.duplicate().get(bytes);
+        }
+        return bytes;
+    }
+
+    /**
+     * Can be used to get the size of the raw response
+     * @return int
+     */
+    public int getResultSize(){
+        return result.remaining();
+    }
+
+    /**
+     * Can be used to get a read only view of the raw response bytes without copying them
+     * @return ByteBuffer
+     */
+    public ByteBuffer getResultBuffer(){
+        return result.asReadOnlyBuffer();
+    }
+
+    /**
+     * Can be used to read the raw response bytes without copying them
+     * @return InputStream
+     */
+    public InputStream getResultStream(){
+        if(result.hasArray()){
+            return new ByteArrayInputStream(result.array(), result.arrayOffset() + result.position(), result.remaining());
+        }
+        return new ByteBufferInputStream(result);
     }
 
     /**
      * Can be used to get an JSONObject from the bytes
+     * <br>
+     * Parsed on the first call, following calls return the same object.
+     * <br>
+     * Results shared through request coalescing or the cache are parsed again on every call and return a new object,
+     * so each call pays for a full parse. Callers should keep the returned object instead of calling this repeatedly.
      * @return JSONObject
      */
     public JSONObject getResult(){
-        return new JSONObject(new String(result));
+        JSONObject jsonObject = this.jsonObject;
+        if(jsonObject == null){
+            byte[] bytes = array();
+            jsonObject = (bytes != null) ? jsonCodec.decode(bytes) : jsonCodec.decode(result);
+            if(!shared){
+                this.jsonObject = jsonObject;
+            }
+        }
+        return jsonObject;
+    }
+
+    /**
+     * Can be used to map the result to an object without building a JSONObject
+     * <br>
+     * Each call maps the bytes again
+     * @param type of the object, e.g. a class with fields named like the datatypes of a dataset
+     * @param <T> type
+     * @return object or null if the result is empty
+     */
+    public <T> T getResultAs(Class<T> type){
+        return result.hasRemaining() ? typeMapper.read(result, type) : null;
+    }
+
+    /**
+     * Can be used to map a single field of the result to an object without building a JSONObject
+     * <br>
+     * Each call maps the bytes again
+     * @param key name of the field, e.g. the datatype of a DataAction_GetDataType result
+     * @param type of the object
+     * @param <T> type
+     * @return object or null if the field does not exist
+     */
+    public <T> T getResultAs(String key, Class<T> type){
+        return result.hasRemaining() ? typeMapper.read(result, key, type) : null;
+    }
+
+    /**
+     * Internal helper to get the backing array if it contains exactly the result
+     * @return bytes or null
+     */
+    private byte[] array(){
+        ByteBuffer result = this.result;
+        if(result.hasArray() && result.arrayOffset() == 0 && result.position() == 0 && result.remaining() == result.array().length){
+            return result.array();
+        }
+        return null;
     }
 }
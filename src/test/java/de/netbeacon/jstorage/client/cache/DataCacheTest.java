@@ -0,0 +1,186 @@
+/*
+ *     Copyright 2020 Horstexplorer @ https://www.netbeacon.de
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.netbeacon.jstorage.client.cache;
+
+import de.netbeacon.jstorage.client.JStorageClient;
+import de.netbeacon.jstorage.client.notification.objects.notifiation.DataNotification;
+import de.netbeacon.jstorage.client.notification.objects.notifiation.NotificationGap;
+import de.netbeacon.jstorage.client.request.JStorageRequest;
+import de.netbeacon.jstorage.client.request.JStorageRequestBuilder;
+import de.netbeacon.jstorage.client.request.RequestType;
+import de.netbeacon.jstorage.client.result.JStorageResult;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DataCacheTest {
+
+    private static JStorageClient client;
+
+    @BeforeAll
+    static void setup(){
+        // requests are only built, never sent
+        client = JStorageClient.getDevClient("localhost", 1, "token");
+    }
+
+    @AfterAll
+    static void tearDown(){
+        client.shutdown();
+    }
+
+    @Test
+    void putWithCurrentEpochIsCached(){
+        DataCache dataCache = new DataCache(1024 * 1024, 100, 60000);
+        JStorageRequest request = request("db", "table", "dataset");
+        JStorageResult result = result();
+        dataCache.put(request, result, dataCache.getEpoch());
+        assertSame(result, dataCache.get(request));
+    }
+
+    @Test
+    void putAfterInvalidationIsDropped(){
+        DataCache dataCache = new DataCache(1024 * 1024, 100, 60000);
+        JStorageRequest request = request("db", "table", "dataset");
+        long epoch = dataCache.getEpoch();
+        // the result may have been read before the change the notification is about
+        dataCache.onNotification(new DataNotification(DataNotification.Content.updated, 1, "db", "table", "dataset", null));
+        dataCache.put(request, result(), epoch);
+        assertNull(dataCache.get(request));
+    }
+
+    @Test
+    void putRacingInvalidationNeverSurvivesIt() throws InterruptedException {
+        DataCache dataCache = new DataCache(1024 * 1024, 100, 60000);
+        JStorageRequest request = request("db", "table", "dataset");
+        for(int i = 0; i < 2000; i++){
+            long epoch = dataCache.getEpoch();
+            Thread invalidator = new Thread(() -> dataCache.invalidate("db", "table", "dataset"));
+            invalidator.start();
+            dataCache.put(request, result(), epoch);
+            invalidator.join();
+            // whichever ran first, the entry must not outlive the invalidation
+            assertNull(dataCache.get(request), "iteration "+i);
+        }
+    }
+
+    @Test
+    void putAfterUnrelatedInvalidationIsCached(){
+        DataCache dataCache = new DataCache(1024 * 1024, 100, 60000);
+        JStorageRequest request = request("db", "table", "dataset");
+        long epoch = dataCache.getEpoch();
+        dataCache.invalidate("db", "table", "other");
+        dataCache.invalidate("db", "tables");
+        dataCache.invalidate("otherdb");
+        JStorageResult result = result();
+        dataCache.put(request, result, epoch);
+        assertSame(result, dataCache.get(request));
+    }
+
+    @Test
+    void putAfterOverlappingInvalidationIsDropped(){
+        DataCache dataCache = new DataCache(1024 * 1024, 100, 60000);
+        JStorageRequest request = request("db", "table", "dataset");
+        long epoch = dataCache.getEpoch();
+        dataCache.invalidate("DB");
+        dataCache.invalidate("otherdb");
+        dataCache.put(request, result(), epoch);
+        assertNull(dataCache.get(request));
+        epoch = dataCache.getEpoch();
+        dataCache.invalidateAll();
+        dataCache.put(request, result(), epoch);
+        assertNull(dataCache.get(request));
+        epoch = dataCache.getEpoch();
+        // a datatype is part of the dataset
+        dataCache.invalidate("db", "table", "dataset", "datatype");
+        dataCache.put(request, result(), epoch);
+        assertNull(dataCache.get(request));
+    }
+
+    @Test
+    void putIsDroppedOnceInvalidationsAreNoLongerLogged(){
+        DataCache dataCache = new DataCache(1024 * 1024, 100, 60000);
+        JStorageRequest request = request("db", "table", "dataset");
+        long epoch = dataCache.getEpoch();
+        for(int i = 0; i < 2000; i++){
+            dataCache.invalidate("otherdb", "table"+i);
+        }
+        dataCache.put(request, result(), epoch);
+        assertNull(dataCache.get(request));
+    }
+
+    @Test
+    void invalidationCoversEntriesBelowTheScope(){
+        DataCache dataCache = new DataCache(1024 * 1024, 100, 60000);
+        JStorageRequest inScope = request("db", "table", "dataset");
+        JStorageRequest otherTable = request("db", "other", "dataset");
+        dataCache.put(inScope, result(), dataCache.getEpoch());
+        dataCache.put(otherTable, result(), dataCache.getEpoch());
+        dataCache.invalidate("DB", "Table");
+        assertNull(dataCache.get(inScope));
+        assertNotNull(dataCache.get(otherTable));
+    }
+
+    @Test
+    void gapOnlyInvalidatesItsScope(){
+        DataCache dataCache = new DataCache(1024 * 1024, 100, 60000);
+        JStorageRequest inScope = request("db", "table", "dataset");
+        JStorageRequest outOfScope = request("otherdb", "table", "dataset");
+        dataCache.put(inScope, result(), dataCache.getEpoch());
+        dataCache.put(outOfScope, result(), dataCache.getEpoch());
+        HashMap<String, List<String>> scope = new HashMap<>();
+        scope.put("db", new ArrayList<>(List.of("table")));
+        dataCache.onGap(new NotificationGap(1, 1, 2, scope));
+        assertNull(dataCache.get(inScope));
+        assertNotNull(dataCache.get(outOfScope));
+    }
+
+    @Test
+    void evictsLeastRecentlyUsedOverMaxEntries(){
+        DataCache dataCache = new DataCache(1024 * 1024, 2, 60000);
+        JStorageRequest first = request("db", "table", "first");
+        JStorageRequest second = request("db", "table", "second");
+        JStorageRequest third = request("db", "table", "third");
+        dataCache.put(first, result(), dataCache.getEpoch());
+        dataCache.put(second, result(), dataCache.getEpoch());
+        dataCache.get(first);
+        dataCache.put(third, result(), dataCache.getEpoch());
+        assertNotNull(dataCache.get(first));
+        assertNull(dataCache.get(second));
+        assertNotNull(dataCache.get(third));
+    }
+
+    private static JStorageRequest request(String database, String table, String dataset){
+        return new JStorageRequestBuilder(client, RequestType.DataAction_GetDataSet)
+                .setArg("database", database)
+                .setArg("table", table)
+                .setArg("identifier", dataset)
+                .build();
+    }
+
+    private static JStorageResult result(){
+        JStorageResult result = new JStorageResult();
+        result.setResult("{\"dataset\":{}}".getBytes(StandardCharsets.UTF_8));
+        return result;
+    }
+}
@@ -0,0 +1,56 @@
+/*
+ *     Copyright 2020 Horstexplorer @ https://www.netbeacon.de
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.netbeacon.jstorage.client.codec;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JacksonJsonCodecTest {
+
+    private final JsonCodec jacksonJsonCodec = new JacksonJsonCodec();
+    private final JsonCodec orgJsonCodec = new OrgJsonCodec();
+
+    @Test
+    void floatIsWrittenLikeOrgJson(){
+        JSONObject jsonObject = new JSONObject().put("float", 0.1f).put("double", 0.1d);
+        assertEquals(new String(orgJsonCodec.encode(jsonObject), StandardCharsets.UTF_8), new String(jacksonJsonCodec.encode(jsonObject), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void duplicateKeyIsRejectedLikeOrgJson(){
+        byte[] bytes = "{\"key\":1,\"key\":2}".getBytes(StandardCharsets.UTF_8);
+        assertThrows(JSONException.class, () -> orgJsonCodec.decode(bytes));
+        assertThrows(JSONException.class, () -> jacksonJsonCodec.decode(bytes));
+    }
+
+    @Test
+    void duplicateKeyInNestedObjectIsRejected(){
+        byte[] bytes = "{\"datatype\":{\"key\":1,\"key\":2}}".getBytes(StandardCharsets.UTF_8);
+        assertThrows(JSONException.class, () -> jacksonJsonCodec.decode(bytes));
+    }
+
+    @Test
+    void decodesLikeOrgJson(){
+        byte[] bytes = "{\"int\":1,\"long\":12345678901,\"double\":0.1,\"negativeZero\":-0,\"big\":123456789012345678901234567890,\"null\":null,\"array\":[true,\"s\",{}]}".getBytes(StandardCharsets.UTF_8);
+        assertEquals(orgJsonCodec.decode(bytes).toString(), jacksonJsonCodec.decode(bytes).toString());
+    }
+}
@@ -0,0 +1,89 @@
+/*
+ *     Copyright 2020 Horstexplorer @ https://www.netbeacon.de
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package de.netbeacon.jstorage.client.interceptor;
+
+import de.netbeacon.jstorage.client.metrics.DefaultMetricsCollector;
+import okhttp3.*;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.SocketTimeoutException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ConcurrencyLimitInterceptorTest {
+
+    private final DefaultMetricsCollector metricsCollector = new DefaultMetricsCollector();
+    private final ConcurrencyLimitInterceptor concurrencyLimitInterceptor = new ConcurrencyLimitInterceptor(new Dispatcher(), 100, 1, 200);
+
+    ConcurrencyLimitInterceptorTest(){
+        concurrencyLimitInterceptor.setMetricsCollector(metricsCollector);
+    }
+
+    @Test
+    void serviceUnavailableDecreasesTheLimit() throws IOException {
+        respond(503);
+        assertEquals(90, concurrencyLimitInterceptor.getLimit());
+        assertEquals(90, metricsCollector.getConcurrencyLimit());
+    }
+
+    @Test
+    void tooManyRequestsKeepsTheLimit() throws IOException {
+        respond(429);
+        assertEquals(100, concurrencyLimitInterceptor.getLimit());
+        assertEquals(100, metricsCollector.getConcurrencyLimit());
+    }
+
+    @Test
+    void timeoutDecreasesTheLimit(){
+        assertThrows(SocketTimeoutException.class, () -> fail(new SocketTimeoutException("timeout")));
+        assertEquals(90, concurrencyLimitInterceptor.getLimit());
+        assertEquals(90, metricsCollector.getConcurrencyLimit());
+    }
+
+    @Test
+    void otherFailuresKeepTheLimit(){
+        assertThrows(IOException.class, () -> fail(new IOException("connection reset")));
+        assertEquals(100, concurrencyLimitInterceptor.getLimit());
+        assertEquals(100, metricsCollector.getConcurrencyLimit());
+    }
+
+    private void respond(int code) throws IOException {
+        OkHttpClient okHttpClient = new OkHttpClient.Builder()
+                .addInterceptor(concurrencyLimitInterceptor)
+                .addInterceptor(chain -> new Response.Builder()
+                        .request(chain.request())
+                        .protocol(Protocol.HTTP_1_1)
+                        .code(code)
+                        .message("")
+                        .body(ResponseBody.create("", null))
+                        .build())
+                .build();
+        okHttpClient.newCall(new Request.Builder().url("http://localhost:1/").build()).execute().close();
+    }
+
+    private void fail(IOException exception) throws IOException {
+        OkHttpClient okHttpClient = new OkHttpClient.Builder()
+                .addInterceptor(concurrencyLimitInterceptor)
+                .addInterceptor(chain -> {
+                    throw exception;
+                })
+                .build();
+        okHttpClient.newCall(new Request.Builder().url("http://localhost:1/").build()).execute();
+    }
+}
@@ -0,0 +1,65 @@
+/*
+ *     Copyright 2020 Horstexplorer @ https://www.netbeacon.de
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package de.netbeacon.jstorage.client.interceptor;
+
+import de.netbeacon.jstorage.client.JStorageClient;
+import de.netbeacon.jstorage.client.metrics.DefaultMetricsCollector;
+import de.netbeacon.jstorage.client.request.RequestType;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MetricsInterceptorTest {
+
+    private JStorageClient client;
+    private DefaultMetricsCollector metricsCollector;
+
+    @BeforeEach
+    void setup(){
+        // requests never reach the network
+        client = JStorageClient.getDevClient("localhost", 1, "token");
+        metricsCollector = new DefaultMetricsCollector();
+        client.setMetricsCollector(metricsCollector);
+    }
+
+    @AfterEach
+    void tearDown(){
+        client.shutdown();
+    }
+
+    @Test
+    void runtimeExceptionEndsTheRequest(){
+        OkHttpClient okHttpClient = new OkHttpClient.Builder()
+                .addInterceptor(new MetricsInterceptor(client))
+                .addInterceptor(chain -> {
+                    throw new IllegalStateException("failed");
+                })
+                .build();
+        Request request = new Request.Builder()
+                .url("http://localhost:1/")
+                .tag(RequestType.class, RequestType.InfoAction_Basic)
+                .build();
+        assertThrows(IllegalStateException.class, () -> okHttpClient.newCall(request).execute());
+        assertEquals(0, metricsCollector.getInFlight(RequestType.InfoAction_Basic));
+        assertEquals(1, metricsCollector.getRequests(RequestType.InfoAction_Basic));
+    }
+}
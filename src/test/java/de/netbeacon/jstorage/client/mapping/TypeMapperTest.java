@@ -0,0 +1,159 @@
+/*
+ *     Copyright 2020 Horstexplorer @ https://www.netbeacon.de
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package de.netbeacon.jstorage.client.mapping;
+
+import org.json.JSONException;
+import org.junit.jupiter.api.Test;
+
+import javax.tools.JavaCompiler;
+import javax.tools.ToolProvider;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+class TypeMapperTest {
+
+    private final TypeMapper typeMapper = new TypeMapper();
+
+    static class Fields {
+        int x;
+        String y;
+        String z;
+    }
+
+    static class Primitives {
+        int i = 1;
+        long l = 2;
+        double d = 3;
+        boolean b = true;
+        char c = 'c';
+        byte by = 4;
+        short s = 5;
+    }
+
+    static class Collections {
+        List<Integer> ints;
+        Set<String> tags;
+        Map<String, Long> counts;
+        int[] values;
+        List<Fields> nested;
+    }
+
+    private static byte[] bytes(String json){
+        return json.getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Test
+    void nestedObjectIsNotReadIntoScalar(){
+        assertThrows(JSONException.class, () -> typeMapper.read(bytes("{\"x\":{\"y\":\"inner\"},\"y\":\"outer\",\"z\":\"zz\"}"), Fields.class));
+        assertThrows(JSONException.class, () -> typeMapper.read(bytes("{\"y\":[\"inner\"],\"z\":\"zz\"}"), Fields.class));
+    }
+
+    @Test
+    void unknownNestedValuesAreSkipped(){
+        Fields fields = typeMapper.read(bytes("{\"unknown\":{\"y\":\"inner\",\"z\":[{\"z\":\"inner\"}]},\"x\":1,\"y\":\"outer\",\"z\":\"zz\"}"), Fields.class);
+        assertEquals(1, fields.x);
+        assertEquals("outer", fields.y);
+        assertEquals("zz", fields.z);
+    }
+
+    @Test
+    void typeMismatchIsRejected(){
+        assertThrows(JSONException.class, () -> typeMapper.read(bytes("{\"x\":\"1\"}"), Fields.class));
+        assertThrows(JSONException.class, () -> typeMapper.read(bytes("{\"x\":1.5}"), Fields.class));
+        assertThrows(JSONException.class, () -> typeMapper.read(bytes("{\"x\":true}"), Fields.class));
+        assertThrows(JSONException.class, () -> typeMapper.read(bytes("{\"y\":1}"), Fields.class));
+        assertThrows(JSONException.class, () -> typeMapper.read(bytes("{\"b\":\"true\"}"), Primitives.class));
+        assertThrows(JSONException.class, () -> typeMapper.read(bytes("{\"by\":128}"), Primitives.class));
+        assertThrows(JSONException.class, () -> typeMapper.read(bytes("{\"i\":12345678901}"), Primitives.class));
+        assertThrows(JSONException.class, () -> typeMapper.read(bytes("[1]"), Fields.class));
+    }
+
+    @Test
+    void numbersAreWidened(){
+        Primitives primitives = typeMapper.read(bytes("{\"d\":7,\"l\":8,\"by\":-128,\"s\":-9}"), Primitives.class);
+        assertEquals(7d, primitives.d);
+        assertEquals(8L, primitives.l);
+        assertEquals(-128, primitives.by);
+        assertEquals(-9, primitives.s);
+    }
+
+    @Test
+    void nullKeepsDefaultOfPrimitives(){
+        Primitives primitives = typeMapper.read(bytes("{\"i\":null,\"l\":null,\"d\":null,\"b\":null,\"c\":null,\"by\":null,\"s\":null}"), Primitives.class);
+        assertEquals(1, primitives.i);
+        assertEquals(2L, primitives.l);
+        assertEquals(3d, primitives.d);
+        assertTrue(primitives.b);
+        assertEquals('c', primitives.c);
+        assertEquals(4, primitives.by);
+        assertEquals(5, primitives.s);
+        assertNull(typeMapper.read(bytes("{\"y\":null}"), Fields.class).y);
+    }
+
+    @Test
+    void readsCollections(){
+        Collections collections = typeMapper.read(bytes("{\"ints\":[1,null,3],\"tags\":[\"a\",\"b\",\"a\"],\"counts\":{\"a\":1,\"b\":2},\"values\":[1,null,3],\"nested\":[{\"x\":1},{\"y\":\"y\"}]}"), Collections.class);
+        assertEquals(java.util.Arrays.asList(1, null, 3), collections.ints);
+        assertEquals(Set.of("a", "b"), collections.tags);
+        assertEquals(Map.of("a", 1L, "b", 2L), collections.counts);
+        assertArrayEquals(new int[]{1, 0, 3}, collections.values);
+        assertEquals(2, collections.nested.size());
+        assertEquals(1, collections.nested.get(0).x);
+        assertEquals("y", collections.nested.get(1).y);
+    }
+
+    @Test
+    void mismatchInCollectionIsRejected(){
+        assertThrows(JSONException.class, () -> typeMapper.read(bytes("{\"ints\":[1,\"2\"]}"), Collections.class));
+        assertThrows(JSONException.class, () -> typeMapper.read(bytes("{\"ints\":[[1]]}"), Collections.class));
+        assertThrows(JSONException.class, () -> typeMapper.read(bytes("{\"ints\":{\"a\":1}}"), Collections.class));
+        assertThrows(JSONException.class, () -> typeMapper.read(bytes("{\"counts\":{\"a\":{\"b\":1}}}"), Collections.class));
+        assertThrows(JSONException.class, () -> typeMapper.read(bytes("{\"values\":[1.5]}"), Collections.class));
+    }
+
+    @Test
+    void readsRecords() throws Exception {
+        assumeTrue(Runtime.version().feature() >= 16, "records need java 16");
+        JavaCompiler javaCompiler = ToolProvider.getSystemJavaCompiler();
+        assumeTrue(javaCompiler != null, "no compiler available");
+        // the tests are compiled for java 13, the record is compiled at runtime
+        Path directory = Files.createTempDirectory("records");
+        Path source = directory.resolve("Point.java");
+        Files.writeString(source, "public record Point(int x, String label, java.util.List<Integer> values){}");
+        assertEquals(0, javaCompiler.run(null, null, null, "-d", directory.toString(), source.toString()));
+        try(URLClassLoader classLoader = new URLClassLoader(new URL[]{directory.toUri().toURL()})){
+            Class<?> type = classLoader.loadClass("Point");
+            Object point = typeMapper.read(bytes("{\"unknown\":{\"x\":5},\"label\":\"a\",\"x\":null,\"values\":[1,2]}"), type);
+            assertEquals(0, type.getMethod("x").invoke(point));
+            assertEquals("a", type.getMethod("label").invoke(point));
+            assertEquals(List.of(1, 2), type.getMethod("values").invoke(point));
+            assertEquals(7, type.getMethod("x").invoke(typeMapper.read(bytes("{\"x\":7}"), type)));
+            assertThrows(JSONException.class, () -> typeMapper.read(bytes("{\"x\":{\"y\":1},\"label\":\"a\"}"), type));
+            assertThrows(JSONException.class, () -> typeMapper.read(bytes("{\"label\":2}"), type));
+        }
+    }
+}
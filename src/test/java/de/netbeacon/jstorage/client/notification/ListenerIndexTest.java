@@ -0,0 +1,249 @@
+/*
+ *     Copyright 2020 Horstexplorer @ https://www.netbeacon.de
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.netbeacon.jstorage.client.notification;
+
+import de.netbeacon.jstorage.client.JStorageClient;
+import de.netbeacon.jstorage.client.notification.objects.listener.ListenerQueue;
+import de.netbeacon.jstorage.client.notification.objects.listener.NotificationListener;
+import de.netbeacon.jstorage.client.notification.objects.notifiation.DataNotification;
+import de.netbeacon.jstorage.client.notification.objects.notifiation.NotificationGap;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ListenerIndexTest {
+
+    @Test
+    void notificationReachesItsScopeAndTheScopesAbove(){
+        ListenerIndex listenerIndex = new ListenerIndex();
+        Recorder all = add(listenerIndex);
+        Recorder database = add(listenerIndex, "db");
+        Recorder table = add(listenerIndex, "db", "table");
+        Recorder dataset = add(listenerIndex, "db", "table", "dataset");
+        Recorder otherDataset = add(listenerIndex, "db", "table", "other");
+        Recorder otherDatabase = add(listenerIndex, "other");
+        DataNotification dataNotification = notification("db", "table", "dataset");
+        assertTrue(listenerIndex.dispatch(dataNotification));
+        listenerIndex.deliver(dataNotification);
+        assertEquals(1, all.received.size());
+        assertEquals(1, database.received.size());
+        assertEquals(1, table.received.size());
+        assertEquals(1, dataset.received.size());
+        assertEquals(0, otherDataset.received.size());
+        assertEquals(0, otherDatabase.received.size());
+    }
+
+    @Test
+    void notificationOfTableReachesAllDatasetsBelow(){
+        ListenerIndex listenerIndex = new ListenerIndex();
+        Recorder dataset = add(listenerIndex, "db", "table", "dataset");
+        Recorder otherDataset = add(listenerIndex, "db", "table", "other");
+        Recorder otherTable = add(listenerIndex, "db", "other", "dataset");
+        DataNotification dataNotification = notification("db", "table", null);
+        listenerIndex.deliver(dataNotification);
+        assertEquals(1, dataset.received.size());
+        assertEquals(1, otherDataset.received.size());
+        assertEquals(0, otherTable.received.size());
+    }
+
+    @Test
+    void scopeIsCaseInsensitive(){
+        ListenerIndex listenerIndex = new ListenerIndex();
+        Recorder dataset = add(listenerIndex, "DB", "Table", "dataset");
+        listenerIndex.deliver(notification("db", "TABLE", "Dataset"));
+        assertEquals(1, dataset.received.size());
+    }
+
+    @Test
+    void dispatchReportsSharedListenersOnlyWithinScope(){
+        ListenerIndex listenerIndex = new ListenerIndex();
+        add(listenerIndex, "db", "table", "dataset");
+        assertFalse(listenerIndex.dispatch(notification("db", "table", "other")));
+        assertFalse(listenerIndex.dispatch(notification("other", "table", "dataset")));
+        assertTrue(listenerIndex.dispatch(notification("db", null, null)));
+    }
+
+    @Test
+    void heartbeatOnlyReachesUnscopedListeners(){
+        ListenerIndex listenerIndex = new ListenerIndex();
+        Recorder database = add(listenerIndex, "db");
+        assertFalse(listenerIndex.hasUnscopedListeners());
+        Recorder all = add(listenerIndex);
+        assertTrue(listenerIndex.hasUnscopedListeners());
+        listenerIndex.deliver(new DataNotification(DataNotification.Content.heartbeat, 1, null, null, null, null));
+        assertEquals(1, all.received.size());
+        assertEquals(0, database.received.size());
+    }
+
+    @Test
+    void gapReachesScopesWithinIt(){
+        ListenerIndex listenerIndex = new ListenerIndex();
+        Recorder all = add(listenerIndex);
+        Recorder table = add(listenerIndex, "db", "table");
+        Recorder dataset = add(listenerIndex, "db", "table", "dataset");
+        Recorder otherTable = add(listenerIndex, "db", "other");
+        Recorder otherDatabase = add(listenerIndex, "other");
+        HashMap<String, List<String>> scope = new HashMap<>();
+        scope.put("DB", List.of("Table"));
+        NotificationGap notificationGap = new NotificationGap(-1, 0, 0, scope);
+        assertTrue(listenerIndex.dispatch(notificationGap));
+        listenerIndex.deliver(notificationGap);
+        assertEquals(1, all.gaps.size());
+        assertEquals(1, table.gaps.size());
+        assertEquals(1, dataset.gaps.size());
+        assertEquals(0, otherTable.gaps.size());
+        assertEquals(0, otherDatabase.gaps.size());
+    }
+
+    @Test
+    void failingListenerDoesNotAffectOthers(){
+        ListenerIndex listenerIndex = new ListenerIndex();
+        listenerIndex.add((NotificationListener) dataNotification -> {
+            throw new IllegalStateException("test");
+        }, "db");
+        Recorder recorder = add(listenerIndex, "db");
+        listenerIndex.deliver(notification("db", "table", "dataset"));
+        assertEquals(1, recorder.received.size());
+    }
+
+    @Test
+    void removingLastListenerPrunesScopes(){
+        ListenerIndex listenerIndex = new ListenerIndex();
+        Recorder dataset = add(listenerIndex, "db", "table", "dataset");
+        Recorder otherDataset = add(listenerIndex, "db", "table", "other");
+        assertEquals(4, listenerIndex.getScopeCount());
+        assertTrue(listenerIndex.remove(dataset));
+        assertEquals(3, listenerIndex.getScopeCount());
+        assertTrue(listenerIndex.remove(otherDataset));
+        assertEquals(0, listenerIndex.getScopeCount());
+        assertFalse(listenerIndex.remove(otherDataset));
+        assertFalse(listenerIndex.hasSharedListeners());
+    }
+
+    @Test
+    void removingSharedListenerRemovesAllItsScopes(){
+        ListenerIndex listenerIndex = new ListenerIndex();
+        Recorder recorder = new Recorder();
+        listenerIndex.add(recorder, "db", "table");
+        listenerIndex.add(recorder, "other");
+        ListenerQueue listenerQueue = new ListenerQueue(new Recorder(), 16, ListenerQueue.OverflowPolicy.BLOCK);
+        listenerIndex.add(listenerQueue, "db");
+        assertEquals(3, listenerIndex.getScopeCount());
+        assertTrue(listenerIndex.remove(recorder));
+        assertEquals(1, listenerIndex.getScopeCount());
+        assertTrue(listenerIndex.remove(listenerQueue));
+        assertEquals(0, listenerIndex.getScopeCount());
+        listenerQueue.shutdown();
+    }
+
+    @Test
+    void listenerQueueReceivesNotificationsOfItsScope() throws InterruptedException {
+        ListenerIndex listenerIndex = new ListenerIndex();
+        CountDownLatch latch = new CountDownLatch(1);
+        List<DataNotification> received = new CopyOnWriteArrayList<>();
+        ListenerQueue listenerQueue = new ListenerQueue(dataNotification -> {
+            received.add(dataNotification);
+            latch.countDown();
+        }, 16, ListenerQueue.OverflowPolicy.BLOCK);
+        listenerIndex.add(listenerQueue, "db", "table");
+        assertFalse(listenerIndex.dispatch(notification("other", "table", "dataset")));
+        assertFalse(listenerIndex.dispatch(notification("db", "table", "dataset")));
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+        listenerQueue.shutdown();
+        assertEquals(1, received.size());
+        assertEquals("db", received.get(0).getDatabase());
+    }
+
+    @Test
+    void scopedSubscriptionsShareOneQueue() throws InterruptedException {
+        JStorageClient client = JStorageClient.getDevClient("localhost", 1, "token");
+        try{
+            NotificationManager notificationManager = new NotificationManager(client);
+            List<Recorder> recorders = new ArrayList<>();
+            ListenerQueue sharedQueue = null;
+            for(int i = 0; i < 100; i++){
+                Recorder recorder = new Recorder();
+                recorders.add(recorder);
+                ListenerQueue listenerQueue = notificationManager.subscribe(recorder, "db", "table", "dataset"+i);
+                assertTrue(sharedQueue == null || sharedQueue == listenerQueue);
+                sharedQueue = listenerQueue;
+            }
+            assertEquals(1, notificationManager.getListenerQueues().size());
+            notificationManager.dispatchNotification(notification("db", "table", "dataset7"));
+            assertTrue(recorders.get(7).latch.await(5, TimeUnit.SECONDS));
+            for(Recorder recorder : recorders){
+                notificationManager.removeNotificationListener(recorder);
+            }
+            assertEquals(0, notificationManager.getListenerQueues().size());
+            assertEquals(1, recorders.get(7).received.size());
+            assertEquals(0, recorders.get(8).received.size());
+        }finally {
+            client.shutdown();
+        }
+    }
+
+    @Test
+    void listenerWithCapacityGetsOwnQueue(){
+        JStorageClient client = JStorageClient.getDevClient("localhost", 1, "token");
+        try{
+            NotificationManager notificationManager = new NotificationManager(client);
+            ListenerQueue sharedQueue = notificationManager.subscribe(new Recorder(), "db");
+            ListenerQueue listenerQueue = notificationManager.subscribe(new Recorder(), 16, ListenerQueue.OverflowPolicy.DROP_OLDEST, "db");
+            assertNotSame(sharedQueue, listenerQueue);
+            assertEquals(2, notificationManager.getListenerQueues().size());
+            notificationManager.clearNotificationListener();
+            assertEquals(0, notificationManager.getListenerQueues().size());
+        }finally {
+            client.shutdown();
+        }
+    }
+
+    private static Recorder add(ListenerIndex listenerIndex, String... scope){
+        Recorder recorder = new Recorder();
+        listenerIndex.add(recorder, scope);
+        return recorder;
+    }
+
+    private static DataNotification notification(String database, String table, String dataset){
+        return new DataNotification(DataNotification.Content.updated, 1, database, table, dataset, null);
+    }
+
+    private static class Recorder implements NotificationListener {
+
+        private final List<DataNotification> received = new CopyOnWriteArrayList<>();
+        private final List<NotificationGap> gaps = new CopyOnWriteArrayList<>();
+        private final CountDownLatch latch = new CountDownLatch(1);
+
+        @Override
+        public void onNotification(DataNotification dataNotification){
+            received.add(dataNotification);
+            latch.countDown();
+        }
+
+        @Override
+        public void onGap(NotificationGap notificationGap){
+            gaps.add(notificationGap);
+        }
+    }
+}
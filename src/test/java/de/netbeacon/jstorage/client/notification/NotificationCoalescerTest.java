@@ -0,0 +1,173 @@
+/*
+ *     Copyright 2020 Horstexplorer @ https://www.netbeacon.de
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.netbeacon.jstorage.client.notification;
+
+import de.netbeacon.jstorage.client.notification.objects.notifiation.DataNotification;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+
+import static de.netbeacon.jstorage.client.notification.objects.notifiation.DataNotification.Content.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+class NotificationCoalescerTest {
+
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+
+    @AfterEach
+    void tearDown(){
+        scheduler.shutdownNow();
+    }
+
+    @Test
+    void sameDatatypeKeepsLastContent(){
+        assertMerged(updated, "a", notification(created, "a"), notification(updated, "a"));
+        assertMerged(deleted, "a", notification(updated, "a"), notification(deleted, "a"));
+        assertMerged(deleted, "a", notification(created, "a"), notification(deleted, "a"));
+    }
+
+    @Test
+    void updateDoesNotHideDeletion(){
+        assertMerged(deleted, "a", notification(deleted, "a"), notification(updated, "a"));
+        assertMerged(deleted, null, notification(deleted, null), notification(updated, null));
+    }
+
+    @Test
+    void creationOverridesDeletion(){
+        assertMerged(created, "a", notification(deleted, "a"), notification(created, "a"));
+        assertMerged(created, null, notification(deleted, null), notification(created, null));
+    }
+
+    @Test
+    void differentDatatypesWidenToDatasetUpdate(){
+        assertMerged(updated, null, notification(deleted, "a"), notification(updated, "b"));
+        assertMerged(updated, null, notification(updated, "a"), notification(deleted, "b"));
+        assertMerged(updated, null, notification(created, "a"), notification(created, "b"));
+    }
+
+    @Test
+    void datasetDeletionIsKeptWhenWidening(){
+        assertMerged(deleted, null, notification(updated, "a"), notification(deleted, null));
+        assertMerged(deleted, null, notification(deleted, null), notification(deleted, "b"));
+        assertMerged(deleted, null, notification(deleted, null), notification(updated, "b"));
+        assertMerged(updated, null, notification(deleted, null), notification(created, "b"));
+    }
+
+    @Test
+    void datasetNotificationCoversEarlierDatatype(){
+        assertMerged(updated, null, notification(deleted, "a"), notification(updated, null));
+        assertMerged(created, null, notification(updated, "a"), notification(created, null));
+    }
+
+    @Test
+    void mergedNotificationCarriesLastTimestamp(){
+        DataNotification merged = NotificationCoalescer.merge(
+                new DataNotification(deleted, 1, "db", "table", "dataset", "a"),
+                new DataNotification(updated, 2, "db", "table", "dataset", "b"));
+        assertEquals(2, merged.getTimestamp());
+        assertEquals("db", merged.getDatabase());
+        assertEquals("table", merged.getTable());
+        assertEquals("dataset", merged.getDataset());
+    }
+
+    @Test
+    void windowSuppressesAndOrdersByLastChange(){
+        List<DataNotification> received = new ArrayList<>();
+        NotificationCoalescer coalescer = new NotificationCoalescer(received::add, 60000, scheduler);
+        try{
+            coalescer.submit(new DataNotification(updated, 1, "db", "table", "first", null));
+            coalescer.submit(new DataNotification(updated, 2, "db", "table", "second", null));
+            coalescer.submit(new DataNotification(updated, 3, "db", "table", "first", null));
+            coalescer.submit(new DataNotification(heartbeat, 4, null, null, null, null));
+            assertEquals(1, received.size());
+            assertEquals(2, coalescer.getPending());
+            coalescer.flush();
+        }finally {
+            coalescer.shutdown();
+        }
+        assertEquals(3, received.size());
+        assertEquals(heartbeat, received.get(0).getContent());
+        assertEquals("second", received.get(1).getDataset());
+        assertEquals("first", received.get(2).getDataset());
+        assertEquals(3, received.get(2).getTimestamp());
+        assertEquals(3, coalescer.getReceived());
+        assertEquals(1, coalescer.getSuppressed());
+    }
+
+    @Test
+    void windowIsFlushedAfterItsTime() throws InterruptedException {
+        List<DataNotification> received = new ArrayList<>();
+        NotificationCoalescer coalescer = new NotificationCoalescer(dataNotification -> {
+            synchronized (received){
+                received.add(dataNotification);
+                received.notifyAll();
+            }
+        }, 10, scheduler);
+        try{
+            coalescer.submit(new DataNotification(updated, 1, "db", "table", "dataset", null));
+            synchronized (received){
+                long until = System.currentTimeMillis() + 5000;
+                while(received.isEmpty() && System.currentTimeMillis() < until){
+                    received.wait(until - System.currentTimeMillis());
+                }
+            }
+            assertEquals(1, received.size());
+        }finally {
+            coalescer.shutdown();
+        }
+    }
+
+    @Test
+    void submitAfterShutdownIsPassedOnBehindPending(){
+        List<DataNotification> received = new ArrayList<>();
+        NotificationCoalescer coalescer = new NotificationCoalescer(received::add, 60000, scheduler);
+        coalescer.submit(new DataNotification(updated, 1, "db", "table", "first", null));
+        coalescer.shutdown();
+        coalescer.submit(new DataNotification(updated, 2, "db", "table", "second", null));
+        coalescer.submit(new DataNotification(updated, 3, "db", "table", "second", null));
+        assertEquals(3, received.size());
+        assertEquals("first", received.get(0).getDataset());
+        assertEquals(3, received.get(2).getTimestamp());
+        assertEquals(0, coalescer.getPending());
+        assertFalse(scheduler.isShutdown());
+    }
+
+    @Test
+    void rejectedFlushPassesOnInsteadOfHoldingBack(){
+        List<DataNotification> received = new ArrayList<>();
+        scheduler.shutdown();
+        NotificationCoalescer coalescer = new NotificationCoalescer(received::add, 60000, scheduler);
+        coalescer.submit(new DataNotification(updated, 1, "db", "table", "first", null));
+        coalescer.submit(new DataNotification(updated, 2, "db", "table", "first", null));
+        assertEquals(2, received.size());
+        assertEquals(0, coalescer.getPending());
+    }
+
+    private static DataNotification notification(DataNotification.Content content, String datatype){
+        return new DataNotification(content, 1, "db", "table", "dataset", datatype);
+    }
+
+    private static void assertMerged(DataNotification.Content content, String datatype, DataNotification previous, DataNotification next){
+        DataNotification merged = NotificationCoalescer.merge(previous, next);
+        assertEquals(content, merged.getContent());
+        assertEquals(datatype, merged.getDatatype());
+    }
+}
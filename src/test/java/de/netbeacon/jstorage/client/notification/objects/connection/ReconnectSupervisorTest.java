@@ -0,0 +1,72 @@
+/*
+ *     Copyright 2020 Horstexplorer @ https://www.netbeacon.de
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.netbeacon.jstorage.client.notification.objects.connection;
+
+import de.netbeacon.jstorage.client.JStorageClient;
+import de.netbeacon.jstorage.client.notification.NotificationManager;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.util.HashMap;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ReconnectSupervisorTest {
+
+    @Test
+    void delayNeverExceedsMaxDelay(){
+        ReconnectSupervisor reconnectSupervisor = new ReconnectSupervisor(null, null, null);
+        reconnectSupervisor.setBackoff(100, 1000);
+        for(int attempt = 0; attempt < 20; attempt++){
+            for(int i = 0; i < 100; i++){
+                long delay = reconnectSupervisor.delay(attempt);
+                assertTrue(delay <= 1000, "Attempt "+attempt+" Delay "+delay);
+                assertTrue(delay >= Math.min(1000, 100L << attempt), "Attempt "+attempt+" Delay "+delay);
+            }
+        }
+    }
+
+    @Test
+    void failedFirstConnectIsRetried() throws IOException, InterruptedException {
+        int port;
+        try(ServerSocket serverSocket = new ServerSocket(0)){
+            // nothing is listening on this port afterwards
+            port = serverSocket.getLocalPort();
+        }
+        JStorageClient client = JStorageClient.getDevClient("localhost", 1, "token");
+        NotificationManager notificationManager = new NotificationManager(client);
+        try{
+            notificationManager.setReconnectBackoff(10, 20);
+            assertFalse(notificationManager.start(new HashMap<>(), port, true));
+            ReconnectSupervisor reconnectSupervisor = notificationManager.getNotificationConnection().getReconnectSupervisor();
+            long deadline = System.currentTimeMillis() + 5000;
+            while(reconnectSupervisor.getFailedAttempts() < 2 && System.currentTimeMillis() < deadline){
+                Thread.sleep(10);
+            }
+            assertTrue(reconnectSupervisor.getFailedAttempts() >= 2);
+            notificationManager.stop();
+            Thread.sleep(100);
+            long failedAttempts = reconnectSupervisor.getFailedAttempts();
+            Thread.sleep(200);
+            assertEquals(failedAttempts, reconnectSupervisor.getFailedAttempts());
+        }finally {
+            notificationManager.stop();
+            client.shutdown();
+        }
+    }
+}
@@ -0,0 +1,173 @@
+/*
+ *     Copyright 2020 Horstexplorer @ https://www.netbeacon.de
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.netbeacon.jstorage.client.notification.objects.listener;
+
+import de.netbeacon.jstorage.client.notification.objects.notifiation.DataNotification;
+import de.netbeacon.jstorage.client.notification.objects.notifiation.NotificationGap;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ListenerQueueTest {
+
+    @Test
+    void blockWaitsForTheListener() throws InterruptedException {
+        BlockedListener listener = new BlockedListener();
+        ListenerQueue listenerQueue = listener.fill(2, ListenerQueue.OverflowPolicy.BLOCK, "a", "b");
+        Thread producer = new Thread(() -> listenerQueue.offer(notification("c")));
+        producer.start();
+        producer.join(200);
+        assertTrue(producer.isAlive());
+        listener.release.countDown();
+        producer.join(5000);
+        assertFalse(producer.isAlive());
+        assertEquals(List.of("first", "a", "b", "c"), listener.await(4));
+        assertEquals(0, listenerQueue.getDropped());
+        listenerQueue.shutdown();
+    }
+
+    @Test
+    void dropOldestRemovesTheOldestPending() throws InterruptedException {
+        BlockedListener listener = new BlockedListener();
+        ListenerQueue listenerQueue = listener.fill(2, ListenerQueue.OverflowPolicy.DROP_OLDEST, "a", "b");
+        assertTrue(listenerQueue.offer(notification("c")));
+        listener.release.countDown();
+        assertEquals(List.of("first", "b", "c"), listener.await(3));
+        assertEquals(1, listenerQueue.getDropped());
+        listenerQueue.shutdown();
+    }
+
+    @Test
+    void coalesceMovesTheMergedNotificationToTheTail() throws InterruptedException {
+        BlockedListener listener = new BlockedListener();
+        ListenerQueue listenerQueue = listener.fill(3, ListenerQueue.OverflowPolicy.COALESCE, "a", "b", "c");
+        assertTrue(listenerQueue.offer(new DataNotification(DataNotification.Content.deleted, 2, "db", "table", "a", null)));
+        assertEquals(3, listenerQueue.getQueueDepth());
+        listener.release.countDown();
+        List<DataNotification> received = listener.awaitNotifications(4);
+        assertEquals(List.of("first", "b", "c", "a"), datasets(received));
+        assertEquals(DataNotification.Content.deleted, received.get(3).getContent());
+        assertEquals(1, listenerQueue.getCoalesced());
+        assertEquals(0, listenerQueue.getDropped());
+        listenerQueue.shutdown();
+    }
+
+    @Test
+    void coalesceRemovesTheOldestWithoutMatch() throws InterruptedException {
+        BlockedListener listener = new BlockedListener();
+        ListenerQueue listenerQueue = listener.fill(2, ListenerQueue.OverflowPolicy.COALESCE, "a", "b");
+        assertTrue(listenerQueue.offer(notification("c")));
+        listener.release.countDown();
+        assertEquals(List.of("first", "b", "c"), listener.await(3));
+        assertEquals(0, listenerQueue.getCoalesced());
+        assertEquals(1, listenerQueue.getDropped());
+        listenerQueue.shutdown();
+    }
+
+    @Test
+    void gapIsDeliveredAfterPendingNotifications() throws InterruptedException {
+        BlockedListener listener = new BlockedListener();
+        ListenerQueue listenerQueue = listener.fill(3, ListenerQueue.OverflowPolicy.BLOCK, "a");
+        assertTrue(listenerQueue.offer(new NotificationGap(-1, 0, 0, null)));
+        listener.release.countDown();
+        assertEquals(List.of("first", "a", "gap"), listener.await(3));
+        listenerQueue.shutdown();
+    }
+
+    @Test
+    void shutdownDeliversPendingNotifications() throws InterruptedException {
+        BlockedListener listener = new BlockedListener();
+        ListenerQueue listenerQueue = listener.fill(2, ListenerQueue.OverflowPolicy.BLOCK, "a", "b");
+        listenerQueue.shutdown();
+        assertFalse(listenerQueue.offer(notification("c")));
+        listener.release.countDown();
+        assertEquals(List.of("first", "a", "b"), listener.await(3));
+    }
+
+    private static DataNotification notification(String dataset){
+        return new DataNotification(DataNotification.Content.updated, 1, "db", "table", dataset, null);
+    }
+
+    private static List<String> datasets(List<DataNotification> dataNotifications){
+        List<String> datasets = new ArrayList<>();
+        dataNotifications.forEach(dataNotification -> datasets.add(dataNotification.getDataset()));
+        return datasets;
+    }
+
+    /**
+     * Blocks on the first notification until released, so the following ones stay pending
+     */
+    private static class BlockedListener implements NotificationListener {
+
+        private final CountDownLatch started = new CountDownLatch(1);
+        private final CountDownLatch release = new CountDownLatch(1);
+        private final List<Object> received = new CopyOnWriteArrayList<>();
+
+        private ListenerQueue fill(int capacity, ListenerQueue.OverflowPolicy overflowPolicy, String... datasets) throws InterruptedException {
+            ListenerQueue listenerQueue = new ListenerQueue(this, capacity, overflowPolicy);
+            listenerQueue.offer(notification("first"));
+            assertTrue(started.await(5, TimeUnit.SECONDS));
+            for(String dataset : datasets){
+                assertTrue(listenerQueue.offer(notification(dataset)));
+            }
+            return listenerQueue;
+        }
+
+        private List<String> await(int count) throws InterruptedException {
+            long deadline = System.currentTimeMillis() + 5000;
+            while(received.size() < count && System.currentTimeMillis() < deadline){
+                Thread.sleep(5);
+            }
+            List<String> names = new ArrayList<>();
+            for(Object o : received){
+                names.add((o instanceof DataNotification) ? ((DataNotification) o).getDataset() : "gap");
+            }
+            return names;
+        }
+
+        private List<DataNotification> awaitNotifications(int count) throws InterruptedException {
+            await(count);
+            List<DataNotification> dataNotifications = new ArrayList<>();
+            for(Object o : received){
+                dataNotifications.add((DataNotification) o);
+            }
+            return dataNotifications;
+        }
+
+        @Override
+        public void onNotification(DataNotification dataNotification){
+            received.add(dataNotification);
+            started.countDown();
+            try{
+                release.await();
+            }catch (InterruptedException e){
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        @Override
+        public void onGap(NotificationGap notificationGap){
+            received.add(notificationGap);
+        }
+    }
+}
@@ -0,0 +1,144 @@
+/*
+ *     Copyright 2020 Horstexplorer @ https://www.netbeacon.de
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package de.netbeacon.jstorage.client.notification.objects.notifiation;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class NotificationParserTest {
+
+    private final NotificationParser notificationParser = new NotificationParser();
+
+    @Test
+    void parsesAllFields(){
+        assertParsedLikeJSONObject("{\"content\":\"updated\",\"timestamp\":1600000000000,\"database\":\"db\",\"table\":\"table\",\"dataset\":\"dataset\",\"datatype\":\"datatype\"}");
+        assertParsedLikeJSONObject(" { \"datatype\" : \"datatype\" , \"timestamp\" : -5 , \"content\" : \"deleted\" } ");
+        assertParsedLikeJSONObject("{\"content\":\"created\",\"timestamp\":0}");
+    }
+
+    @Test
+    void decodesEscapes(){
+        DataNotification dataNotification = assertParsedLikeJSONObject("{\"content\":\"updated\",\"timestamp\":1,\"database\":\"d\\\"b\\\\\\/\",\"table\":\"t\\n\\t\\r\\b\\f\",\"dataset\":\"\\u00e9\\u20AC\",\"datatype\":\"\\ud83d\\ude00\"}");
+        assertEquals("d\"b\\/", dataNotification.getDatabase());
+        assertEquals("t\n\t\r\b\f", dataNotification.getTable());
+        assertEquals("\u00e9\u20ac", dataNotification.getDataset());
+        assertEquals("\ud83d\ude00", dataNotification.getDatatype());
+    }
+
+    @Test
+    void rejectsBrokenEscapes(){
+        assertThrows(JSONException.class, () -> notificationParser.parse("{\"content\":\"updated\",\"timestamp\":1,\"database\":\"\\u00\"}"));
+        assertThrows(JSONException.class, () -> notificationParser.parse("{\"content\":\"updated\",\"timestamp\":1,\"database\":\"\\u00zz\"}"));
+        assertThrows(JSONException.class, () -> notificationParser.parse("{\"content\":\"updated\",\"timestamp\":1,\"database\":\"db\\\"}"));
+    }
+
+    @Test
+    void internedNamesAreNotMixedUp(){
+        assertEquals("db", notificationParser.parse("{\"content\":\"updated\",\"timestamp\":1,\"database\":\"db\"}").getDatabase());
+        assertEquals("other", notificationParser.parse("{\"content\":\"updated\",\"timestamp\":1,\"database\":\"other\"}").getDatabase());
+        assertEquals("db", notificationParser.parse("{\"content\":\"updated\",\"timestamp\":1,\"database\":\"db\"}").getDatabase());
+    }
+
+    @Test
+    void skipsNestedUnknownValues(){
+        DataNotification dataNotification = assertParsedLikeJSONObject("{\"extra\":{\"a\":\"}\",\"b\":[\"]\",{\"c\":\"\\\"}{[\"}],\"d\":[[1,2.5e3],{}]},\"content\":\"updated\",\"list\":[true,false,null,-1],\"timestamp\":2,\"database\":\"db\",\"s\":\"{\"}");
+        assertEquals("db", dataNotification.getDatabase());
+        assertEquals(2, dataNotification.getTimestamp());
+    }
+
+    @Test
+    void rejectsUnterminatedUnknownValues(){
+        assertThrows(JSONException.class, () -> notificationParser.parse("{\"extra\":{\"a\":\"}\",\"content\":\"updated\",\"timestamp\":1"));
+        assertThrows(JSONException.class, () -> notificationParser.parse("{\"extra\":[1,2,\"content\":\"updated\",\"timestamp\":1}"));
+    }
+
+    @Test
+    void rejectsTrailingGarbage(){
+        assertThrows(JSONException.class, () -> notificationParser.parse("{\"content\":\"updated\",\"timestamp\":1} x"));
+        assertThrows(JSONException.class, () -> notificationParser.parse("{\"content\":\"updated\",\"timestamp\":1}}"));
+        assertThrows(JSONException.class, () -> notificationParser.parse("{\"content\":\"updated\",\"timestamp\":1,}"));
+        assertThrows(JSONException.class, () -> notificationParser.parse("{\"content\":\"updated\",\"timestamp\":1 \"database\":\"db\"}"));
+        assertDoesNotThrow(() -> notificationParser.parse("{\"content\":\"updated\",\"timestamp\":1}\r\n"));
+    }
+
+    @Test
+    void rejectsMissingOrUnknownContent(){
+        assertThrows(JSONException.class, () -> notificationParser.parse("{\"timestamp\":1}"));
+        assertThrows(JSONException.class, () -> notificationParser.parse("{\"content\":\"updated\"}"));
+        assertThrows(JSONException.class, () -> notificationParser.parse("{\"content\":\"unknown\",\"timestamp\":1}"));
+        assertThrows(JSONException.class, () -> notificationParser.parse("{}"));
+        assertThrows(JSONException.class, () -> notificationParser.parse(""));
+    }
+
+    @Test
+    void nullFieldsAreAbsent(){
+        DataNotification dataNotification = notificationParser.parse("{\"content\":\"updated\",\"timestamp\":1,\"database\":null,\"table\":null,\"dataset\":null,\"datatype\":null}");
+        assertNull(dataNotification.getDatabase());
+        assertNull(dataNotification.getTable());
+        assertNull(dataNotification.getDataset());
+        assertNull(dataNotification.getDatatype());
+    }
+
+    @Test
+    void readsLongTimestampsExactly(){
+        assertParsedLikeJSONObject("{\"content\":\"updated\",\"timestamp\":1234567890123456789}");
+        assertParsedLikeJSONObject("{\"content\":\"updated\",\"timestamp\":-1234567890123456789}");
+        assertParsedLikeJSONObject("{\"content\":\"updated\",\"timestamp\":9223372036854775807}");
+        assertParsedLikeJSONObject("{\"content\":\"updated\",\"timestamp\":1.5e3}");
+        assertEquals(1234567890123456789L, notificationParser.parse("{\"content\":\"updated\",\"timestamp\":1234567890123456789}").getTimestamp());
+    }
+
+    @Test
+    void acceptsQuotedTimestamps(){
+        assertEquals(77, assertParsedLikeJSONObject("{\"content\":\"updated\",\"timestamp\":\"77\"}").getTimestamp());
+        assertEquals(1234567890123456789L, assertParsedLikeJSONObject("{\"content\":\"updated\",\"timestamp\":\"1234567890123456789\"}").getTimestamp());
+        assertThrows(JSONException.class, () -> notificationParser.parse("{\"content\":\"updated\",\"timestamp\":\"abc\"}"));
+        assertThrows(JSONException.class, () -> notificationParser.parse("{\"content\":\"updated\",\"timestamp\":true}"));
+    }
+
+    @Test
+    void heartbeatsAreCountedNotReturned(){
+        assertNull(notificationParser.parse("{\"content\":\"heartbeat\",\"timestamp\":5}"));
+        assertNull(notificationParser.parse("{\"timestamp\":6,\"content\":\"heartbeat\"}"));
+        assertNotNull(notificationParser.parse("{\"content\":\"updated\",\"timestamp\":7}"));
+        assertEquals(6, notificationParser.getLastHeartbeat());
+        assertEquals(2, notificationParser.getHeartbeats());
+        assertEquals(1, notificationParser.getNotifications());
+    }
+
+    @Test
+    void noHeartbeatBeforeFirstOne(){
+        assertEquals(-1, notificationParser.getLastHeartbeat());
+        assertEquals(0, notificationParser.getHeartbeats());
+    }
+
+    private DataNotification assertParsedLikeJSONObject(String line){
+        DataNotification expected = new DataNotification(new JSONObject(line));
+        DataNotification parsed = notificationParser.parse(line);
+        assertEquals(expected.getContent(), parsed.getContent());
+        assertEquals(expected.getTimestamp(), parsed.getTimestamp());
+        assertEquals(expected.getDatabase(), parsed.getDatabase());
+        assertEquals(expected.getTable(), parsed.getTable());
+        assertEquals(expected.getDataset(), parsed.getDataset());
+        assertEquals(expected.getDatatype(), parsed.getDatatype());
+        return parsed;
+    }
+}
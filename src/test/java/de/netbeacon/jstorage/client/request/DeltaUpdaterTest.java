@@ -0,0 +1,114 @@
+/*
+ *     Copyright 2020 Horstexplorer @ https://www.netbeacon.de
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.netbeacon.jstorage.client.request;
+
+import de.netbeacon.jstorage.client.JStorageClient;
+import de.netbeacon.jstorage.client.result.JStorageResult;
+import de.netbeacon.jstorage.client.stub.JStorageStubServer;
+import org.json.JSONObject;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DeltaUpdaterTest {
+
+    private JStorageStubServer stubServer;
+    private JStorageClient client;
+
+    @BeforeEach
+    void setup() throws Exception {
+        stubServer = new JStorageStubServer("token");
+        stubServer.start(60000);
+        JSONObject content = new JSONObject().put("unchanged", "some text which does not change").put("counter", 1);
+        stubServer.put("db", "table", "dataset", "datatype", content);
+        client = JStorageClient.getDevClient("localhost", stubServer.getPort(), "token");
+    }
+
+    @AfterEach
+    void tearDown(){
+        client.shutdown();
+        stubServer.stop();
+    }
+
+    @Test
+    void deltaUpdateKeepsUnchangedKeys(){
+        // the stub server merges updates into the datatype
+        client.getDeltaUpdater().setEnabled(true);
+        JStorageResult previous = get();
+        JSONObject content = previous.getResult().getJSONObject("datatype");
+        content.put("counter", 2);
+        client.getDeltaUpdater().newUpdate(previous, "db", "table", "dataset", "datatype", content).orElseThrow().build().complete();
+        assertEquals(1, client.getDeltaUpdater().getDeltaUpdates());
+        assertTrue(client.getDeltaUpdater().getBytesSaved() > 0);
+        JSONObject updated = get().getResult().getJSONObject("datatype");
+        assertEquals(2, updated.getInt("counter"));
+        assertEquals("some text which does not change", updated.getString("unchanged"));
+    }
+
+    @Test
+    void disabledDeltaUpdatesSendFullWrites(){
+        JStorageResult previous = get();
+        JSONObject content = previous.getResult().getJSONObject("datatype");
+        content.put("counter", 2);
+        client.getDeltaUpdater().newUpdate(previous, "db", "table", "dataset", "datatype", content).orElseThrow().build().complete();
+        assertEquals(0, client.getDeltaUpdater().getDeltaUpdates());
+        assertEquals(1, client.getDeltaUpdater().getFullUpdates());
+        assertEquals(2, get().getResult().getJSONObject("datatype").getInt("counter"));
+    }
+
+    @Test
+    void unchangedDatatypeIsNotSent(){
+        JStorageResult previous = get();
+        JSONObject content = new JSONObject(previous.getResult().getJSONObject("datatype").toString());
+        assertTrue(client.getDeltaUpdater().newUpdate(previous, "db", "table", "dataset", "datatype", content).isEmpty());
+        assertEquals(1, client.getDeltaUpdater().getSkippedUpdates());
+    }
+
+    @Test
+    void releasedResultFallsBackToFullWrite(){
+        client.getDeltaUpdater().setEnabled(true);
+        client.enableBufferPool(64 * 1024, false);
+        JStorageResult previous = get();
+        assertTrue(previous.isPooled());
+        JSONObject content = previous.getResult().getJSONObject("datatype");
+        content.put("counter", 3);
+        previous.release();
+        client.getDeltaUpdater().newUpdate(previous, "db", "table", "dataset", "datatype", content).orElseThrow().build().complete();
+        assertEquals(1, client.getDeltaUpdater().getFullUpdates());
+        assertEquals(3, get().getResult().getJSONObject("datatype").getInt("counter"));
+    }
+
+    @Test
+    void removedKeyIsNoDelta(){
+        JSONObject previous = new JSONObject().put("a", 1).put("b", 2);
+        assertNull(DeltaUpdater.diff(previous, new JSONObject().put("a", 1)));
+        assertEquals(0, DeltaUpdater.diff(previous, new JSONObject().put("a", 1.0).put("b", 2)).length());
+        assertEquals("{\"b\":3}", DeltaUpdater.diff(previous, new JSONObject().put("a", 1).put("b", 3)).toString());
+    }
+
+    private JStorageResult get(){
+        return client.newRequest(RequestType.DataAction_GetDataType)
+                .setArg("database", "db")
+                .setArg("table", "table")
+                .setArg("dataset", "dataset")
+                .setArg("identifier", "datatype")
+                .build()
+                .complete();
+    }
+}
@@ -0,0 +1,83 @@
+/*
+ *     Copyright 2020 Horstexplorer @ https://www.netbeacon.de
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package de.netbeacon.jstorage.client.request;
+
+import de.netbeacon.jstorage.client.JStorageClient;
+import de.netbeacon.jstorage.client.exceptions.JStorageException;
+import org.json.JSONObject;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JStorageRequestBuilderTest {
+
+    private JStorageClient client;
+
+    @BeforeEach
+    void setup(){
+        // nothing listens on this port, requests fail right away
+        client = JStorageClient.getDevClient("localhost", 1, "token");
+        client.enableBufferPool(64 * 1024, false);
+        client.getBufferPool().setLeakDetection(true);
+    }
+
+    @AfterEach
+    void tearDown(){
+        client.shutdown();
+    }
+
+    @Test
+    void releasedRequestReturnsItsBuffer(){
+        JStorageRequest request = update();
+        assertEquals(1, client.getBufferPool().getBorrowed());
+        request.release();
+        assertEquals(0, client.getBufferPool().getBorrowed());
+        // the call has been canceled, the buffer is not sent after it went back to the pool
+        assertThrows(JStorageException.class, request::complete);
+        assertEquals(0, client.getBufferPool().getBorrowed());
+    }
+
+    @Test
+    void executedRequestReturnsItsBuffer(){
+        JStorageRequest request = update();
+        assertThrows(JStorageException.class, request::complete);
+        assertEquals(0, client.getBufferPool().getBorrowed());
+        // releasing an executed request does nothing
+        request.release();
+        assertEquals(0, client.getBufferPool().getBorrowed());
+    }
+
+    @Test
+    void compressedCopyReturnsTheBufferOnBuild(){
+        client.enableCompression(1, RequestType.DataAction_UpdateDataType);
+        update();
+        assertEquals(0, client.getBufferPool().getBorrowed());
+    }
+
+    private JStorageRequest update(){
+        return client.newRequest(RequestType.DataAction_UpdateDataType)
+                .setArg("database", "db")
+                .setArg("table", "table")
+                .setArg("dataset", "dataset")
+                .setArg("identifier", "datatype")
+                .setPayload(new JSONObject().put("datatype", new JSONObject().put("key", "value")))
+                .build();
+    }
+}
@@ -0,0 +1,137 @@
+/*
+ *     Copyright 2020 Horstexplorer @ https://www.netbeacon.de
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.netbeacon.jstorage.client.request;
+
+import de.netbeacon.jstorage.client.JStorageClient;
+import de.netbeacon.jstorage.client.exceptions.JStorageException;
+import de.netbeacon.jstorage.client.exceptions.generic.type.GOE_NotFound;
+import de.netbeacon.jstorage.client.result.JStorageResult;
+import de.netbeacon.jstorage.client.stub.JStorageStubServer;
+import org.json.JSONObject;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RequestCoalescerTest {
+
+    private JStorageStubServer stubServer;
+    private JStorageClient client;
+
+    @BeforeEach
+    void setup() throws Exception {
+        stubServer = new JStorageStubServer("token");
+        // keep the first request in flight long enough for the second one to join it
+        stubServer.setLatency(300, 0);
+        stubServer.start(60000);
+        stubServer.put("db", "table", "dataset", "profile", new JSONObject().put("name", "value"));
+        client = JStorageClient.getDevClient("localhost", stubServer.getPort(), "token");
+        client.setRequestCoalescing(true);
+    }
+
+    @AfterEach
+    void tearDown(){
+        client.shutdown();
+        stubServer.stop();
+    }
+
+    @Test
+    void sharedCallDeliversResultToAll(){
+        CompletableFuture<JStorageResult> first = request("db").submit();
+        CompletableFuture<JStorageResult> second = request("db").submit();
+        JStorageResult firstResult = first.join();
+        JStorageResult secondResult = second.join();
+        assertEquals(1, client.getRequestCoalescer().getExecuted());
+        assertEquals(1, client.getRequestCoalescer().getCoalesced());
+        assertEquals(firstResult.getResult().toString(), secondResult.getResult().toString());
+    }
+
+    @Test
+    void sharedResultCanNotBeModifiedByOneCaller(){
+        CompletableFuture<JStorageResult> first = request("db").submit();
+        CompletableFuture<JStorageResult> second = request("db").submit();
+        JStorageResult firstResult = first.join();
+        JStorageResult secondResult = second.join();
+        assertTrue(secondResult.isShared());
+        String expected = secondResult.getResult().toString();
+        firstResult.getResult().put("modified", true);
+        assertEquals(expected, secondResult.getResult().toString());
+    }
+
+    @Test
+    void queueDeliversTypedExceptionToAll() throws InterruptedException {
+        List<JStorageException> failures = new CopyOnWriteArrayList<>();
+        CountDownLatch latch = new CountDownLatch(2);
+        for(int i = 0; i < 2; i++){
+            request("missing").queue(result -> latch.countDown(), exception -> {
+                failures.add(exception);
+                latch.countDown();
+            });
+        }
+        assertTrue(latch.await(10, TimeUnit.SECONDS));
+        assertEquals(1, client.getRequestCoalescer().getCoalesced());
+        assertEquals(2, failures.size());
+        for(JStorageException failure : failures){
+            assertEquals(GOE_NotFound.class, failure.getClass());
+        }
+    }
+
+    @Test
+    void completeThrowsTypedException() throws InterruptedException {
+        CompletableFuture<JStorageResult> first = request("missing").submit();
+        assertThrows(GOE_NotFound.class, () -> request("missing").complete());
+        assertThrows(GOE_NotFound.class, () -> JStorageRequest.await(first));
+    }
+
+    @Test
+    void cachedRequestDeliversTypedException() throws InterruptedException {
+        client.enableCache(1024 * 1024, 100, 60000);
+        CountDownLatch latch = new CountDownLatch(1);
+        JStorageException[] failure = new JStorageException[1];
+        request("missing").queue(result -> latch.countDown(), exception -> {
+            failure[0] = exception;
+            latch.countDown();
+        });
+        assertTrue(latch.await(10, TimeUnit.SECONDS));
+        assertEquals(GOE_NotFound.class, failure[0].getClass());
+    }
+
+    @Test
+    void synchronousFailureDoesNotBlockTheKey() throws Exception {
+        JStorageRequest request = request("db");
+        request.submit().join();
+        // the call of a request can only be enqueued once
+        assertThrows(JStorageException.class, () -> JStorageRequest.await(request.submit()));
+        assertEquals(0, client.getRequestCoalescer().getInFlight());
+        assertNotNull(request("db").submit().get(10, TimeUnit.SECONDS));
+    }
+
+    private JStorageRequest request(String database){
+        return new JStorageRequestBuilder(client, RequestType.DataAction_GetDataSet)
+                .setArg("database", database)
+                .setArg("table", "table")
+                .setArg("identifier", "dataset")
+                .build();
+    }
+}
@@ -0,0 +1,86 @@
+/*
+ *     Copyright 2020 Horstexplorer @ https://www.netbeacon.de
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.netbeacon.jstorage.client.request;
+
+import de.netbeacon.jstorage.client.JStorageClient;
+import de.netbeacon.jstorage.client.result.JStorageResult;
+import de.netbeacon.jstorage.client.stub.JStorageStubServer;
+import org.json.JSONObject;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SubmitAllTest {
+
+    private JStorageStubServer stubServer;
+    private JStorageClient client;
+
+    @BeforeEach
+    void setup() throws Exception {
+        stubServer = new JStorageStubServer("token");
+        stubServer.setLatency(300, 0);
+        stubServer.start(60000);
+        for(int i = 0; i < 4; i++){
+            stubServer.put("db", "table", "dataset"+i, "profile", new JSONObject().put("index", i));
+        }
+        client = JStorageClient.getDevClient("localhost", stubServer.getPort(), "token");
+    }
+
+    @AfterEach
+    void tearDown(){
+        client.shutdown();
+        stubServer.stop();
+    }
+
+    @Test
+    void resultsKeepTheOrderOfTheRequests(){
+        List<JStorageResult> results = JStorageRequest.submitAll(requests()).join();
+        assertEquals(4, results.size());
+        for(int i = 0; i < results.size(); i++){
+            assertEquals(i, results.get(i).getResult().getJSONObject("profile").getInt("index"));
+        }
+    }
+
+    @Test
+    void cancelingDoesNotReduceTheConcurrencyLimit() throws InterruptedException {
+        int limit = client.getConcurrencyLimitInterceptor().getLimit();
+        CompletableFuture<List<JStorageResult>> cf = JStorageRequest.submitAll(requests());
+        // let the calls reach the server
+        Thread.sleep(100);
+        assertTrue(cf.cancel(true));
+        Thread.sleep(300);
+        assertEquals(limit, client.getConcurrencyLimitInterceptor().getLimit());
+    }
+
+    private List<JStorageRequest> requests(){
+        List<JStorageRequest> requests = new ArrayList<>();
+        for(int i = 0; i < 4; i++){
+            requests.add(new JStorageRequestBuilder(client, RequestType.DataAction_GetDataSet)
+                    .setArg("database", "db")
+                    .setArg("table", "table")
+                    .setArg("identifier", "dataset"+i)
+                    .build());
+        }
+        return requests;
+    }
+}
@@ -0,0 +1,56 @@
+/*
+ *     Copyright 2020 Horstexplorer @ https://www.netbeacon.de
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.netbeacon.jstorage.client.result;
+
+import org.json.JSONObject;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JStorageResultTest {
+
+    private static final byte[] BYTES = "{\"datatype\":{\"key\":\"value\"}}".getBytes(StandardCharsets.UTF_8);
+
+    @Test
+    void resultIsParsedOnce(){
+        JStorageResult result = new JStorageResult();
+        result.setResult(BYTES);
+        assertSame(result.getResult(), result.getResult());
+    }
+
+    @Test
+    void sharedResultIsParsedOnEachAccess(){
+        JStorageResult result = new JStorageResult();
+        result.setResult(BYTES);
+        result.setShared();
+        JSONObject first = result.getResult();
+        first.getJSONObject("datatype").put("key", "modified");
+        assertNotSame(first, result.getResult());
+        assertEquals("value", result.getResult().getJSONObject("datatype").getString("key"));
+    }
+
+    @Test
+    void markingAsSharedDropsTheParsedObject(){
+        JStorageResult result = new JStorageResult();
+        result.setResult(BYTES);
+        result.getResult().put("modified", true);
+        result.setShared();
+        assertFalse(result.getResult().has("modified"));
+    }
+}
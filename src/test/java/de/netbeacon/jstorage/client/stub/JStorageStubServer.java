@@ -0,0 +1,767 @@
+/*
+ *     Copyright 2020 Horstexplorer @ https://www.netbeacon.de
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package de.netbeacon.jstorage.client.stub;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpsConfigurator;
+import com.sun.net.httpserver.HttpsServer;
+import de.netbeacon.jstorage.client.request.RequestType;
+import okhttp3.tls.HandshakeCertificates;
+import okhttp3.tls.HeldCertificate;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLServerSocket;
+import javax.net.ssl.SSLSocket;
+import java.io.*;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * In process stand-in for a JStorage server to be used for load tests and benchmarks
+ * <br>
+ * Serves the https endpoints of all RequestTypes backed by in memory databases, tables, datasets and datatypes,
+ * as well as the notification socket. Latency, error injection and rate limits can be configured.
+ */
+public class JStorageStubServer {
+
+    private final String loginToken;
+    private final SSLContext sslContext;
+    private final HttpsServer httpsServer;
+    private final SSLServerSocket notificationServerSocket;
+    private final ExecutorService executorService = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "JStorageStubServer");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "JStorageStubServer-Heartbeat");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    // database -> table -> dataset -> datatype -> content
+    private final ConcurrentHashMap<String, ConcurrentHashMap<String, ConcurrentHashMap<String, JSONObject>>> databases = new ConcurrentHashMap<>();
+    // cache -> identifier -> content
+    private final ConcurrentHashMap<String, ConcurrentHashMap<String, JSONObject>> caches = new ConcurrentHashMap<>();
+    private final CopyOnWriteArrayList<Subscriber> subscribers = new CopyOnWriteArrayList<>();
+
+    private volatile long latencyMillis;
+    private volatile long latencyJitterMillis;
+    private volatile double errorRate;
+    private volatile int compressionMinSize = -1;
+    private volatile long rateLimit = 100000;
+    private volatile long rateLimitWindow = 1000;
+    private long rateLimitRemaining = rateLimit;
+    private long rateLimitReset;
+
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong requestBytes = new AtomicLong();
+    private final AtomicLong responseBytes = new AtomicLong();
+    private final AtomicLong notifications = new AtomicLong();
+
+    /**
+     * Creates a new instance of this class listening on random ports of localhost
+     * @param loginToken token the client has to use
+     * @throws IOException on exception
+     */
+    public JStorageStubServer(String loginToken) throws IOException {
+        this.loginToken = loginToken;
+        // headers and body are written separately, without this each response waits for the delayed ack
+        System.setProperty("sun.net.httpserver.nodelay", "true");
+        HeldCertificate heldCertificate = new HeldCertificate.Builder().addSubjectAlternativeName("localhost").build();
+        this.sslContext = new HandshakeCertificates.Builder().heldCertificate(heldCertificate).build().sslContext();
+        this.httpsServer = HttpsServer.create(new InetSocketAddress("localhost", 0), 1024);
+        this.httpsServer.setHttpsConfigurator(new HttpsConfigurator(sslContext));
+        this.httpsServer.setExecutor(executorService);
+        this.httpsServer.createContext("/", this::handle);
+        this.notificationServerSocket = (SSLServerSocket) sslContext.getServerSocketFactory().createServerSocket(0, 128, httpsServer.getAddress().getAddress());
+    }
+
+    /**
+     * Starts the server
+     * @param heartbeatMillis interval in which heartbeats are sent to the notification sockets
+     */
+    public void start(long heartbeatMillis){
+        httpsServer.start();
+        executorService.execute(this::acceptNotificationConnections);
+        scheduler.scheduleAtFixedRate(() -> broadcast(new JSONObject().put("content", "heartbeat").put("timestamp", System.currentTimeMillis()), null, null), heartbeatMillis, heartbeatMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stops the server
+     */
+    public void stop(){
+        httpsServer.stop(0);
+        try{notificationServerSocket.close();}catch (Exception ignore){}
+        subscribers.forEach(Subscriber::close);
+        scheduler.shutdownNow();
+        executorService.shutdownNow();
+    }
+
+    /**
+     * Used to get the port of the https endpoints
+     * @return port
+     */
+    public int getPort(){
+        return httpsServer.getAddress().getPort();
+    }
+
+    /**
+     * Used to get the port of the notification socket
+     * @return port
+     */
+    public int getNotificationPort(){
+        return notificationServerSocket.getLocalPort();
+    }
+
+    /**
+     * Can be used to delay every response
+     * @param latencyMillis fixed delay in ms
+     * @param latencyJitterMillis max additional random delay in ms
+     */
+    public void setLatency(long latencyMillis, long latencyJitterMillis){
+        this.latencyMillis = latencyMillis;
+        this.latencyJitterMillis = latencyJitterMillis;
+    }
+
+    /**
+     * Can be used to let requests fail with 503
+     * @param errorRate fraction of requests which should fail, between 0 and 1
+     */
+    public void setErrorRate(double errorRate){
+        this.errorRate = errorRate;
+    }
+
+    /**
+     * Can be used to gzip response bodies if the client accepts it
+     * @param compressionMinSize number of bytes from which on bodies should be compressed, -1 to disable
+     */
+    public void setCompression(int compressionMinSize){
+        this.compressionMinSize = compressionMinSize;
+    }
+
+    /**
+     * Can be used to change the rate limit
+     * @param rateLimit number of requests per window
+     * @param rateLimitWindow length of a window in ms
+     */
+    public synchronized void setRateLimit(long rateLimit, long rateLimitWindow){
+        this.rateLimit = rateLimit;
+        this.rateLimitWindow = rateLimitWindow;
+        this.rateLimitRemaining = rateLimit;
+        this.rateLimitReset = 0;
+    }
+
+    /**
+     * Can be used to insert data without going through the api
+     * @param database name
+     * @param table name
+     * @param dataset identifier
+     * @param datatype identifier
+     * @param content of the datatype
+     */
+    public void put(String database, String table, String dataset, String datatype, JSONObject content){
+        databases.computeIfAbsent(database.toLowerCase(), k -> new ConcurrentHashMap<>())
+                .computeIfAbsent(table.toLowerCase(), k -> new ConcurrentHashMap<>())
+                .computeIfAbsent(dataset.toLowerCase(), k -> new JSONObject())
+                .put(datatype.toLowerCase(), content);
+    }
+
+    /**
+     * Used to get the number of handled requests
+     * @return long
+     */
+    public long getRequests(){
+        return requests.get();
+    }
+
+    /**
+     * Used to get the number of bytes received in request bodies, as sent over the wire
+     * @return long
+     */
+    public long getRequestBytes(){
+        return requestBytes.get();
+    }
+
+    /**
+     * Used to get the number of bytes sent in response bodies, as sent over the wire
+     * @return long
+     */
+    public long getResponseBytes(){
+        return responseBytes.get();
+    }
+
+    /**
+     * Closes all notification sockets to simulate a lost connection, clients may connect again right away
+     */
+    public void dropNotificationConnections(){
+        for(Subscriber subscriber : subscribers){
+            subscribers.remove(subscriber);
+            subscriber.close();
+        }
+    }
+
+    /**
+     * Used to get the number of notifications sent to all sockets combined
+     * @return long
+     */
+    public long getNotifications(){
+        return notifications.get();
+    }
+
+    /**
+     * Internal helper to handle a request
+     * @param exchange of the request
+     * @throws IOException on exception
+     */
+    private void handle(HttpExchange exchange) throws IOException {
+        try{
+            requests.incrementAndGet();
+            byte[] body = exchange.getRequestBody().readAllBytes();
+            requestBytes.addAndGet(body.length);
+            if("gzip".equalsIgnoreCase(exchange.getRequestHeaders().getFirst("Content-Encoding"))){
+                try(InputStream inputStream = new GZIPInputStream(new ByteArrayInputStream(body))){
+                    body = inputStream.readAllBytes();
+                }
+            }
+            delay();
+            if(!applyRateLimit(exchange)){
+                send(exchange, 429, null, null);
+                return;
+            }
+            if(errorRate > 0 && ThreadLocalRandom.current().nextDouble() < errorRate){
+                send(exchange, 503, null, null);
+                return;
+            }
+            RequestType requestType = findRequestType(exchange.getRequestURI().getPath());
+            if(requestType == null || !requestType.getRequestType().equals(exchange.getRequestMethod())){
+                send(exchange, 404, null, null);
+                return;
+            }
+            if(!isAuthorized(exchange)){
+                send(exchange, 401, null, null);
+                return;
+            }
+            Map<String, String> args = parseQuery(exchange.getRequestURI().getRawQuery());
+            if(!args.keySet().containsAll(requestType.getRequiredArguments())){
+                send(exchange, 400, null, null);
+                return;
+            }
+            JSONObject payload = (body.length > 0) ? new JSONObject(new String(body, StandardCharsets.UTF_8)) : new JSONObject();
+            try{
+                send(exchange, 200, process(requestType, args, payload), null);
+            }catch (StubException e){
+                send(exchange, e.statusCode, null, e.internalStatus);
+            }
+        }catch (Exception e){
+            send(exchange, 500, null, null);
+        }finally {
+            exchange.close();
+        }
+    }
+
+    /**
+     * Internal helper to process a request
+     * @param requestType of the request
+     * @param args of the request
+     * @param payload of the request
+     * @return response body
+     * @throws StubException if the request fails
+     */
+    private JSONObject process(RequestType requestType, Map<String, String> args, JSONObject payload) throws StubException {
+        String database = lower(args.get("database"));
+        String table = lower(args.get("table"));
+        String dataset = lower(args.get("dataset"));
+        String identifier = lower(args.get("identifier"));
+        switch (requestType){
+            case InfoAction_Basic:
+                return new JSONObject().put("server", "JStorageStubServer");
+            case DataAction_CreateDataBase:
+                if(databases.putIfAbsent(identifier, new ConcurrentHashMap<>()) != null){
+                    throw new StubException(400, "genericobjectexception 300 DataBase Already Existing");
+                }
+                notify("created", identifier, null, null, null);
+                return new JSONObject();
+            case DataAction_CreateDataTable:
+                if(getDataBase(database).putIfAbsent(identifier, new ConcurrentHashMap<>()) != null){
+                    throw new StubException(400, "datastorageexception 211 DataTable Already Existing");
+                }
+                notify("created", database, identifier, null, null);
+                return new JSONObject();
+            case DataAction_CreateDataSet:
+                if(getDataTable(database, table).putIfAbsent(identifier, new JSONObject()) != null){
+                    throw new StubException(400, "datastorageexception 212 DataSet Already Existing");
+                }
+                notify("created", database, table, identifier, null);
+                return new JSONObject();
+            case DataAction_CreateDataType: {
+                JSONObject jsonObject = getDataSet(database, table, dataset);
+                synchronized (jsonObject){
+                    if(jsonObject.has(identifier)){
+                        throw new StubException(400, "datastorageexception 213 DataType Already Existing");
+                    }
+                    jsonObject.put(identifier, new JSONObject());
+                }
+                notify("created", database, table, dataset, identifier);
+                return new JSONObject();
+            }
+            case DataAction_DeleteDataBase:
+                if(databases.remove(identifier) == null){
+                    throw new StubException(404, "genericobjectexception 200 DataBase Not Found");
+                }
+                notify("deleted", identifier, null, null, null);
+                return new JSONObject();
+            case DataAction_DeleteDataTable:
+                if(getDataBase(database).remove(identifier) == null){
+                    throw new StubException(404, "datastorageexception 201 DataTable Not Found");
+                }
+                notify("deleted", database, identifier, null, null);
+                return new JSONObject();
+            case DataAction_DeleteDataSet:
+                if(getDataTable(database, table).remove(identifier) == null){
+                    throw new StubException(404, "datastorageexception 202 DataSet Not Found");
+                }
+                notify("deleted", database, table, identifier, null);
+                return new JSONObject();
+            case DataAction_DeleteDataType: {
+                JSONObject jsonObject = getDataSet(database, table, dataset);
+                synchronized (jsonObject){
+                    if(jsonObject.remove(identifier) == null){
+                        throw new StubException(404, "datastorageexception 203 DataType Not Found");
+                    }
+                }
+                notify("deleted", database, table, dataset, identifier);
+                return new JSONObject();
+            }
+            case DataAction_GetDataSet:
+                return exportDataSet(database, table, identifier, getDataSet(database, table, identifier));
+            case DataAction_GetDataType: {
+                JSONObject jsonObject = getDataSet(database, table, dataset);
+                synchronized (jsonObject){
+                    if(!jsonObject.has(identifier)){
+                        throw new StubException(404, "datastorageexception 203 DataType Not Found");
+                    }
+                    return new JSONObject().put(identifier, new JSONObject(jsonObject.getJSONObject(identifier).toString()));
+                }
+            }
+            case DataAction_UpdateDataType: {
+                JSONObject jsonObject = getDataSet(database, table, dataset);
+                synchronized (jsonObject){
+                    if(!jsonObject.has(identifier)){
+                        throw new StubException(404, "datastorageexception 203 DataType Not Found");
+                    }
+                    // update the given keys only
+                    JSONObject content = payload.has(identifier) ? payload.getJSONObject(identifier) : payload;
+                    JSONObject datatype = jsonObject.getJSONObject(identifier);
+                    for(String key : content.keySet()){
+                        datatype.put(key, content.get(key));
+                    }
+                }
+                notify("updated", database, table, dataset, identifier);
+                return new JSONObject();
+            }
+            case DataAction_MultiSelect: {
+                JSONArray datasets = new JSONArray();
+                JSONArray selection = payload.optJSONArray("select");
+                if(selection != null){
+                    for(int i = 0; i < selection.length(); i++){
+                        JSONObject select = selection.getJSONObject(i);
+                        String db = lower(select.optString("database"));
+                        String tb = lower(select.optString("table"));
+                        String ds = lower(select.optString("dataset"));
+                        try{
+                            datasets.put(exportDataSet(db, tb, ds, getDataSet(db, tb, ds)));
+                        }catch (StubException ignore){}
+                    }
+                }
+                return new JSONObject().put("datasets", datasets);
+            }
+            case DataAction_DataBaseInfo:
+                return new JSONObject().put("databases", new JSONArray(databases.keySet()));
+            case DataAction_DataTableInfo:
+                return new JSONObject().put("database", database).put("table", identifier).put("datasets", new JSONArray(getDataTable(database, identifier).keySet()));
+            case DataAction_DataSetInfo: {
+                JSONObject jsonObject = getDataSet(database, table, identifier);
+                synchronized (jsonObject){
+                    return new JSONObject().put("database", database).put("table", table).put("dataset", identifier).put("datatypes", new JSONArray(jsonObject.keySet()));
+                }
+            }
+            case CacheAction_CreateCache:
+                caches.putIfAbsent(identifier, new ConcurrentHashMap<>());
+                return new JSONObject();
+            case CacheAction_DeleteCache:
+                caches.remove(identifier);
+                return new JSONObject();
+            case CacheAction_CacheClear:
+                getCache(identifier).clear();
+                return new JSONObject();
+            case CacheAction_CreateCachedData:
+                getCache(lower(args.get("cache"))).put(identifier, payload);
+                return new JSONObject();
+            case CacheAction_GetCachedData: {
+                JSONObject jsonObject = getCache(lower(args.get("cache"))).get(identifier);
+                if(jsonObject == null){
+                    throw new StubException(404, "genericobjectexception 200 CachedData Not Found");
+                }
+                return new JSONObject().put(identifier, jsonObject);
+            }
+            case CacheAction_DeleteCachedData:
+                getCache(lower(args.get("cache"))).remove(identifier);
+                return new JSONObject();
+            default:
+                return new JSONObject();
+        }
+    }
+
+    /**
+     * Internal helper to export a dataset
+     * @param database name
+     * @param table name
+     * @param dataset identifier
+     * @param content of the dataset
+     * @return JSONObject
+     */
+    private JSONObject exportDataSet(String database, String table, String dataset, JSONObject content){
+        synchronized (content){
+            return new JSONObject(content.toString()).put("database", database).put("table", table).put("identifier", dataset);
+        }
+    }
+
+    private ConcurrentHashMap<String, ConcurrentHashMap<String, JSONObject>> getDataBase(String database) throws StubException {
+        ConcurrentHashMap<String, ConcurrentHashMap<String, JSONObject>> db = (database != null) ? databases.get(database) : null;
+        if(db == null){
+            throw new StubException(404, "genericobjectexception 200 DataBase Not Found");
+        }
+        return db;
+    }
+
+    private ConcurrentHashMap<String, JSONObject> getDataTable(String database, String table) throws StubException {
+        ConcurrentHashMap<String, JSONObject> tb = (table != null) ? getDataBase(database).get(table) : null;
+        if(tb == null){
+            throw new StubException(404, "datastorageexception 201 DataTable Not Found");
+        }
+        return tb;
+    }
+
+    private JSONObject getDataSet(String database, String table, String dataset) throws StubException {
+        JSONObject ds = (dataset != null) ? getDataTable(database, table).get(dataset) : null;
+        if(ds == null){
+            throw new StubException(404, "datastorageexception 202 DataSet Not Found");
+        }
+        return ds;
+    }
+
+    private ConcurrentHashMap<String, JSONObject> getCache(String cache) throws StubException {
+        ConcurrentHashMap<String, JSONObject> c = (cache != null) ? caches.get(cache) : null;
+        if(c == null){
+            throw new StubException(404, "genericobjectexception 200 Cache Not Found");
+        }
+        return c;
+    }
+
+    /**
+     * Internal helper to send a response
+     * @param exchange of the request
+     * @param statusCode to send
+     * @param body to send or null
+     * @param internalStatus to add as header or null
+     */
+    private void send(HttpExchange exchange, int statusCode, JSONObject body, String internalStatus){
+        try{
+            synchronized (this){
+                exchange.getResponseHeaders().add("Ratelimit-Limit", String.valueOf(rateLimit));
+                exchange.getResponseHeaders().add("Ratelimit-Remaining", String.valueOf(Math.max(0, rateLimitRemaining)));
+                exchange.getResponseHeaders().add("Ratelimit-Reset", String.valueOf(rateLimitReset));
+            }
+            if(internalStatus != null){
+                exchange.getResponseHeaders().add("Internal-Status", internalStatus);
+            }
+            if(body == null){
+                exchange.sendResponseHeaders(statusCode, -1);
+                return;
+            }
+            byte[] bytes = body.toString().getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            String acceptEncoding = exchange.getRequestHeaders().getFirst("Accept-Encoding");
+            if(compressionMinSize >= 0 && bytes.length >= compressionMinSize && acceptEncoding != null && acceptEncoding.contains("gzip")){
+                ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
+                try(OutputStream outputStream = new GZIPOutputStream(byteArrayOutputStream)){
+                    outputStream.write(bytes);
+                }
+                bytes = byteArrayOutputStream.toByteArray();
+                exchange.getResponseHeaders().add("Content-Encoding", "gzip");
+            }
+            exchange.sendResponseHeaders(statusCode, bytes.length);
+            // count before writing, the client may see the response before this thread continues
+            responseBytes.addAndGet(bytes.length);
+            exchange.getResponseBody().write(bytes);
+        }catch (Exception ignore){}
+    }
+
+    /**
+     * Internal helper to count the request against the rate limit
+     * @param exchange of the request
+     * @return false if the rate limit has been exceeded
+     */
+    private synchronized boolean applyRateLimit(HttpExchange exchange){
+        long now = System.currentTimeMillis();
+        if(now >= rateLimitReset){
+            rateLimitReset = now + rateLimitWindow;
+            rateLimitRemaining = rateLimit;
+        }
+        return --rateLimitRemaining >= 0;
+    }
+
+    /**
+     * Internal helper to wait for the configured latency
+     */
+    private void delay(){
+        long delay = latencyMillis + ((latencyJitterMillis > 0) ? ThreadLocalRandom.current().nextLong(latencyJitterMillis) : 0);
+        if(delay > 0){
+            try{ TimeUnit.MILLISECONDS.sleep(delay); }catch (InterruptedException ignore){}
+        }
+    }
+
+    /**
+     * Internal helper to check the auth of a request
+     * @param exchange of the request
+     * @return boolean
+     */
+    private boolean isAuthorized(HttpExchange exchange){
+        String token = exchange.getRequestHeaders().getFirst("Token");
+        return (token != null && token.equals(loginToken)) || exchange.getRequestHeaders().getFirst("Authorization") != null;
+    }
+
+    /**
+     * Internal helper to find the type of a request by its path
+     * @param path of the request
+     * @return RequestType or null
+     */
+    private static RequestType findRequestType(String path){
+        List<String> segments = new ArrayList<>();
+        for(String segment : path.split("/")){
+            if(!segment.isEmpty()){
+                segments.add(segment);
+            }
+        }
+        for(RequestType requestType : RequestType.values()){
+            if(requestType.getRequestPath().equals(segments)){
+                return requestType;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Internal helper to parse the query of a request
+     * @param query raw query
+     * @return Map of lower case keys to values
+     */
+    private static Map<String, String> parseQuery(String query){
+        HashMap<String, String> args = new HashMap<>();
+        if(query == null){
+            return args;
+        }
+        for(String pair : query.split("&")){
+            int index = pair.indexOf('=');
+            if(index > 0){
+                args.put(URLDecoder.decode(pair.substring(0, index), StandardCharsets.UTF_8).toLowerCase(), URLDecoder.decode(pair.substring(index + 1), StandardCharsets.UTF_8));
+            }
+        }
+        return args;
+    }
+
+    private static String lower(String value){
+        return (value != null) ? value.toLowerCase() : null;
+    }
+
+    /**
+     * Internal helper to send a notification about a change
+     * @param content created, updated or deleted
+     * @param database name
+     * @param table name or null
+     * @param dataset identifier or null
+     * @param datatype identifier or null
+     */
+    private void notify(String content, String database, String table, String dataset, String datatype){
+        JSONObject jsonObject = new JSONObject().put("content", content).put("timestamp", System.currentTimeMillis()).put("database", database);
+        if(table != null){
+            jsonObject.put("table", table);
+        }
+        if(dataset != null){
+            jsonObject.put("dataset", dataset);
+        }
+        if(datatype != null){
+            jsonObject.put("datatype", datatype);
+        }
+        broadcast(jsonObject, database, table);
+    }
+
+    /**
+     * Internal helper to send a notification to all matching subscribers
+     * @param jsonObject notification
+     * @param database of the change or null to send to everyone
+     * @param table of the change or null
+     */
+    private void broadcast(JSONObject jsonObject, String database, String table){
+        String line = jsonObject.toString();
+        for(Subscriber subscriber : subscribers){
+            if(database == null || subscriber.matches(database, table)){
+                if(subscriber.send(line)){
+                    notifications.incrementAndGet();
+                }else{
+                    subscribers.remove(subscriber);
+                }
+            }
+        }
+    }
+
+    /**
+     * Internal helper to accept connections to the notification socket
+     */
+    private void acceptNotificationConnections(){
+        while(!notificationServerSocket.isClosed()){
+            try{
+                SSLSocket socket = (SSLSocket) notificationServerSocket.accept();
+                executorService.execute(() -> handshake(socket));
+            }catch (Exception ignore){}
+        }
+    }
+
+    /**
+     * Internal helper to handle the handshake of a notification socket
+     * <br>
+     * Expects the token, the selected notifications and an empty line
+     * @param socket which connected
+     */
+    private void handshake(SSLSocket socket){
+        try{
+            BufferedReader bufferedReader = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+            BufferedWriter bufferedWriter = new BufferedWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8));
+            String token = null;
+            HashMap<String, Set<String>> selection = new HashMap<>();
+            String line;
+            while((line = bufferedReader.readLine()) != null && !line.isEmpty()){
+                if(line.startsWith("Token: ")){
+                    token = line.substring(7).trim();
+                    continue;
+                }
+                for(String selected : line.trim().split("\\s+")){
+                    if(selected.isEmpty()){
+                        continue;
+                    }
+                    int index = selected.indexOf(':');
+                    if(index < 0){
+                        selection.computeIfAbsent(selected.toLowerCase(), k -> new HashSet<>());
+                    }else{
+                        selection.computeIfAbsent(selected.substring(0, index).toLowerCase(), k -> new HashSet<>()).add(selected.substring(index + 1).toLowerCase());
+                    }
+                }
+            }
+            if(token == null || !token.equals(loginToken)){
+                bufferedWriter.write("HTTP/1.1 401 Unauthorized");
+                bufferedWriter.newLine();
+                bufferedWriter.flush();
+                socket.close();
+                return;
+            }
+            bufferedWriter.write("HTTP/1.1 200 OK");
+            bufferedWriter.newLine();
+            bufferedWriter.flush();
+            subscribers.add(new Subscriber(socket, bufferedWriter, selection));
+        }catch (Exception e){
+            try{socket.close();}catch (Exception ignore){}
+        }
+    }
+
+    /**
+     * Represents a connected notification socket
+     */
+    private static class Subscriber {
+
+        private final SSLSocket socket;
+        private final BufferedWriter bufferedWriter;
+        private final HashMap<String, Set<String>> selection;
+
+        private Subscriber(SSLSocket socket, BufferedWriter bufferedWriter, HashMap<String, Set<String>> selection){
+            this.socket = socket;
+            this.bufferedWriter = bufferedWriter;
+            this.selection = selection;
+        }
+
+        private boolean matches(String database, String table){
+            Set<String> tables = selection.get(database);
+            return tables != null && (tables.isEmpty() || table == null || tables.contains(table));
+        }
+
+        private synchronized boolean send(String line){
+            try{
+                bufferedWriter.write(line);
+                bufferedWriter.newLine();
+                bufferedWriter.flush();
+                return true;
+            }catch (Exception e){
+                close();
+                return false;
+            }
+        }
+
+        private void close(){
+            try{socket.close();}catch (Exception ignore){}
+        }
+    }
+
+    /**
+     * Represents a failed request
+     */
+    private static class StubException extends Exception {
+
+        private static final long serialVersionUID = 1L;
+
+        private final int statusCode;
+        private final String internalStatus;
+
+        private StubException(int statusCode, String internalStatus){
+            super(internalStatus, null, false, false);
+            this.statusCode = statusCode;
+            this.internalStatus = internalStatus;
+        }
+    }
+
+    /**
+     * Can be used to run the server on its own
+     * <br>
+     * Arguments: loginToken
+     * @param args arguments
+     * @throws Exception on exception
+     */
+    public static void main(String[] args) throws Exception {
+        JStorageStubServer stubServer = new JStorageStubServer((args.length > 0) ? args[0] : "token");
+        stubServer.start(5000);
+        System.out.println("Https Port: "+stubServer.getPort()+" Notification Port: "+stubServer.getNotificationPort());
+        Thread.currentThread().join();
+    }
+}